@@ -28,6 +28,7 @@ For more information, to submit bugs, software changes, etc., please contact
 import java.awt.Button;
 import java.awt.Checkbox;
 import java.awt.CheckboxGroup;
+import java.awt.Choice;
 import java.awt.Color;
 import java.awt.Dialog;
 import java.awt.Frame;
@@ -52,6 +53,8 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
     TextField txt_angleIncrement;
     TextField txt_distanceIncrement;
     TextField txt_tickDistance;
+    Choice ch_engine;
+    Checkbox cb_keepCoverage;
     DEM dem;
     DEMmain demMain;
     boolean actionOK;
@@ -80,7 +83,7 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
 	pnl_location.add(btn_setLocation = new Button("Set Location"));
 	add(pnl_location);
 
-	Panel pnl_heights = new Panel(new GroupLayout(2,6));
+	Panel pnl_heights = new Panel(new GroupLayout(2,8));
 	pnl_heights.add(new Label("Height Above Ground (meters)"));
 	pnl_heights.add(txt_heightAboveGround = new TextField(4));
 	pnl_heights.add(new Label("Ground Height Above Sea Level(meters)"));
@@ -93,6 +96,16 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
 	pnl_heights.add(txt_distanceIncrement = new TextField(3));
 	pnl_heights.add(new Label("Tick Distance (KM)"));
 	pnl_heights.add(txt_tickDistance = new TextField(3));
+	pnl_heights.add(new Label("Coverage Engine"));
+	pnl_heights.add(ch_engine = new Choice());
+	String engineNames[] = ViewshedEngines.getNames();
+	int i;
+	for (i = 0; i < engineNames.length; i++)
+	{
+	    ch_engine.add(engineNames[i]);
+	} /* for i */
+	pnl_heights.add(new Label("Keep Previous Coverage"));
+	pnl_heights.add(cb_keepCoverage = new Checkbox());
 	add(pnl_heights);
 
 	Panel pnl_buttons = new Panel(new GroupLayout(2,1));
@@ -110,7 +123,7 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
 	txt_tickDistance.setText("10");
 
 	int width = 400;
-	int height = 350;
+	int height = 410;
 	Rectangle parentRect = demMain.getBounds();
 	int xOffset = parentRect.x + (parentRect.width - width) / 2;
 	int yOffset = parentRect.y + (parentRect.height - height) / 2;
@@ -241,6 +254,15 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
     } /* getTickIncrement */
 
 
+    /**
+     * get the name of the coverage engine.
+     * @return the name of the engine chosen in the dialog.
+     */
+    public String getEngineName()
+    {
+	return ch_engine.getSelectedItem();
+    } /* getEngineName */
+
     /**
      * process this dialog's action.  Done this way to not hog the
      * AWT thread that responds to OK button press.
@@ -249,6 +271,8 @@ public class AntennaLocationDialog extends Dialog implements ActionListener
     {
 	if (actionOK)
 	{
+	    demMain.map.setEngine(getEngineName());
+	    demMain.map.setKeepLayers(cb_keepCoverage.getState());
 	    demMain.map.plotCoverage(demMain.dem,
 				     getCoordinates(),
 				     (short) (getHeightAboveGround() + getHeightAboveSeaLevel()),
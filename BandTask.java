@@ -0,0 +1,41 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an interface for work on a raster that can be split into bands of rows
+ * and done on several processors at once by Bands.run().  each band is
+ * given to one thread, so a task must only write to its own rows.
+ */
+public interface BandTask
+{
+    /**
+     * do the work for a band of rows.
+     * @param firstRow the first row of the band.
+     * @param lastRow the row after the last row of the band.
+     */
+    public void run(int firstRow, int lastRow);
+} /* interface BandTask */
@@ -0,0 +1,184 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.util.Vector;
+
+/**
+ * a class that runs a BandTask over a raster on all the processors.  the
+ * rows are cut into a few more bands than there are threads, and each
+ * thread takes the next band when it finishes one, so a slow band does not
+ * hold the others up.  progress is reported once per band.
+ * All the methods are static; this class should never be instantiated.
+ */
+public class Bands
+{
+    /* bands per thread, to even out the work */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * get the number of threads to run bands on.
+     * @return the number of processors.
+     */
+    public static int getThreadCount()
+    {
+	return Runtime.getRuntime().availableProcessors();
+    } /* getThreadCount() */
+
+    /**
+     * run a task over all the rows of a raster, and wait for it to finish.
+     * @param rows the number of rows.
+     * @param task the work to do on each band.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public static void run(int rows, BandTask task, StatusBar statusBar)
+    {
+	int threadCount = Math.max(1, Math.min(getThreadCount(), rows));
+	int bandCount = Math.max(1, Math.min(rows, threadCount * BANDS_PER_THREAD));
+	run(rows, bandCount, threadCount, task, statusBar);
+    } /* run() */
+
+    /**
+     * run a task over all the rows of a raster in a number of bands, and
+     * wait for it to finish.
+     * @param rows the number of rows.
+     * @param bandCount the number of bands to cut the rows into.
+     * @param threadCount the number of threads to run.
+     * @param task the work to do on each band.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public static void run(int rows, int bandCount, int threadCount, BandTask task, StatusBar statusBar)
+    {
+	if (rows <= 0)
+	    return;
+	Runner runner = new Runner(rows, bandCount, task, statusBar);
+	if (threadCount <= 1)
+	{ /* no point starting a thread */
+	    runner.run();
+	} /* if threadCount <= 1 */
+	else
+	{
+	    Vector<Thread> threads = new Vector<Thread>();
+	    int i;
+	    for (i = 0; i < threadCount; i++)
+	    {
+		Thread thread = new Thread(runner, "band-" + i);
+		threads.addElement(thread);
+		thread.start();
+	    } /* for i */
+	    for (i = 0; i < threadCount; i++)
+	    {
+		try
+		{
+		    threads.elementAt(i).join();
+		} /* try */
+		catch (InterruptedException e)
+		{
+		    Thread.currentThread().interrupt();
+		    runner.cancel();
+		}
+	    } /* for i */
+	} /* if threadCount <= 1 */
+	if (runner.failure != null)
+	    throw runner.failure;
+    } /* run() */
+
+    /**
+     * the shared state of one run: the next band to do and how many are done.
+     */
+    static class Runner implements Runnable
+    {
+	int rows;
+	int bandCount;
+	BandTask task;
+	StatusBar statusBar;
+	int nextBand = 0;
+	int bandsDone = 0;
+	RuntimeException failure = null;
+
+	Runner(int rows, int bandCount, BandTask task, StatusBar statusBar)
+	{
+	    this.rows = rows;
+	    this.bandCount = bandCount;
+	    this.task = task;
+	    this.statusBar = statusBar;
+	} /* Runner constructor */
+
+	/**
+	 * take the next band, or -1 if they are all taken.
+	 */
+	synchronized int takeBand()
+	{
+	    if (nextBand >= bandCount)
+		return -1;
+	    return nextBand++;
+	} /* takeBand() */
+
+	/**
+	 * stop handing out bands.
+	 */
+	synchronized void cancel()
+	{
+	    nextBand = bandCount;
+	} /* cancel() */
+
+	/**
+	 * count a finished band and show the progress.
+	 */
+	synchronized void bandDone()
+	{
+	    bandsDone++;
+	    if (statusBar != null)
+		statusBar.updateProgress(bandsDone * 100 / bandCount);
+	} /* bandDone() */
+
+	/**
+	 * do bands until there are none left.
+	 */
+	public void run()
+	{
+	    int band;
+	    try
+	    {
+		while ((band = takeBand()) >= 0)
+		{
+		    task.run((int) ((long) rows * band / bandCount),
+			     (int) ((long) rows * (band + 1) / bandCount));
+		    bandDone();
+		} /* while */
+	    } /* try */
+	    catch (RuntimeException e)
+	    {
+		synchronized (this)
+		{
+		    if (failure == null)
+			failure = e;
+		} /* synchronized */
+		cancel();
+	    }
+	} /* run() */
+    } /* class Runner */
+} /* class Bands */
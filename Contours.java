@@ -0,0 +1,459 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * a class that finds the contour lines of a DEM at a fixed interval, by
+ * marching squares.  each square of four neighboring points is looked at
+ * on its own, and gives a short segment for every contour that crosses it;
+ * a square where two opposite corners are high and the other two low is
+ * decided by the average of the four.  the squares are done in bands of
+ * rows on all the processors.  every end of a segment lies on the edge
+ * between two points, and is named by that edge and the contour's level,
+ * so the segments are joined into lines, across the seams between bands
+ * too, by matching names rather than coordinates.
+ */
+public class Contours
+{
+    /* the edges of a square, as offsets into the names worked out for it */
+    private static final int SOUTH = 0;
+    private static final int EAST = 1;
+    private static final int NORTH = 2;
+    private static final int WEST = 3;
+    /*
+     * the pairs of edges joined in each square, indexed by which corners
+     * are high: bit 0 southwest, 1 southeast, 2 northeast, 3 northwest.
+     * the saddles, 5 and 10, are for a low middle; a high middle swaps them.
+     */
+    private static final int SEGMENTS[][] = {
+	{},
+	{ WEST, SOUTH },
+	{ SOUTH, EAST },
+	{ WEST, EAST },
+	{ EAST, NORTH },
+	{ WEST, SOUTH, EAST, NORTH },
+	{ SOUTH, NORTH },
+	{ WEST, NORTH },
+	{ NORTH, WEST },
+	{ SOUTH, NORTH },
+	{ SOUTH, EAST, NORTH, WEST },
+	{ EAST, NORTH },
+	{ WEST, EAST },
+	{ SOUTH, EAST },
+	{ WEST, SOUTH },
+	{}
+    };
+
+    ElevationSource terrain;
+    int interval;
+    int columns;
+    int rows;
+    /* the lowest level is firstLevel * interval */
+    int firstLevel;
+    /* the number of edge names in a level */
+    long edgeCount;
+    /* the lines, and the elevation of each */
+    float lines[][];
+    short elevations[];
+    /* the box around each line: west, south, east, north */
+    float bounds[][];
+
+    /**
+     * create a new, empty set of contours.  call build() to find them.
+     * @param terrain the elevations.
+     * @param interval the difference in elevation between contours.
+     */
+    public Contours(ElevationSource terrain, int interval)
+    {
+	this.terrain = terrain;
+	this.interval = interval;
+	columns = terrain.getColumnCount();
+	rows = terrain.getRowCount();
+	edgeCount = 2L * columns * rows;
+    } /* Contours constructor */
+
+    /**
+     * find the contours.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public void build(StatusBar statusBar)
+    {
+	short range[] = findRange();
+	firstLevel = Math.floorDiv(range[0], interval);
+	final Vector<SegmentList> found = new Vector<SegmentList>();
+	Bands.run(rows - 1, new BandTask()
+	    {
+		public void run(int firstRow, int lastRow)
+		{
+		    found.addElement(findSegments(firstRow, lastRow));
+		} /* run() */
+	    }, statusBar);
+	int segmentCount = 0;
+	int i;
+	for (i = 0; i < found.size(); i++)
+	{
+	    segmentCount += found.elementAt(i).count;
+	} /* for i */
+	long ends[] = new long[2 * segmentCount];
+	int n = 0;
+	for (i = 0; i < found.size(); i++)
+	{
+	    SegmentList list = found.elementAt(i);
+	    System.arraycopy(list.ends, 0, ends, n, 2 * list.count);
+	    n += 2 * list.count;
+	} /* for i */
+	join(ends, segmentCount);
+    } /* build() */
+
+    /**
+     * find the lowest and highest elevations.
+     * @return the lowest and highest elevations.
+     */
+    short[] findRange()
+    {
+	short range[] = { Short.MAX_VALUE, Short.MIN_VALUE };
+	short elevations[] = new short[columns];
+	RasterKernels kernels = RasterKernels.getKernels();
+	int row;
+	for (row = 0; row < rows; row++)
+	{
+	    Stencil.readRow(terrain, row, 0, elevations);
+	    kernels.range(elevations, 0, columns, range);
+	} /* for row */
+	return range;
+    } /* findRange() */
+
+    /**
+     * find the segments in the squares of a band of rows.
+     * @param firstRow the first row of squares.
+     * @param lastRow the row of squares after the band.
+     * @return the segments.
+     */
+    SegmentList findSegments(int firstRow, int lastRow)
+    {
+	SegmentList list = new SegmentList();
+	short below[] = new short[columns];
+	short above[] = new short[columns];
+	short swap[];
+	long names[] = new long[4];
+	int segments[];
+	int row, column, level, lowLevel, highLevel, sw, se, ne, nw, low, high, corners, i;
+	long edge, levelBase;
+	Stencil.readRow(terrain, firstRow, 0, below);
+	for (row = firstRow; row < lastRow; row++)
+	{
+	    Stencil.readRow(terrain, row + 1, 0, above);
+	    for (column = 0; column < columns - 1; column++)
+	    {
+		sw = below[column];
+		se = below[column + 1];
+		ne = above[column + 1];
+		nw = above[column];
+		low = Math.min(Math.min(sw, se), Math.min(ne, nw));
+		high = Math.max(Math.max(sw, se), Math.max(ne, nw));
+		/* the levels with a corner below and a corner at or above */
+		lowLevel = Math.floorDiv(low, interval) + 1;
+		highLevel = Math.floorDiv(high, interval);
+		if (lowLevel > highLevel)
+		    continue;
+		edge = 2L * ((long) row * columns + column);
+		for (level = lowLevel; level <= highLevel; level++)
+		{
+		    levelBase = (level - firstLevel) * edgeCount;
+		    names[SOUTH] = levelBase + edge;
+		    names[EAST] = levelBase + edge + 3;
+		    names[NORTH] = levelBase + edge + 2L * columns;
+		    names[WEST] = levelBase + edge + 1;
+		    corners = ((sw >= level * interval) ? 1 : 0)
+			| ((se >= level * interval) ? 2 : 0)
+			| ((ne >= level * interval) ? 4 : 0)
+			| ((nw >= level * interval) ? 8 : 0);
+		    segments = SEGMENTS[corners];
+		    if (((corners == 5) || (corners == 10))
+			&& (sw + se + ne + nw >= 4 * level * interval))
+		    { /* a high middle joins the high corners */
+			segments = SEGMENTS[15 - corners];
+		    } /* if corners == 5... */
+		    for (i = 0; i < segments.length; i += 2)
+		    {
+			list.add(names[segments[i]], names[segments[i + 1]]);
+		    } /* for i */
+		} /* for level */
+	    } /* for column */
+	    swap = below;
+	    below = above;
+	    above = swap;
+	} /* for row */
+	return list;
+    } /* findSegments() */
+
+    /**
+     * join the segments into lines, following them from end to end.  the
+     * ends of segment s are 2s and 2s+1; the ends that meet are paired up
+     * once, through a hash table of their names, and the lines are then
+     * followed through the pairs alone.
+     * @param ends the names of the two ends of each segment.
+     * @param segmentCount the number of segments.
+     */
+    void join(long ends[], int segmentCount)
+    {
+	int pairs[] = new int[2 * segmentCount];
+	EdgeTable table = new EdgeTable(segmentCount);
+	int i, other;
+	for (i = 0; i < 2 * segmentCount; i++)
+	{
+	    other = table.pair(ends[i], i);
+	    pairs[i] = other;
+	    if (other >= 0)
+		pairs[other] = i;
+	} /* for i */
+	table = null;
+	boolean used[] = new boolean[segmentCount];
+	Vector<float[]> found = new Vector<float[]>();
+	Vector<Long> levels = new Vector<Long>();
+	int first, end, start, count;
+	long path[] = new long[16];
+	for (first = 0; first < segmentCount; first++)
+	{
+	    if (used[first])
+		continue;
+	    /* go back from the first segment to the start of its line, or round a loop */
+	    end = 2 * first;
+	    while ((pairs[end] >= 0) && (pairs[end] / 2 != first))
+	    {
+		end = pairs[end] ^ 1;
+	    } /* while */
+	    /* then forward to the other end, collecting the names of the points */
+	    start = end;
+	    count = 0;
+	    path[count++] = ends[start];
+	    end = start ^ 1;
+	    while (true)
+	    {
+		used[end / 2] = true;
+		if (count == path.length)
+		{
+		    long bigger[] = new long[2 * path.length];
+		    System.arraycopy(path, 0, bigger, 0, count);
+		    path = bigger;
+		} /* if count == path.length */
+		path[count++] = ends[end];
+		if ((pairs[end] < 0) || used[pairs[end] / 2])
+		    break;
+		end = pairs[end] ^ 1;
+	    } /* while */
+	    found.addElement(makeLine(path, count));
+	    levels.addElement(Long.valueOf(path[0] / edgeCount));
+	} /* for first */
+	lines = new float[found.size()][];
+	elevations = new short[found.size()];
+	bounds = new float[found.size()][];
+	for (i = 0; i < lines.length; i++)
+	{
+	    lines[i] = found.elementAt(i);
+	    elevations[i] = (short) ((firstLevel + levels.elementAt(i).intValue()) * interval);
+	    bounds[i] = findBounds(lines[i]);
+	} /* for i */
+    } /* join() */
+
+    /**
+     * work out the points of a line from the names of its ends.
+     * @param path the names.
+     * @param count the number of names.
+     * @return the points, x and y in turn, in DEM points from the SW corner.
+     */
+    float[] makeLine(long path[], int count)
+    {
+	float line[] = new float[2 * count];
+	long level, edge;
+	int index, column, row, elevation, first, second;
+	float t;
+	int i;
+	for (i = 0; i < count; i++)
+	{
+	    level = path[i] / edgeCount;
+	    edge = path[i] % edgeCount;
+	    index = (int) (edge >> 1);
+	    column = index % columns;
+	    row = index / columns;
+	    elevation = (firstLevel + (int) level) * interval;
+	    first = terrain.getElevation(column, row);
+	    if ((edge & 1) == 0)
+	    { /* along a row, to the east */
+		second = terrain.getElevation(column + 1, row);
+		t = (elevation - first) / (float) (second - first);
+		line[2 * i] = column + t;
+		line[2 * i + 1] = row;
+	    } /* if (edge & 1) == 0 */
+	    else
+	    { /* along a column, to the north */
+		second = terrain.getElevation(column, row + 1);
+		t = (elevation - first) / (float) (second - first);
+		line[2 * i] = column;
+		line[2 * i + 1] = row + t;
+	    } /* if (edge & 1) == 0 */
+	} /* for i */
+	return line;
+    } /* makeLine() */
+
+    /**
+     * find the box around a line.
+     * @param line the points of the line.
+     * @return the west, south, east and north edges of the box.
+     */
+    static float[] findBounds(float line[])
+    {
+	float box[] = { line[0], line[1], line[0], line[1] };
+	int i;
+	for (i = 2; i < line.length; i += 2)
+	{
+	    box[0] = Math.min(box[0], line[i]);
+	    box[1] = Math.min(box[1], line[i + 1]);
+	    box[2] = Math.max(box[2], line[i]);
+	    box[3] = Math.max(box[3], line[i + 1]);
+	} /* for i */
+	return box;
+    } /* findBounds() */
+
+    /**
+     * get the difference in elevation between contours.
+     * @return the interval.
+     */
+    public int getInterval()
+    {
+	return interval;
+    } /* getInterval() */
+
+    /**
+     * get the number of lines.  a contour that is broken by the edge of
+     * the DEM is more than one line.
+     * @return the number of lines.
+     */
+    public int getLineCount()
+    {
+	return lines.length;
+    } /* getLineCount() */
+
+    /**
+     * get the points of a line.  a closed line ends with its first point.
+     * @param line the number of the line.
+     * @return the points, x and y in turn, in DEM points from the SW corner.
+     */
+    public float[] getLine(int line)
+    {
+	return lines[line];
+    } /* getLine() */
+
+    /**
+     * get the elevation of a line.
+     * @param line the number of the line.
+     * @return the elevation.
+     */
+    public short getElevation(int line)
+    {
+	return elevations[line];
+    } /* getElevation() */
+
+    /**
+     * get the box around a line.
+     * @param line the number of the line.
+     * @return the west, south, east and north edges of the box, in DEM
+     * points from the SW corner.
+     */
+    public float[] getBounds(int line)
+    {
+	return bounds[line];
+    } /* getBounds() */
+
+    /**
+     * the segments found in one band: the names of the two ends of each.
+     */
+    static class SegmentList
+    {
+	long ends[] = new long[1024];
+	int count = 0;
+
+	void add(long first, long second)
+	{
+	    if (2 * count == ends.length)
+	    {
+		long bigger[] = new long[2 * ends.length];
+		System.arraycopy(ends, 0, bigger, 0, ends.length);
+		ends = bigger;
+	    } /* if 2 * count == ends.length */
+	    ends[2 * count] = first;
+	    ends[2 * count + 1] = second;
+	    count++;
+	} /* add() */
+    } /* class SegmentList */
+
+    /**
+     * a hash table from the name of an end to the first end found with it,
+     * in flat arrays, as there can be millions of them.  the names are not
+     * scrambled, so ends close together on the DEM stay close together in
+     * the table.
+     */
+    static class EdgeTable
+    {
+	long names[];
+	int ends[];
+
+	/**
+	 * make a table big enough for every end of a number of segments.
+	 */
+	EdgeTable(int segmentCount)
+	{
+	    int size = Integer.highestOneBit(2 * segmentCount + 1) << 1;
+	    names = new long[size];
+	    ends = new int[size];
+	    Arrays.fill(ends, -1);
+	} /* EdgeTable constructor */
+
+	/**
+	 * pair an end with the one already in the table under the same name,
+	 * or put it in the table if there is none.
+	 * @param name the name of the end.
+	 * @param end the end.
+	 * @return the end it pairs with, or -1.
+	 */
+	int pair(long name, int end)
+	{
+	    int slot = (int) (name & (names.length - 1));
+	    while (ends[slot] >= 0)
+	    {
+		if (names[slot] == name)
+		    return ends[slot];
+		slot = (slot + 1) & (names.length - 1);
+	    } /* while */
+	    names[slot] = name;
+	    ends[slot] = end;
+	    return -1;
+	} /* pair() */
+    } /* class EdgeTable */
+} /* class Contours */
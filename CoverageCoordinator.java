@@ -0,0 +1,429 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.BitSet;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * a class that shares coverage work among CoverageWorkers.  the work is
+ * cut into units, azimuth sectors of one transmitter's rays or whole
+ * candidate sites, and each worker connection takes the next unit as soon
+ * as it finishes the last, so faster workers do more of the work.
+ */
+public class CoverageCoordinator
+{
+    /**
+     * the number of sectors to cut the rays into.  there are several for
+     * each worker, so the work stays balanced when some sectors run off the
+     * DEM sooner, and the count does not depend on the workers, so a
+     * journal can be resumed with more or fewer of them.
+     */
+    private static final int SECTOR_COUNT = 64;
+    String hosts[];
+    int ports[];
+    int nextUnit;
+    int numUnits;
+    boolean done[];
+    Journal journal;
+    GeoCoordinate area[];
+    IOException failure;
+
+    /**
+     * create a new CoverageCoordinator.
+     * @param workers the workers as a comma separated list of host:port.
+     */
+    public CoverageCoordinator(String workers)
+    {
+	String list[] = workers.split(",");
+	hosts = new String[list.length];
+	ports = new int[list.length];
+	int i, colon;
+	for (i = 0; i < list.length; i++)
+	{
+	    colon = list[i].lastIndexOf(':');
+	    hosts[i] = (colon < 0) ? "localhost" : list[i].substring(0, colon);
+	    ports[i] = Util.safeStringToInt(list[i].substring(colon + 1));
+	} /* for i */
+    } /* CoverageCoordinator constructor */
+
+    /**
+     * set the journal used to checkpoint completed units.  units found in
+     * the journal are not sent to the workers again.
+     * @param journal the journal, or null for none.
+     */
+    public void setJournal(Journal journal)
+    {
+	this.journal = journal;
+    } /* setJournal() */
+
+    /**
+     * restrict the workers' calculations to an area.
+     * @param area the corners of the area's polygon, or null for the whole DEM.
+     */
+    public void setArea(GeoCoordinate area[])
+    {
+	this.area = area;
+    } /* setArea() */
+
+    /**
+     * prepare to hand out a new set of units of work.
+     * @param units the number of units.
+     */
+    void startUnits(int units)
+    {
+	nextUnit = 0;
+	numUnits = units;
+	done = new boolean[units];
+	failure = null;
+    } /* startUnits() */
+
+    /**
+     * get the number of the next unit of work, or -1 if there is none.
+     */
+    synchronized int takeUnit()
+    {
+	while ((nextUnit < numUnits) && done[nextUnit])
+	    nextUnit++;
+	if ((failure != null) || (nextUnit >= numUnits))
+	    return -1;
+	return nextUnit++;
+    } /* takeUnit() */
+
+    /**
+     * record a completed unit in the journal, if there is one.
+     */
+    void complete(int unit, byte result[]) throws IOException
+    {
+	if (journal != null)
+	    journal.record(unit, result);
+    } /* complete() */
+
+    /**
+     * record the first failure; the other connections stop taking work.
+     */
+    synchronized void fail(IOException e)
+    {
+	if (failure == null)
+	    failure = e;
+    } /* fail() */
+
+    /**
+     * a connection to one worker, run in its own thread.
+     */
+    abstract class Connection extends Thread
+    {
+	int worker;
+
+	Connection(int worker)
+	{
+	    this.worker = worker;
+	} /* Connection constructor */
+
+	public void run()
+	{
+	    try
+	    {
+		Socket socket = new Socket(hosts[worker], ports[worker]);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		int unit;
+		while ((unit = takeUnit()) >= 0)
+		{
+		    doUnit(unit, in, out);
+		} /* while */
+		out.writeInt(CoverageWorker.QUIT);
+		out.flush();
+		socket.close();
+	    } /* try */
+	    catch (IOException e)
+	    {
+		fail(e);
+	    }
+	} /* run() */
+
+	abstract void doUnit(int unit, DataInputStream in, DataOutputStream out) throws IOException;
+    } /* class Connection */
+
+    /**
+     * start a connection to every worker and wait for them all to finish.
+     * @param connections one connection per worker.
+     * @exception IOException if any worker failed.
+     */
+    void runAll(Connection connections[]) throws IOException
+    {
+	int i;
+	for (i = 0; i < connections.length; i++)
+	{
+	    connections[i].start();
+	} /* for i */
+	for (i = 0; i < connections.length; i++)
+	{
+	    try
+	    {
+		connections[i].join();
+	    } /* try */
+	    catch (InterruptedException e)
+	    {
+		throw new IOException("interrupted");
+	    }
+	} /* for i */
+	if (journal != null)
+	    journal.checkpoint();
+	if (failure != null)
+	    throw failure;
+    } /* runAll() */
+
+    /**
+     * write the parameters common to every request.
+     */
+    void writeSite(DataOutputStream out,
+			  int request,
+			  int latitude,
+			  int x,
+			  int y,
+			  short amsl,
+			  short receiverHeight,
+			  float degreeIncrement,
+			  int distanceIncrement) throws IOException
+    {
+	out.writeInt(request);
+	out.writeInt(latitude);
+	out.writeInt(x);
+	out.writeInt(y);
+	out.writeShort(amsl);
+	out.writeShort(receiverHeight);
+	out.writeFloat(degreeIncrement);
+	out.writeInt(distanceIncrement);
+	if (area == null)
+	{
+	    out.writeInt(0);
+	} /* if area == null */
+	else
+	{
+	    out.writeInt(area.length);
+	    int i;
+	    for (i = 0; i < area.length; i++)
+	    {
+		out.writeInt(area[i].getLatitude());
+		out.writeInt(area[i].getLongitude());
+	    } /* for i */
+	} /* if area == null */
+    } /* writeSite() */
+
+    /**
+     * read a bit set written by CoverageWorker.writeBits(), still deflated.
+     * @param in the stream to read from.
+     * @return the deflated bit set.
+     * @exception IOException if the stream cannot be read.
+     */
+    static byte[] readBits(DataInputStream in) throws IOException
+    {
+	byte compressed[] = new byte[in.readInt()];
+	in.readFully(compressed);
+	return compressed;
+    } /* readBits() */
+
+    /**
+     * inflate a bit set.
+     * @param compressed the deflated bit set.
+     * @return the bit set.
+     * @exception IOException if the bit set cannot be inflated.
+     */
+    static BitSet inflateBits(byte compressed[]) throws IOException
+    {
+	InflaterInputStream iin = new InflaterInputStream(new ByteArrayInputStream(compressed));
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	byte chunk[] = new byte[8192];
+	int n;
+	while ((n = iin.read(chunk)) > 0)
+	{
+	    buffer.write(chunk, 0, n);
+	} /* while */
+	iin.close();
+	return BitSet.valueOf(buffer.toByteArray());
+    } /* inflateBits() */
+
+    /**
+     * merge the result of a sector into the coverage.
+     * @param result the deflated reached and shadowed bit sets of the sector.
+     * @param reached the cells reached so far.
+     * @param shadowed the cells shadowed so far.
+     * @exception IOException if the result cannot be read.
+     */
+    static void mergeSector(byte result[], BitSet reached, BitSet shadowed) throws IOException
+    {
+	DataInputStream in = new DataInputStream(new ByteArrayInputStream(result));
+	BitSet sectorReached = inflateBits(readBits(in));
+	BitSet sectorShadowed = inflateBits(readBits(in));
+	synchronized (reached)
+	{
+	    reached.or(sectorReached);
+	    shadowed.or(sectorShadowed);
+	} /* synchronized */
+    } /* mergeSector() */
+
+    /**
+     * calculate the coverage of one transmitter, sharing its rays among the
+     * workers by azimuth sector.
+     * @param coverage the coverage parameters; its terrain is not used here.
+     * @param latitude the latitude of the transmitter.
+     * @param reached bits are set for every cell a ray visits.
+     * @param shadowed bits are set for every cell found to be occluded.
+     * @exception IOException if any worker failed.
+     */
+    public void calculate(final RadialCoverage coverage,
+			  final int latitude,
+			  final BitSet reached,
+			  final BitSet shadowed) throws IOException
+    {
+	final int rays = coverage.getRayCount();
+	startUnits(Math.min(rays, SECTOR_COUNT));
+	int i, unit;
+	if (journal != null)
+	{
+	    for (i = 0; i < journal.getCompletedCount(); i++)
+	    {
+		unit = journal.getCompletedUnit(i);
+		if ((unit >= 0) && (unit < numUnits))
+		{
+		    mergeSector(journal.getCompletedResult(i), reached, shadowed);
+		    done[unit] = true;
+		} /* if unit >= 0... */
+	    } /* for i */
+	} /* if journal != null */
+	Connection connections[] = new Connection[hosts.length];
+	for (i = 0; i < hosts.length; i++)
+	{
+	    connections[i] = new Connection(i)
+		{
+		    void doUnit(int unit, DataInputStream in, DataOutputStream out) throws IOException
+		    {
+			writeSite(out,
+				  CoverageWorker.SECTOR,
+				  latitude,
+				  coverage.x,
+				  coverage.y,
+				  coverage.amsl,
+				  coverage.receiverHeight,
+				  coverage.degreeIncrement,
+				  coverage.distanceIncrement);
+			out.writeInt(unit * rays / numUnits);
+			out.writeInt((unit + 1) * rays / numUnits);
+			out.flush();
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream result = new DataOutputStream(buffer);
+			byte compressed[] = readBits(in);
+			result.writeInt(compressed.length);
+			result.write(compressed);
+			compressed = readBits(in);
+			result.writeInt(compressed.length);
+			result.write(compressed);
+			result.flush();
+			mergeSector(buffer.toByteArray(), reached, shadowed);
+			complete(unit, buffer.toByteArray());
+		    } /* doUnit() */
+		};
+	} /* for i */
+	runAll(connections);
+    } /* calculate() */
+
+    /**
+     * score candidate sites by the number of cells that can see each one,
+     * sharing the candidates among the workers.
+     * @param latitudes the latitude of each candidate.
+     * @param xs the column of each candidate.
+     * @param ys the row of each candidate.
+     * @param amsls the antenna height above sea level at each candidate.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around each candidate.
+     * @param distanceIncrement the distance increment to vector around each candidate.
+     * @return the score of each candidate.
+     * @exception IOException if any worker failed.
+     */
+    public int[] scoreSites(final int latitudes[],
+			    final int xs[],
+			    final int ys[],
+			    final short amsls[],
+			    final short receiverHeight,
+			    final float degreeIncrement,
+			    final int distanceIncrement) throws IOException
+    {
+	final int scores[] = new int[xs.length];
+	startUnits(xs.length);
+	int i, unit;
+	byte result[];
+	if (journal != null)
+	{
+	    for (i = 0; i < journal.getCompletedCount(); i++)
+	    {
+		unit = journal.getCompletedUnit(i);
+		result = journal.getCompletedResult(i);
+		if ((unit >= 0) && (unit < numUnits) && (result.length == 4))
+		{
+		    scores[unit] = new DataInputStream(new ByteArrayInputStream(result)).readInt();
+		    done[unit] = true;
+		} /* if unit >= 0... */
+	    } /* for i */
+	} /* if journal != null */
+	Connection connections[] = new Connection[hosts.length];
+	for (i = 0; i < hosts.length; i++)
+	{
+	    connections[i] = new Connection(i)
+		{
+		    void doUnit(int unit, DataInputStream in, DataOutputStream out) throws IOException
+		    {
+			writeSite(out,
+				  CoverageWorker.SITE,
+				  latitudes[unit],
+				  xs[unit],
+				  ys[unit],
+				  amsls[unit],
+				  receiverHeight,
+				  degreeIncrement,
+				  distanceIncrement);
+			out.flush();
+			int score = in.readInt();
+			scores[unit] = score;
+			complete(unit, new byte[] {(byte) (score >>> 24),
+						   (byte) (score >>> 16),
+						   (byte) (score >>> 8),
+						   (byte) score});
+		    } /* doUnit() */
+		};
+	} /* for i */
+	runAll(connections);
+	return scores;
+    } /* scoreSites() */
+} /* class CoverageCoordinator */
@@ -0,0 +1,249 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.ImageObserver;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * a class that holds the coverage of one transmitter as a transparent
+ * layer to draw over the terrain.  the layer is two bits per point:
+ * clear, shadowed or marker.  the shadow color can be changed, or the layer
+ * hidden, without drawing it again.
+ */
+public class CoverageLayer
+{
+    private static final int CLEAR = 0;
+    private static final int SHADOW = 1;
+    private static final int MARKER = 2;
+    private static final int BITS = 2;
+    static final int SHADOW_ALPHA = 0x99;
+
+    int width;
+    int height;
+    int stride;
+    byte bits[];
+    WritableRaster raster;
+    BufferedImage image;
+    Color color;
+    boolean visible = true;
+    String name;
+
+    /**
+     * create a new, clear CoverageLayer.
+     * @param width the width of the layer in points.
+     * @param height the height of the layer in points.
+     * @param color the color to tint shadowed points.
+     * @param name a description of the layer, for the status bar.
+     */
+    public CoverageLayer(int width, int height, Color color, String name)
+    {
+	this.width = width;
+	this.height = height;
+	this.name = name;
+	image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, makeColorModel(color));
+	raster = image.getRaster();
+	bits = ((DataBufferByte) raster.getDataBuffer()).getData();
+	stride = (width * BITS + 7) / 8;
+	this.color = color;
+    } /* CoverageLayer constructor */
+
+    /**
+     * build the palette for a shadow color.
+     * @param color the shadow color.
+     * @return the palette.
+     */
+    static IndexColorModel makeColorModel(Color color)
+    {
+	byte reds[] = new byte[1 << BITS];
+	byte greens[] = new byte[1 << BITS];
+	byte blues[] = new byte[1 << BITS];
+	byte alphas[] = new byte[1 << BITS];
+	reds[SHADOW] = (byte) color.getRed();
+	greens[SHADOW] = (byte) color.getGreen();
+	blues[SHADOW] = (byte) color.getBlue();
+	alphas[SHADOW] = (byte) SHADOW_ALPHA;
+	reds[MARKER] = (byte) 0xff;
+	alphas[MARKER] = (byte) 0xff;
+	return new IndexColorModel(BITS, 1 << BITS, reds, greens, blues, alphas);
+    } /* makeColorModel() */
+
+    /**
+     * work out how a shadowed point looks drawn over another color.
+     * @param rgb the color underneath, as 0xrrggbb.
+     * @param color the shadow color.
+     * @return the color seen, as 0xrrggbb.
+     */
+    static int blend(int rgb, Color color)
+    {
+	int red = (color.getRed() * SHADOW_ALPHA + ((rgb >> 16) & 0xff) * (0xff - SHADOW_ALPHA)) / 0xff;
+	int green = (color.getGreen() * SHADOW_ALPHA + ((rgb >> 8) & 0xff) * (0xff - SHADOW_ALPHA)) / 0xff;
+	int blue = (color.getBlue() * SHADOW_ALPHA + (rgb & 0xff) * (0xff - SHADOW_ALPHA)) / 0xff;
+	return (red << 16) | (green << 8) | blue;
+    } /* blend() */
+
+    /**
+     * get the description of the layer.
+     * @return the description.
+     */
+    public String getName()
+    {
+	return name;
+    } /* getName() */
+
+    /**
+     * get the shadow color.
+     * @return the color.
+     */
+    public Color getColor()
+    {
+	return color;
+    } /* getColor() */
+
+    /**
+     * change the shadow color.  only the palette changes; the points are
+     * not drawn again.
+     * @param color the new color.
+     */
+    public void setColor(Color color)
+    {
+	this.color = color;
+	image = new BufferedImage(makeColorModel(color), raster, false, null);
+    } /* setColor() */
+
+    /**
+     * determine if the layer is drawn.
+     * @return true if it is drawn.
+     */
+    public boolean isVisible()
+    {
+	return visible;
+    } /* isVisible() */
+
+    /**
+     * show or hide the layer.
+     * @param visible true to draw the layer.
+     */
+    public void setVisible(boolean visible)
+    {
+	this.visible = visible;
+    } /* setVisible() */
+
+    /**
+     * mark a point as shadowed, unless it is a marker.
+     * @param x the x offset from the SW corner.
+     * @param y the y offset from the SW corner.
+     */
+    public void setShadowed(int x, int y)
+    {
+	if (get(x, y) == CLEAR)
+	    set(x, y, SHADOW);
+    } /* setShadowed() */
+
+    /**
+     * mark a point as part of a marker.
+     * @param x the x offset from the SW corner.
+     * @param y the y offset from the SW corner.
+     */
+    public void setMarker(int x, int y)
+    {
+	set(x, y, MARKER);
+    } /* setMarker() */
+
+    /**
+     * get the value of a point.
+     * @param x the x offset from the SW corner.
+     * @param y the y offset from the SW corner.
+     * @return the value, or CLEAR if the point is off the layer.
+     */
+    int get(int x, int y)
+    {
+	if ((x < 0) || (x >= width) || (y < 0) || (y >= height))
+	    return CLEAR;
+	int shift = 8 - BITS - (x % 4) * BITS;
+	return (bits[(height - y - 1) * stride + x / 4] >> shift) & 3;
+    } /* get() */
+
+    /**
+     * set the value of a point.
+     * @param x the x offset from the SW corner.
+     * @param y the y offset from the SW corner.
+     * @param value the new value.
+     */
+    void set(int x, int y, int value)
+    {
+	if ((x < 0) || (x >= width) || (y < 0) || (y >= height))
+	    return;
+	int index = (height - y - 1) * stride + x / 4;
+	int shift = 8 - BITS - (x % 4) * BITS;
+	bits[index] = (byte) ((bits[index] & ~(3 << shift)) | (value << shift));
+    } /* set() */
+
+    /**
+     * draw the layer, if it is visible, scaled to a size.
+     * @param g the graphics object to draw into.
+     * @param drawWidth the width to draw the layer.
+     * @param drawHeight the height to draw the layer.
+     * @param observer the component being drawn.
+     */
+    public void paint(Graphics g, int drawWidth, int drawHeight, ImageObserver observer)
+    {
+	if (visible)
+	    g.drawImage(image, 0, 0, drawWidth, drawHeight, observer);
+    } /* paint() */
+
+    /**
+     * draw a band of rows of the layer, if it is visible, into a rectangle.
+     * @param g the graphics object to draw into.
+     * @param firstRow the first row of the band, from the north.
+     * @param lastRow the row after the band, from the north.
+     * @param x the left edge of the rectangle.
+     * @param y the top edge of the rectangle.
+     * @param drawWidth the width of the rectangle.
+     * @param drawHeight the height of the rectangle.
+     * @param observer the component being drawn.
+     */
+    public void paintBand(Graphics g,
+			  int firstRow,
+			  int lastRow,
+			  int x,
+			  int y,
+			  int drawWidth,
+			  int drawHeight,
+			  ImageObserver observer)
+    {
+	if (visible)
+	    g.drawImage(image,
+			x, y, x + drawWidth, y + drawHeight,
+			0, firstRow, width, lastRow,
+			observer);
+    } /* paintBand() */
+} /* class CoverageLayer */
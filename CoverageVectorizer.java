@@ -0,0 +1,608 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * a class that turns the cells of a coverage result with one value into
+ * polygons, for GIS programs that want areas rather than images.  the
+ * result is read a row at a time, south to north, and the boundaries are
+ * found by marching squares, each segment running with the cells inside
+ * on its left, so boundaries run counterclockwise and holes clockwise.
+ * each cell is taken to be the square around its point, and cells that
+ * touch at a corner are in the same area.  the segments are joined into
+ * open lines by naming their ends after the edges they lie on, so only
+ * the lines that cross the current row are in memory, and points in a
+ * straight run are not kept.  when a line closes
+ * into a ring it is simplified by Douglas-Peucker and, if it is a
+ * boundary, written out at once.  a hole always closes below the top of
+ * the area around it, so holes wait, simplified, until their boundary
+ * closes; the areas are told apart by labelling the cells a row at a time
+ * as they are read.
+ */
+public class CoverageVectorizer
+{
+    /**
+     * the default tolerance for simplifying, in cells.
+     */
+    public static final float DEFAULT_TOLERANCE = 1.0f;
+    /* the edges of a square */
+    private static final int SOUTH = 0;
+    private static final int EAST = 1;
+    private static final int NORTH = 2;
+    private static final int WEST = 3;
+    /*
+     * the segments in each square, from edge to edge, indexed by which
+     * corners are inside: bit 0 southwest, 1 southeast, 2 northeast, 3
+     * northwest.  in the saddles, 5 and 10, the inside corners are joined.
+     */
+    private static final int SEGMENTS[][] = {
+	{},
+	{ SOUTH, WEST },
+	{ EAST, SOUTH },
+	{ EAST, WEST },
+	{ NORTH, EAST },
+	{ SOUTH, EAST, NORTH, WEST },
+	{ NORTH, SOUTH },
+	{ NORTH, WEST },
+	{ WEST, NORTH },
+	{ SOUTH, NORTH },
+	{ WEST, SOUTH, EAST, NORTH },
+	{ EAST, NORTH },
+	{ WEST, EAST },
+	{ SOUTH, EAST },
+	{ WEST, SOUTH },
+	{}
+    };
+    /* where the middle of each edge is, in half cells from the square's SW corner */
+    private static final int EDGE_X[] = { 1, 2, 1, 0 };
+    private static final int EDGE_Y[] = { 0, 1, 2, 1 };
+
+    TileFile result;
+    byte value;
+    float tolerance = DEFAULT_TOLERANCE;
+    int columns;
+    int rows;
+    /* the lines still open, by the names of their first and last ends */
+    HashMap<Long, Chain> heads = new HashMap<Long, Chain>();
+    HashMap<Long, Chain> tails = new HashMap<Long, Chain>();
+    /* the labels of the areas, each pointing toward the label it was joined to */
+    int parents[] = new int[1024];
+    int labelCount = 1;
+    /* closed holes waiting for their boundary, by the label of their area */
+    HashMap<Integer, Vector<double[]>> holes = new HashMap<Integer, Vector<double[]>>();
+    PolygonSink sink;
+    int polygonCount;
+    int ringCount;
+    long pointCount;
+
+    /**
+     * a line being put together from segments, as x, y pairs in half
+     * cells from the DEM's SW point.  there is room at both ends so it can
+     * grow either way.
+     */
+    static class Chain
+    {
+	int points[] = new int[32];
+	int first = 16;
+	int end = 16;
+	long headName;
+	long tailName;
+	/* the label of a cell inside the line */
+	int label;
+
+	/**
+	 * make room for more points.
+	 * @param before the number of ints needed before the first.
+	 * @param after the number of ints needed after the end.
+	 */
+	void makeRoom(int before, int after)
+	{
+	    if ((first >= before) && (end + after <= points.length))
+		return;
+	    int length = end - first;
+	    int size = Math.max(points.length * 2, 2 * (length + before + after));
+	    int grown[] = new int[size];
+	    int newFirst = ((size - length - before - after) / 2 + before) & ~1;
+	    System.arraycopy(points, first, grown, newFirst, length);
+	    points = grown;
+	    first = newFirst;
+	    end = newFirst + length;
+	} /* makeRoom() */
+
+	/**
+	 * add a point at the end.
+	 * @param x the x of the point.
+	 * @param y the y of the point.
+	 */
+	void append(int x, int y)
+	{
+	    if ((end - first >= 4)
+		&& ((x - points[end - 2]) * (points[end - 1] - points[end - 3])
+		    == (y - points[end - 1]) * (points[end - 2] - points[end - 4])))
+	    { /* straight on: move the last point rather than add one */
+		points[end - 2] = x;
+		points[end - 1] = y;
+		return;
+	    } /* if end - first >= 4... */
+	    makeRoom(0, 2);
+	    points[end++] = x;
+	    points[end++] = y;
+	} /* append() */
+
+	/**
+	 * add a point at the start.
+	 * @param x the x of the point.
+	 * @param y the y of the point.
+	 */
+	void prepend(int x, int y)
+	{
+	    if ((end - first >= 4)
+		&& ((x - points[first]) * (points[first + 3] - points[first + 1])
+		    == (y - points[first + 1]) * (points[first + 2] - points[first])))
+	    {
+		points[first] = x;
+		points[first + 1] = y;
+		return;
+	    } /* if end - first >= 4... */
+	    makeRoom(2, 0);
+	    points[--first] = y;
+	    points[--first] = x;
+	} /* prepend() */
+
+	/**
+	 * add the points of another line at the end.
+	 * @param chain the other line, which starts where this one ends.
+	 */
+	void append(Chain chain)
+	{
+	    int length = chain.end - chain.first;
+	    makeRoom(0, length);
+	    System.arraycopy(chain.points, chain.first, points, end, length);
+	    end += length;
+	} /* append() */
+
+	/**
+	 * add the points of another line at the start.
+	 * @param chain the other line, which ends where this one starts.
+	 */
+	void prepend(Chain chain)
+	{
+	    int length = chain.end - chain.first;
+	    makeRoom(length, 0);
+	    first -= length;
+	    System.arraycopy(chain.points, chain.first, points, first, length);
+	} /* prepend() */
+    } /* class Chain */
+
+    /**
+     * create a new CoverageVectorizer.
+     * @param result a viewshed or coverage result file.
+     * @param value the value of the cells to make polygons of, such as
+     * OutOfCoreViewshed.VISIBLE.
+     */
+    public CoverageVectorizer(TileFile result, byte value)
+    {
+	this.result = result;
+	this.value = value;
+	columns = result.getColumns();
+	rows = result.getRows();
+    } /* CoverageVectorizer constructor */
+
+    /**
+     * set how far a simplified boundary may stray from the cells.
+     * @param tolerance the distance in cells; 0 keeps every corner.
+     */
+    public void setTolerance(float tolerance)
+    {
+	this.tolerance = tolerance;
+    } /* setTolerance() */
+
+    /**
+     * find the polygons and write them.
+     * @param sink where to write the polygons.  it is not closed.
+     * @param statusBar the StatusBar to show progress on, or null.
+     * @exception IOException if the result cannot be read or a polygon
+     * cannot be written.
+     */
+    public void run(PolygonSink sink, StatusBar statusBar) throws IOException
+    {
+	this.sink = sink;
+	/* the rows are padded by an empty cell all round, so every line closes */
+	int width = columns + 2;
+	int below[] = new int[width];
+	int above[] = new int[width];
+	int swap[];
+	int segments[];
+	int row, column, corners, label, i;
+	long base;
+	long names[] = new long[4];
+	for (row = 0; row <= rows; row++)
+	{
+	    /* the squares between padded rows row and row + 1 */
+	    labelRow(row, below, above);
+	    base = 2L * row * width;
+	    for (column = 0; column <= columns; column++)
+	    {
+		corners = ((below[column] != 0) ? 1 : 0)
+		    | ((below[column + 1] != 0) ? 2 : 0)
+		    | ((above[column + 1] != 0) ? 4 : 0)
+		    | ((above[column] != 0) ? 8 : 0);
+		if ((corners == 0) || (corners == 15))
+		    continue;
+		label = (below[column] != 0) ? below[column]
+		    : (below[column + 1] != 0) ? below[column + 1]
+		    : (above[column + 1] != 0) ? above[column + 1] : above[column];
+		names[SOUTH] = base + 2L * column;
+		names[EAST] = base + 2L * column + 3;
+		names[NORTH] = base + 2L * (width + column);
+		names[WEST] = base + 2L * column + 1;
+		segments = SEGMENTS[corners];
+		for (i = 0; i < segments.length; i += 2)
+		{
+		    addSegment(names[segments[i]],
+			       2 * (column - 1) + EDGE_X[segments[i]],
+			       2 * (row - 1) + EDGE_Y[segments[i]],
+			       names[segments[i + 1]],
+			       2 * (column - 1) + EDGE_X[segments[i + 1]],
+			       2 * (row - 1) + EDGE_Y[segments[i + 1]],
+			       label);
+		} /* for i */
+	    } /* for column */
+	    swap = below;
+	    below = above;
+	    above = swap;
+	    if (statusBar != null)
+		statusBar.updateProgress(row * 100 / (rows + 1));
+	} /* for row */
+	if (statusBar != null)
+	    statusBar.updateProgress(0);
+    } /* run() */
+
+    /**
+     * label the cells of a row that have the value, giving cells that touch
+     * cells of the row below, or each other, the same area.
+     * @param row the row to label, in the result.
+     * @param below the labels of the row below, padded.
+     * @param above where to put the labels of the row, padded.
+     * @exception IOException if the result cannot be read.
+     */
+    void labelRow(int row, int below[], int above[]) throws IOException
+    {
+	int column, label, k;
+	Arrays.fill(above, 0);
+	if (row >= rows)
+	    return;
+	for (column = 1; column <= columns; column++)
+	{
+	    if (result.getByte(column - 1, row) != value)
+		continue;
+	    label = 0;
+	    for (k = 0; k < 4; k++)
+	    {
+		int neighbor = (k == 0) ? above[column - 1] : below[column + k - 2];
+		if (neighbor == 0)
+		    continue;
+		if (label == 0)
+		    label = neighbor;
+		else
+		    union(label, neighbor);
+	    } /* for k */
+	    if (label == 0)
+	    {
+		if (labelCount == parents.length)
+		{
+		    int grown[] = new int[parents.length * 2];
+		    System.arraycopy(parents, 0, grown, 0, labelCount);
+		    parents = grown;
+		} /* if labelCount == parents.length */
+		label = labelCount++;
+		parents[label] = label;
+	    } /* if label == 0 */
+	    above[column] = label;
+	} /* for column */
+    } /* labelRow() */
+
+    /**
+     * find the label an area is known by now.
+     * @param label a label given to part of the area.
+     * @return the label of the whole area so far.
+     */
+    int find(int label)
+    {
+	while (parents[label] != label)
+	{
+	    parents[label] = parents[parents[label]];
+	    label = parents[label];
+	} /* while */
+	return label;
+    } /* find() */
+
+    /**
+     * join two parts of an area, and the holes found in them.
+     * @param a a label of one part.
+     * @param b a label of the other.
+     */
+    void union(int a, int b)
+    {
+	a = find(a);
+	b = find(b);
+	if (a == b)
+	    return;
+	parents[b] = a;
+	Vector<double[]> moved = holes.remove(b);
+	if (moved != null)
+	{
+	    Vector<double[]> waiting = holes.get(a);
+	    if (waiting == null)
+		holes.put(a, moved);
+	    else
+		waiting.addAll(moved);
+	} /* if moved != null */
+    } /* union() */
+
+    /**
+     * add a segment, joining it to the lines that end where it starts and
+     * start where it ends.
+     * @param from the name of the edge the segment starts on.
+     * @param fromX the x of its start, in half cells.
+     * @param fromY the y of its start, in half cells.
+     * @param to the name of the edge the segment ends on.
+     * @param toX the x of its end, in half cells.
+     * @param toY the y of its end, in half cells.
+     * @param label the label of a cell on its left.
+     * @exception IOException if a polygon cannot be written.
+     */
+    void addSegment(long from, int fromX, int fromY, long to, int toX, int toY, int label) throws IOException
+    {
+	Chain tail = tails.remove(from);
+	Chain head = heads.remove(to);
+	if ((tail == null) && (head == null))
+	{
+	    Chain chain = new Chain();
+	    chain.append(fromX, fromY);
+	    chain.append(toX, toY);
+	    chain.headName = from;
+	    chain.tailName = to;
+	    chain.label = label;
+	    heads.put(from, chain);
+	    tails.put(to, chain);
+	} /* if tail == null... */
+	else if (head == null)
+	{
+	    tail.append(toX, toY);
+	    tail.tailName = to;
+	    tails.put(to, tail);
+	} /* if head == null */
+	else if (tail == null)
+	{
+	    head.prepend(fromX, fromY);
+	    head.headName = from;
+	    heads.put(from, head);
+	} /* if tail == null */
+	else if (tail == head)
+	{
+	    tail.append(toX, toY);
+	    closeRing(tail);
+	} /* if tail == head */
+	else if (tail.end - tail.first >= head.end - head.first)
+	{ /* copy the shorter line into the longer */
+	    tail.append(head);
+	    tail.tailName = head.tailName;
+	    tails.put(tail.tailName, tail);
+	} /* if tail.end - tail.first... */
+	else
+	{
+	    head.prepend(tail);
+	    head.headName = tail.headName;
+	    head.label = tail.label;
+	    heads.put(head.headName, head);
+	} /* else */
+    } /* addSegment() */
+
+    /**
+     * simplify a ring that has closed, and write it with its holes if it is
+     * a boundary or keep it until its boundary closes if it is a hole.
+     * @param chain the ring, with its last point the same as its first.
+     * @exception IOException if the polygon cannot be written.
+     */
+    void closeRing(Chain chain) throws IOException
+    {
+	long area = 0;
+	int i;
+	for (i = chain.first; i < chain.end - 2; i += 2)
+	{
+	    area += (long) chain.points[i] * chain.points[i + 3] - (long) chain.points[i + 2] * chain.points[i + 1];
+	} /* for i */
+	double ring[] = simplify(chain);
+	int label = find(chain.label);
+	if (area < 0)
+	{ /* a hole */
+	    if (ring == null)
+		return;
+	    Vector<double[]> waiting = holes.get(label);
+	    if (waiting == null)
+	    {
+		waiting = new Vector<double[]>();
+		holes.put(label, waiting);
+	    } /* if waiting == null */
+	    waiting.addElement(ring);
+	    return;
+	} /* if area < 0 */
+	Vector<double[]> inside = holes.remove(label);
+	if (ring == null)
+	    return;
+	double rings[][] = new double[1 + ((inside == null) ? 0 : inside.size())][];
+	rings[0] = ring;
+	for (i = 1; i < rings.length; i++)
+	{
+	    rings[i] = inside.elementAt(i - 1);
+	} /* for i */
+	for (i = 0; i < rings.length; i++)
+	{
+	    pointCount += rings[i].length / 2;
+	} /* for i */
+	ringCount += rings.length;
+	polygonCount++;
+	sink.writePolygon(rings);
+    } /* closeRing() */
+
+    /**
+     * simplify a closed ring by Douglas-Peucker, splitting it at its first
+     * point and the point farthest from that, and turn it into degrees.
+     * @param chain the ring, with its last point the same as its first.
+     * @return the simplified ring as longitude, latitude pairs, or null if
+     * it is smaller than the tolerance.
+     */
+    double[] simplify(Chain chain)
+    {
+	int points[] = chain.points;
+	int first = chain.first;
+	int count = (chain.end - first) / 2;
+	boolean keep[] = new boolean[count];
+	/* the tolerance is in cells, the points in half cells */
+	double limit = 4.0 * tolerance * tolerance;
+	int farthest = 0;
+	long best = -1;
+	long dx, dy;
+	int i;
+	for (i = 1; i < count - 1; i++)
+	{
+	    dx = points[first + 2 * i] - points[first];
+	    dy = points[first + 2 * i + 1] - points[first + 1];
+	    if (dx * dx + dy * dy > best)
+	    {
+		best = dx * dx + dy * dy;
+		farthest = i;
+	    } /* if dx * dx... */
+	} /* for i */
+	keep[0] = true;
+	keep[farthest] = true;
+	keep[count - 1] = true;
+	int stack[] = new int[64];
+	int top = 0;
+	stack[top++] = 0;
+	stack[top++] = farthest;
+	stack[top++] = farthest;
+	stack[top++] = count - 1;
+	int a, b, worst;
+	double ax, ay, bx, by, lengthSquared, t, px, py, distance, worstDistance;
+	while (top > 0)
+	{
+	    b = stack[--top];
+	    a = stack[--top];
+	    ax = points[first + 2 * a];
+	    ay = points[first + 2 * a + 1];
+	    bx = points[first + 2 * b] - ax;
+	    by = points[first + 2 * b + 1] - ay;
+	    lengthSquared = bx * bx + by * by;
+	    worst = -1;
+	    worstDistance = limit;
+	    for (i = a + 1; i < b; i++)
+	    { /* the distance from the segment a-b */
+		px = points[first + 2 * i] - ax;
+		py = points[first + 2 * i + 1] - ay;
+		t = (lengthSquared == 0.0) ? 0.0 : Math.max(0.0, Math.min(1.0, (px * bx + py * by) / lengthSquared));
+		px -= t * bx;
+		py -= t * by;
+		distance = px * px + py * py;
+		if (distance > worstDistance)
+		{
+		    worstDistance = distance;
+		    worst = i;
+		} /* if distance > worstDistance */
+	    } /* for i */
+	    if (worst < 0)
+		continue;
+	    keep[worst] = true;
+	    if (top + 4 > stack.length)
+	    {
+		int grown[] = new int[stack.length * 2];
+		System.arraycopy(stack, 0, grown, 0, top);
+		stack = grown;
+	    } /* if top + 4 > stack.length */
+	    stack[top++] = a;
+	    stack[top++] = worst;
+	    stack[top++] = worst;
+	    stack[top++] = b;
+	} /* while */
+	int kept = 0;
+	for (i = 0; i < count; i++)
+	{
+	    if (keep[i])
+		kept++;
+	} /* for i */
+	/* a ring needs three corners and its closing point */
+	if (kept < 4)
+	    return null;
+	double ring[] = new double[2 * kept];
+	double west = result.getSWLongitude();
+	double south = result.getSWLatitude();
+	double xResolution = result.getXResolution() / 2.0;
+	double yResolution = result.getYResolution() / 2.0;
+	int k = 0;
+	for (i = 0; i < count; i++)
+	{
+	    if (keep[i])
+	    {
+		ring[k++] = (west + points[first + 2 * i] * xResolution) / 3600.0;
+		ring[k++] = (south + points[first + 2 * i + 1] * yResolution) / 3600.0;
+	    } /* if keep[i] */
+	} /* for i */
+	return ring;
+    } /* simplify() */
+
+    /**
+     * get the number of polygons written.
+     * @return the number of polygons.
+     */
+    public int getPolygonCount()
+    {
+	return polygonCount;
+    } /* getPolygonCount() */
+
+    /**
+     * get the number of rings written, boundaries and holes.
+     * @return the number of rings.
+     */
+    public int getRingCount()
+    {
+	return ringCount;
+    } /* getRingCount() */
+
+    /**
+     * get the number of points written.
+     * @return the number of points.
+     */
+    public long getPointCount()
+    {
+	return pointCount;
+    } /* getPointCount() */
+} /* class CoverageVectorizer */
@@ -0,0 +1,251 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.BitSet;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * a class that serves coverage calculations to a CoverageCoordinator over a
+ * socket.  each worker runs in its own JVM and maps the same tile file of
+ * elevations, so the operating system shares one copy of the terrain
+ * between them, and one worker's garbage collection does not stall the
+ * others.  a worker serves one coordinator connection at a time.  the
+ * protocol has no authentication or encryption, so anyone who can reach
+ * the port can use the worker; it listens on this host only unless told
+ * otherwise, and should only be opened to other hosts on a trusted network.
+ */
+public class CoverageWorker implements Runnable
+{
+    /**
+     * request code to end the connection.
+     */
+    public static final int QUIT = 0;
+    /**
+     * request code to calculate a sector of rays.  the reply is the
+     * deflated bit sets of cells reached and cells shadowed.
+     */
+    public static final int SECTOR = 1;
+    /**
+     * request code to calculate full coverage from a candidate site.  the
+     * reply is the number of cells that can see the site.
+     */
+    public static final int SITE = 2;
+    /**
+     * the most rays a request may ask for, 3600 to the degree.
+     */
+    public static final int MAXIMUM_RAYS = 360 * 3600;
+    /**
+     * the most corners a request's area may have.
+     */
+    public static final int MAXIMUM_AREA = 1 << 20;
+    MappedTerrain terrain;
+    Socket socket;
+    GeoCoordinate area[];
+    PolygonMask mask;
+
+    /**
+     * create a new CoverageWorker for one connection.
+     * @param terrain the elevations to calculate against.
+     * @param socket the connection to the coordinator.
+     */
+    CoverageWorker(MappedTerrain terrain, Socket socket)
+    {
+	this.terrain = terrain;
+	this.socket = socket;
+    } /* CoverageWorker constructor */
+
+    /**
+     * listen for coordinators and serve them, forever.
+     * @param tileFileName the tile file of elevations.
+     * @param port the TCP port to listen on.
+     * @param bindAddress the address to listen on, or null for every
+     * address of this host.
+     * @exception IOException if the terrain cannot be mapped or is too big,
+     * or the port cannot be opened.
+     */
+    public static void serve(String tileFileName, int port, InetAddress bindAddress) throws IOException
+    {
+	MappedTerrain terrain = new MappedTerrain(tileFileName);
+	if (!RadialCoverage.fits(terrain))
+	    throw new IOException(tileFileName + " is too big for a radial coverage");
+	ServerSocket serverSocket = new ServerSocket(port, 4, bindAddress);
+	System.out.println("worker listening on " + serverSocket.getLocalSocketAddress());
+	while (true)
+	{
+	    new CoverageWorker(terrain, serverSocket.accept()).run();
+	} /* while */
+    } /* serve() */
+
+    /**
+     * serve requests from the coordinator until it quits or goes away.  a
+     * request that makes no sense ends the connection, and the worker goes
+     * on to the next one.
+     */
+    public void run()
+    {
+	try
+	{
+	    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	    int request;
+	    while ((request = in.readInt()) != QUIT)
+	    {
+		int latitude = in.readInt();
+		int x = in.readInt();
+		int y = in.readInt();
+		short amsl = in.readShort();
+		short receiverHeight = in.readShort();
+		float degreeIncrement = in.readFloat();
+		int distanceIncrement = in.readInt();
+		if ((x < 0) || (x >= terrain.getColumnCount()) || (y < 0) || (y >= terrain.getRowCount()))
+		    throw new IOException("site " + x + ", " + y + " is not on the terrain");
+		if (!(degreeIncrement >= 360.0f / MAXIMUM_RAYS) || !(degreeIncrement <= 360.0f))
+		    throw new IOException("bad degree increment " + degreeIncrement);
+		if (distanceIncrement <= 0)
+		    throw new IOException("bad distance increment " + distanceIncrement);
+		readArea(in);
+		RadialCoverage coverage = new RadialCoverage(terrain,
+							     latitude,
+							     x,
+							     y,
+							     amsl,
+							     receiverHeight,
+							     degreeIncrement,
+							     distanceIncrement);
+		coverage.setMask(mask);
+		BitSet reached = new BitSet();
+		BitSet shadowed = new BitSet();
+		switch (request)
+		{
+		    case SECTOR:
+			int firstRay = in.readInt();
+			int lastRay = in.readInt();
+			if ((firstRay < 0) || (firstRay > lastRay) || (lastRay > coverage.getRayCount()))
+			    throw new IOException("bad rays " + firstRay + " to " + lastRay);
+			coverage.calculate(firstRay, lastRay, reached, shadowed);
+			writeBits(out, reached);
+			writeBits(out, shadowed);
+			break;
+
+		    case SITE:
+			coverage.calculate(0, coverage.getRayCount(), reached, shadowed);
+			out.writeInt(RadialCoverage.countVisible(reached, shadowed));
+			break;
+
+		    default:
+			throw new IOException("unknown request " + request);
+		} /* switch */
+		out.flush();
+	    } /* while */
+	} /* try */
+	catch (IOException e)
+	{
+	    System.err.println("worker: " + e.toString());
+	}
+	catch (RuntimeException e)
+	{ /* a request this worker could not handle; the next coordinator may be fine */
+	    System.err.println("worker: " + e.toString());
+	}
+	finally
+	{
+	    try
+	    {
+		socket.close();
+	    } /* try */
+	    catch (IOException e)
+	    { /* it is gone either way */
+	    }
+	}
+    } /* run() */
+
+    /**
+     * read the area a request is restricted to.  the mask is only made again
+     * when the area changes, which it seldom does within one connection.
+     * @param in the stream to read from.
+     * @exception IOException if the stream cannot be read, or the area has
+     * too many corners.
+     */
+    void readArea(DataInputStream in) throws IOException
+    {
+	int n = in.readInt();
+	if ((n < 0) || (n > MAXIMUM_AREA))
+	    throw new IOException("bad area of " + n + " corners");
+	GeoCoordinate newArea[] = new GeoCoordinate[n];
+	int i;
+	for (i = 0; i < n; i++)
+	{
+	    int latitude = in.readInt();
+	    newArea[i] = new GeoCoordinate(latitude, in.readInt());
+	} /* for i */
+	if (n == 0)
+	{
+	    area = null;
+	    mask = null;
+	    return;
+	} /* if n == 0 */
+	if ((area != null) && (area.length == n))
+	{
+	    for (i = 0; (i < n) && area[i].equals(newArea[i]); i++)
+		;
+	    if (i == n)
+		return;
+	} /* if area != null... */
+	area = newArea;
+	mask = new PolygonMask(area,
+			       terrain.getSWLatitude(),
+			       terrain.getSWLongitude(),
+			       terrain.getXResolution(),
+			       terrain.getYResolution(),
+			       terrain.getColumnCount(),
+			       terrain.getRowCount());
+    } /* readArea() */
+
+    /**
+     * write a bit set, deflated, preceded by its compressed length.
+     * @param out the stream to write to.
+     * @param bits the bit set to write.
+     * @exception IOException if the stream cannot be written.
+     */
+    static void writeBits(DataOutputStream out, BitSet bits) throws IOException
+    {
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	DeflaterOutputStream dout = new DeflaterOutputStream(buffer);
+	dout.write(bits.toByteArray());
+	dout.close();
+	out.writeInt(buffer.size());
+	buffer.writeTo(out);
+    } /* writeBits() */
+} /* class CoverageWorker */
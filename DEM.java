@@ -26,19 +26,23 @@ For more information, to submit bugs, software changes, etc., please contact
 */
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
 /**
  * class to represent a logical Digital Elevation Model.
  */
-public class DEM
+public class DEM implements ElevationSource
 {
     private static final int DEM_BUFFER_SIZE = 1024;
     /**
@@ -57,6 +61,20 @@ public class DEM
      * constant to select the South East corner of the DEM.
      */
     public static final int SE_CORNER = 3;
+    /**
+     * the name that marks a binary DEM file whose rows and columns are
+     * ints.  the real name follows it.
+     */
+    static final String WIDE_FORMAT = "\u0000DEM wide format";
+    /**
+     * the first int of a mapped DEM file, which no deflated file starts
+     * with.  the offset of the elevations and the header follow it.
+     */
+    static final int MAPPED_MAGIC = 0x44454d6d;
+    /**
+     * the elevations of a mapped DEM file start on a multiple of this.
+     */
+    static final int MAPPED_ALIGNMENT = 4096;
     String fileName;
     String name;
     byte units;
@@ -66,9 +84,13 @@ public class DEM
     byte xResolution;
     byte yResolution;
     byte zResolution;
-    short rows;
-    short columns;
-    short elevations[][];
+    int rows;
+    int columns;
+    ElevationGrid grid;
+    ElevationPyramid pyramid;
+    ElevationHistogram histogram;
+    /* the results of stencil kernels, by kernel name */
+    LinkedHashMap<String, byte[]> derived = new LinkedHashMap<String, byte[]>();
     DEMmain demMain;
     StatusBar statusBar;
     
@@ -89,7 +111,10 @@ public class DEM
     {
 	this.fileName = fileName;
 	this.demMain = demMain;
-        statusBar = demMain.statusBar;
+	if (demMain != null)
+	{
+	    statusBar = demMain.statusBar;
+	} /* if demMain != null */
     } /* DEM constructor */
 
     /**
@@ -101,6 +126,15 @@ public class DEM
 	return fileName;
     } /* getFileName() */
 
+    /**
+     * get the elevations, for loops that read a lot of them.
+     * @return the grid of elevations.
+     */
+    public ElevationGrid getGrid()
+    {
+	return grid;
+    } /* getGrid() */
+
     /**
      * get the units of this DEM.
      * @return the units code.
@@ -114,7 +148,7 @@ public class DEM
      * get the number of rows in this DEM.
      * @return the number of rows.
      */
-    public short getRows()
+    public int getRows()
     {
         return rows;
     } /* getRows() */
@@ -123,11 +157,29 @@ public class DEM
      * get the number of columns in this DEM.
      * @return the number of columns.
      */
-    public short getColumns()
+    public int getColumns()
     {
         return columns;
     } /* getColumns() */
 
+    /**
+     * get the number of columns in this DEM, as an ElevationSource.
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return columns;
+    } /* getColumnCount() */
+
+    /**
+     * get the number of rows in this DEM, as an ElevationSource.
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return rows;
+    } /* getRowCount() */
+
     /**
      * get the minimum elevation of this DEM.
      * @return the minimum elevation.
@@ -137,6 +189,58 @@ public class DEM
         return minimumElevation;
     } /* getMinimumElevation */
     
+    /**
+     * get the number of points at each elevation.  a loaded DEM's are
+     * counted as it is loaded; a mapped DEM's are counted from its file the
+     * first time they are asked for, which reads every elevation and takes
+     * the lowest and highest elevations from the count.
+     * @return the histogram, or null if the DEM has not been loaded.
+     */
+    public synchronized ElevationHistogram getHistogram()
+    {
+	if ((histogram == null) && (grid != null))
+	{
+	    if (statusBar != null)
+	    {
+		statusBar.setMessage("counting elevations...");
+	    } /* if statusBar != null */
+	    ElevationHistogram counted = new ElevationHistogram();
+	    short row[] = new short[columns];
+	    int i, j;
+	    for (j = 0; j < rows; j++)
+	    {
+		if (statusBar != null)
+		{
+		    statusBar.updateProgress(j * 100 / rows);
+		} /* if statusBar != null */
+		grid.readRow(j, 0, row, 0, columns);
+		for (i = 0; i < columns; i++)
+		{
+		    counted.add(row[i]);
+		} /* for i */
+	    } /* for j */
+	    setHistogram(counted);
+	    if (statusBar != null)
+	    {
+		statusBar.setMessage("");
+		statusBar.updateProgress(0);
+	    } /* if statusBar != null */
+	} /* if histogram == null... */
+	return histogram;
+    } /* getHistogram() */
+
+    /**
+     * keep the histogram of the elevations just loaded, and take the
+     * lowest and highest elevations from it rather than from the header.
+     * @param histogram the histogram.
+     */
+    void setHistogram(ElevationHistogram histogram)
+    {
+	this.histogram = histogram;
+	minimumElevation = histogram.getMinimum();
+	maximumElevation = histogram.getMaximum();
+    } /* setHistogram() */
+
     /**
      * get the maximum elevation of this DEM.
      * @return the minimum elevation.
@@ -202,7 +306,97 @@ public class DEM
     {
 	return ((column >= 0) && (column < columns) && (row >= 0) && (row < rows));
     } /* validPoint */
+
+    /**
+     * work out the zoomed out levels of the DEM, on all the processors.
+     * @return the pyramid of levels.
+     */
+    public synchronized ElevationPyramid buildPyramid()
+    {
+	pyramid = new ElevationPyramid(grid);
+	if (statusBar != null)
+	{
+	    statusBar.setMessage("building zoom levels...");
+	} /* if statusBar != null */
+	pyramid.build(statusBar);
+	if (statusBar != null)
+	{
+	    statusBar.setMessage("");
+	} /* if statusBar != null */
+	return pyramid;
+    } /* buildPyramid() */
+
+    /**
+     * get the zoomed out levels of the DEM, working them out if they have
+     * not been yet.
+     * @return the pyramid of levels.
+     */
+    public synchronized ElevationPyramid getPyramid()
+    {
+	if (pyramid == null)
+	    buildPyramid();
+	return pyramid;
+    } /* getPyramid() */
     
+    /**
+     * get the distance between columns, at the middle of the DEM.
+     * @return the distance in meters.
+     */
+    public double getXSpacing()
+    {
+	double latitude = Math.toRadians((corners[SW_CORNER].getLatitude() + rows * yResolution / 2) / 3600.0);
+	return xResolution * GISCalculations.CIRCUMFERENCE_OF_EARTH
+	    / (double) GISCalculations.ARC_SECONDS_360_DEGREES * Math.cos(latitude);
+    } /* getXSpacing() */
+
+    /**
+     * get the distance between rows.
+     * @return the distance in meters.
+     */
+    public double getYSpacing()
+    {
+	return yResolution * GISCalculations.CIRCUMFERENCE_OF_EARTH
+	    / (double) GISCalculations.ARC_SECONDS_360_DEGREES;
+    } /* getYSpacing() */
+
+    /**
+     * get the results of a stencil kernel run over the DEM, running it the
+     * first time.  the results are kept until the DEM is loaded again.
+     * @param name the name of the kernel, one of Stencil.NAMES.
+     * @return the values, a row at a time from the south, or null if there
+     * is no kernel by that name or the DEM is too big for its values to
+     * fit in one array.
+     */
+    public synchronized byte[] getDerived(String name)
+    {
+	byte values[] = derived.get(name);
+	if (values == null)
+	{
+	    StencilKernel kernel = Stencil.getKernel(name, getXSpacing(), getYSpacing());
+	    if (kernel == null)
+		return null;
+	    if (!Stencil.fits(this))
+	    {
+		ErrorBox.report(demMain,
+				"Error!",
+				columns + " x " + rows + " is too big for a " + name + " product");
+		return null;
+	    } /* if !Stencil.fits(this) */
+	    if (statusBar != null)
+	    {
+		statusBar.setMessage("calculating " + name + "...");
+	    } /* if statusBar != null */
+	    values = Stencil.run(this, kernel, statusBar);
+	    derived.put(name, values);
+	    if (statusBar != null)
+	    {
+		statusBar.setMessage("");
+		statusBar.updateProgress(0);
+	    } /* if statusBar != null */
+	} /* if values == null */
+	return values;
+    } /* getDerived() */
+
     /**
      * get the elevation of a particular point in this DEM.
      * @param column the column number of the elevation. 
@@ -213,14 +407,14 @@ public class DEM
     {
 	if ((row < 0) || (row >= rows) || (column < 0) || (column >= columns))
 	{
-	    new ErrorBox(demMain,
-			 "Error!",
-			 "DEM.getElevation: column="+column+" row="+row+" columns="+columns+" rows="+rows);
+	    ErrorBox.report(demMain,
+			    "Error!",
+			    "DEM.getElevation: column="+column+" row="+row+" columns="+columns+" rows="+rows);
 	    return 0;
 	}
 	else
 	{
-	    return elevations[column][row];
+	    return grid.getElevation(column, row);
 	}
     } /* getElevation() */
     
@@ -235,14 +429,14 @@ public class DEM
 	int column = (gc.getLongitude() - corners[SW_CORNER].getLongitude()) / xResolution ;
 	if ((row < 0) || (row >= rows) || (column < 0) || (column >= columns))
 	{
-	    new ErrorBox(demMain,
-			 "Error!",
-			 "DEM.getElevation: column="+column+" row="+row+" columns="+columns+" rows="+rows);
+	    ErrorBox.report(demMain,
+			    "Error!",
+			    "DEM.getElevation: column="+column+" row="+row+" columns="+columns+" rows="+rows);
 	    return 0;
 	}
 	else
 	{
-	    return elevations[column][row];
+	    return grid.getElevation(column, row);
 	}
     } /* getElevation() */
     
@@ -268,25 +462,16 @@ public class DEM
         } /* if statusBar != null */
 	try
 	{
+	    checkNotMapped(demFileName);
 	    FileOutputStream fout = new FileOutputStream(demFileName);
             DeflaterOutputStream dout = new DeflaterOutputStream(fout);
 	    DataOutputStream out = new DataOutputStream(dout);
 	    int i, j;
-	    out.writeUTF(name);
-	    out.writeByte(units);
-	    for(i = 0; i < 4; i++)
-	    {
-		out.writeInt(corners[i].getLatitude());
-		out.writeInt(corners[i].getLongitude());
-	    } /* for i */
-	    out.writeShort(minimumElevation);
-	    out.writeShort(maximumElevation);
-	    out.writeByte(xResolution);
-	    out.writeByte(yResolution);
-	    out.writeByte(zResolution);
-	    out.writeShort(rows);
-	    out.writeShort(columns);
+	    writeHeader(out);
             int pctDone;
+	    /* the file is a column at a time, each written whole */
+	    byte column[] = new byte[2 * rows];
+	    short elevation;
 	    for (i=0; i < columns; i++)
 	    {
                 if (statusBar != null)
@@ -296,8 +481,11 @@ public class DEM
                 } /* if statusBar != null */
 		for (j = 0; j < rows; j++)
 		{
-		    out.writeShort(elevations[i][j]);
+		    elevation = grid.getElevation(i, j);
+		    column[2 * j] = (byte) (elevation >> 8);
+		    column[2 * j + 1] = (byte) elevation;
 		} /* for j */
+		out.write(column);
 	    } /* for i */
 	    out.close();
             dout.close();
@@ -305,16 +493,16 @@ public class DEM
 	} /* try */
 	catch (IOException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error saving " + demFileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error saving " + demFileName,
+			    e.toString());
 	    return false;
 	}
 	catch (SecurityException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error saving " + demFileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error saving " + demFileName,
+			    e.toString());
 	    return false;
 	}
         if (statusBar != null)
@@ -325,6 +513,87 @@ public class DEM
 	return true;
     } /* write() */
 
+    /**
+     * save the DEM data in a mapped DEM file: the header, then the
+     * elevations uncompressed, a row at a time from the south, so that
+     * map() can leave them on disk.
+     * @param mappedFileName the name of the file to save.
+     * @return true for successful save.
+     */
+    public boolean writeMapped(String mappedFileName)
+    {
+        if (statusBar != null)
+        {
+            statusBar.setMessage("Saving "+mappedFileName);
+        } /* if statusBar != null */
+	try
+	{
+	    checkNotMapped(mappedFileName);
+	    ByteArrayOutputStream header = new ByteArrayOutputStream();
+	    writeHeader(new DataOutputStream(header));
+	    int dataOffset = (8 + header.size() + MAPPED_ALIGNMENT - 1) / MAPPED_ALIGNMENT * MAPPED_ALIGNMENT;
+	    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mappedFileName)));
+	    out.writeInt(MAPPED_MAGIC);
+	    out.writeInt(dataOffset);
+	    header.writeTo(out);
+	    out.write(new byte[dataOffset - 8 - header.size()]);
+	    short row[] = new short[columns];
+	    byte bytes[] = new byte[2 * columns];
+	    int i, j;
+	    for (j = 0; j < rows; j++)
+	    {
+                if (statusBar != null)
+                {
+                    statusBar.updateProgress((int) (j * 100L / rows));
+                } /* if statusBar != null */
+		grid.readRow(j, 0, row, 0, columns);
+		for (i = 0; i < columns; i++)
+		{
+		    bytes[2 * i] = (byte) (row[i] >> 8);
+		    bytes[2 * i + 1] = (byte) row[i];
+		} /* for i */
+		out.write(bytes);
+	    } /* for j */
+	    out.close();
+	} /* try */
+	catch (IOException e)
+	{
+	    ErrorBox.report(demMain,
+			    "Error saving " + mappedFileName,
+			    e.toString());
+	    return false;
+	}
+	catch (SecurityException e)
+	{
+	    ErrorBox.report(demMain,
+			    "Error saving " + mappedFileName,
+			    e.toString());
+	    return false;
+	}
+        if (statusBar != null)
+        {
+            statusBar.setMessage("Saved  "+mappedFileName);
+            statusBar.updateProgress(0);
+        } /* if statusBar != null */
+	return true;
+    } /* writeMapped() */
+
+    /**
+     * make sure a file about to be written is not the one the elevations
+     * are mapped from, as cutting it short under the mapping would pull
+     * the elevations out from under the DEM.
+     * @param outputFileName the name of the file to write.
+     * @exception IOException if the elevations are mapped from that file.
+     */
+    void checkNotMapped(String outputFileName) throws IOException
+    {
+	if ((grid instanceof MappedElevationGrid)
+	    && new File(((MappedElevationGrid) grid).getFileName()).getCanonicalFile().equals(new File(outputFileName).getCanonicalFile()))
+	{
+	    throw new IOException(outputFileName + " is mapped by this DEM; save it to another file");
+	} /* if grid instanceof MappedElevationGrid... */
+    } /* checkNotMapped() */
+
     /**
      * read the DEM data from a file.
      * @param demFileName the name of the file to read.
@@ -342,6 +611,8 @@ public class DEM
      */
     public boolean read()
     {
+	if (isMapped())
+	    return map();
         if (statusBar != null)
         {
             statusBar.setMessage("Loading "+fileName);
@@ -353,25 +624,15 @@ public class DEM
             InflaterInputStream iin = new InflaterInputStream(fin);
 	    DataInputStream in = new DataInputStream(iin);
 	    int i, j, lat, lon;
-	    name = in.readUTF();
-	    units = in.readByte();
-	    corners = new GeoCoordinate[8];
-	    for(i = 0; i < 4; i++)
-	    {
-		lat = in.readInt();
-		lon = in.readInt();
-		corners[i] = new GeoCoordinate(lat, lon);
-	    } /* for i */
-	    minimumElevation = in.readShort();
-	    maximumElevation = in.readShort();
-	    xResolution = in.readByte();
-	    yResolution = in.readByte();
-	    zResolution = in.readByte();
-	    rows = in.readShort();
-	    columns = in.readShort();
-	    elevations = new short[columns][rows];
+	    readHeader(in);
+	    grid = ElevationGrid.create(columns, rows);
+	    pyramid = null;
+	    derived.clear();
             int pctDone;
 	    short elevation;
+	    /* the file is a column at a time, each read whole */
+	    byte column[] = new byte[2 * rows];
+	    ElevationHistogram counted = new ElevationHistogram();
 	    for (i = 0; i < columns; i++)
 	    {
                 if (statusBar != null)
@@ -379,35 +640,38 @@ public class DEM
                     pctDone = i * 100 / columns;
                     statusBar.updateProgress(pctDone);
                 } /* if statusBar != null */
+		in.readFully(column);
 		for (j = 0; j < rows; j++)
 		{
-		    elevation = in.readShort();
-		    elevations[i][j] = elevation;
+		    elevation = (short) ((column[2 * j] << 8) | (column[2 * j + 1] & 0xff));
+		    grid.setElevation(i, j, elevation);
+		    counted.add(elevation);
 		} /* for j */
 	    } /* for i */
+	    setHistogram(counted);
 	    in.close();
             iin.close();
             fin.close();
 	} /* try */
 	catch (FileNotFoundException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (IOException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (SecurityException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading " + fileName,
+			    e.toString());
 	    return false;
 	}
         if (statusBar != null)
@@ -418,6 +682,261 @@ public class DEM
 	return true;
     } /* read() */
 
+    /**
+     * open a mapped DEM file written by writeMapped().  only the header is
+     * read: the elevations are left in the file and brought in by the
+     * operating system as they are used, so this is quick however big the
+     * DEM is, and other processes mapping the same file share its pages.
+     * no histogram is counted until getHistogram() asks for one, so until
+     * then the lowest and highest elevations are the ones in the header.
+     * @return true for successful open.
+     */
+    public boolean map()
+    {
+        if (statusBar != null)
+        {
+            statusBar.setMessage("Mapping "+fileName);
+        } /* if statusBar != null */
+	try
+	{
+	    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+	    int dataOffset = readMappedHeader(in);
+	    in.close();
+	    grid = new MappedElevationGrid(fileName, dataOffset, columns, rows);
+	    pyramid = null;
+	    derived.clear();
+	    histogram = null;
+	} /* try */
+	catch (IOException e)
+	{
+	    ErrorBox.report(demMain,
+			    "Error mapping " + fileName,
+			    e.toString());
+	    return false;
+	}
+	catch (SecurityException e)
+	{
+	    ErrorBox.report(demMain,
+			    "Error mapping " + fileName,
+			    e.toString());
+	    return false;
+	}
+        if (statusBar != null)
+        {
+            statusBar.setMessage("Mapped " + fileName);
+        } /* if statusBar != null */
+	return true;
+    } /* map() */
+
+    /**
+     * find out whether the DEM's file is a mapped DEM file rather than a
+     * deflated one.
+     * @return true if it is a mapped DEM file, false if it is not or
+     * cannot be read.
+     */
+    public boolean isMapped()
+    {
+	try
+	{
+	    DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+	    int magic = in.readInt();
+	    in.close();
+	    return magic == MAPPED_MAGIC;
+	} /* try */
+	catch (IOException e)
+	{
+	    return false;
+	}
+	catch (SecurityException e)
+	{
+	    return false;
+	}
+    } /* isMapped() */
+
+    /**
+     * read the header of a mapped DEM file.
+     * @param in the stream to read the header from, at the start of the file.
+     * @return the offset in the file of the first elevation.
+     * @exception IOException if the header cannot be read.
+     */
+    int readMappedHeader(DataInputStream in) throws IOException
+    {
+	if (in.readInt() != MAPPED_MAGIC)
+	{
+	    throw new IOException(fileName + " is not a mapped DEM file");
+	} /* if readInt() != MAPPED_MAGIC */
+	int dataOffset = in.readInt();
+	readHeader(in);
+	return dataOffset;
+    } /* readMappedHeader() */
+
+    /**
+     * read the header of a binary DEM file, leaving the stream positioned
+     * at the first elevation.
+     * @param in the (inflated) stream to read the header from.
+     * @exception IOException if the header cannot be read.
+     */
+    void readHeader(DataInputStream in) throws IOException
+    {
+	int i, lat, lon;
+	name = in.readUTF();
+	boolean wide = name.equals(WIDE_FORMAT);
+	if (wide)
+	{
+	    name = in.readUTF();
+	} /* if wide */
+	units = in.readByte();
+	corners = new GeoCoordinate[8];
+	for(i = 0; i < 4; i++)
+	{
+	    lat = in.readInt();
+	    lon = in.readInt();
+	    corners[i] = new GeoCoordinate(lat, lon);
+	} /* for i */
+	minimumElevation = in.readShort();
+	maximumElevation = in.readShort();
+	xResolution = in.readByte();
+	yResolution = in.readByte();
+	zResolution = in.readByte();
+	if (wide)
+	{
+	    rows = in.readInt();
+	    columns = in.readInt();
+	} /* if wide */
+	else
+	{
+	    /* unsigned, to recover files merged past 32767 before there were ints */
+	    rows = in.readUnsignedShort();
+	    columns = in.readUnsignedShort();
+	} /* if wide */
+	if ((rows <= 0) || (columns <= 0))
+	{
+	    throw new IOException("bad DEM size " + columns + " x " + rows);
+	} /* if rows <= 0... */
+    } /* readHeader() */
+
+    /**
+     * write the header of a binary DEM file, in the form readHeader()
+     * reads.  a DEM whose rows and columns both fit in a short is written
+     * as DEMs always have been, so older versions can still read it;
+     * otherwise the header starts with WIDE_FORMAT in place of the name,
+     * then the name, and the rows and columns are ints.
+     * @param out the (deflated) stream to write the header to.
+     * @exception IOException if the header cannot be written.
+     */
+    void writeHeader(DataOutputStream out) throws IOException
+    {
+	int i;
+	boolean wide = (rows > Short.MAX_VALUE) || (columns > Short.MAX_VALUE);
+	if (wide)
+	{
+	    out.writeUTF(WIDE_FORMAT);
+	} /* if wide */
+	out.writeUTF(name);
+	out.writeByte(units);
+	for(i = 0; i < 4; i++)
+	{
+	    out.writeInt(corners[i].getLatitude());
+	    out.writeInt(corners[i].getLongitude());
+	} /* for i */
+	out.writeShort(minimumElevation);
+	out.writeShort(maximumElevation);
+	out.writeByte(xResolution);
+	out.writeByte(yResolution);
+	out.writeByte(zResolution);
+	if (wide)
+	{
+	    out.writeInt(rows);
+	    out.writeInt(columns);
+	} /* if wide */
+	else
+	{
+	    out.writeShort(rows);
+	    out.writeShort(columns);
+	} /* if wide */
+    } /* writeHeader() */
+
+    /**
+     * read only the header of the DEM's binary file.  the elevations are
+     * not loaded, so this is cheap even for DEMs larger than the heap.
+     * @return true for successful read.
+     */
+    public boolean readHeader()
+    {
+	try
+	{
+	    if (isMapped())
+	    {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		readMappedHeader(in);
+		in.close();
+	    } /* if isMapped() */
+	    else
+	    {
+		DataInputStream in = new DataInputStream(new InflaterInputStream(new FileInputStream(fileName)));
+		readHeader(in);
+		in.close();
+	    } /* if isMapped() */
+	} /* try */
+	catch (IOException e)
+	{
+	    ErrorBox.report(demMain,
+			       "Error reading " + fileName,
+			       e.toString());
+	    return false;
+	}
+	return true;
+    } /* readHeader() */
+
+    /**
+     * open the DEM's file to read its elevations a column at a time, and
+     * read its header.  a deflated file is a column at a time already, and
+     * is left at its first elevation; a mapped file is mapped, and its
+     * columns are read from the grid.
+     * @return the stream to read the columns from, or null if the file is
+     * mapped.
+     * @exception IOException if the file cannot be opened or the header read.
+     */
+    DataInputStream openColumns() throws IOException
+    {
+	if (isMapped())
+	{
+	    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+	    int dataOffset = readMappedHeader(in);
+	    in.close();
+	    grid = new MappedElevationGrid(fileName, dataOffset, columns, rows);
+	    return null;
+	} /* if isMapped() */
+	DataInputStream in = new DataInputStream(new InflaterInputStream(new FileInputStream(fileName)));
+	readHeader(in);
+	return in;
+    } /* openColumns() */
+
+    /**
+     * read the next column of elevations from a file opened by
+     * openColumns(), as the bytes a deflated file holds, high byte first.
+     * @param in the stream openColumns() returned.
+     * @param column the column, the one after the last read.
+     * @param bytes where to put the column's 2 * rows bytes.
+     * @exception IOException if the column cannot be read.
+     */
+    void readColumn(DataInputStream in, int column, byte bytes[]) throws IOException
+    {
+	if (in != null)
+	{
+	    in.readFully(bytes, 0, 2 * rows);
+	    return;
+	} /* if in != null */
+	int j;
+	short elevation;
+	for (j = 0; j < rows; j++)
+	{
+	    elevation = grid.getElevation(column, j);
+	    bytes[2 * j] = (byte) (elevation >> 8);
+	    bytes[2 * j + 1] = (byte) elevation;
+	} /* for j */
+    } /* readColumn() */
+
     /**
      * extract DEM data for a given region from a file.
      * @param swCoordinate the coordinates fo the SW corner of the new DEM.
@@ -434,26 +953,8 @@ public class DEM
 
 	try
 	{
-            FileInputStream fin = new FileInputStream(fileName);
-            InflaterInputStream iin = new InflaterInputStream(fin);
-	    DataInputStream in = new DataInputStream(iin);
+	    DataInputStream in = openColumns();
 	    int i, j, lat, lon;
-	    name = in.readUTF();
-	    units = in.readByte();
-	    corners = new GeoCoordinate[8];
-	    for(i = 0; i < 4; i++)
-	    {
-		lat = in.readInt();
-		lon = in.readInt();
-		corners[i] = new GeoCoordinate(lat, lon);
-	    } /* for i */
-	    minimumElevation = in.readShort();
-	    maximumElevation = in.readShort();
-	    xResolution = in.readByte();
-	    yResolution = in.readByte();
-	    zResolution = in.readByte();
-	    rows = in.readShort();
-	    columns = in.readShort();
 
 	    int x1, x2, y1, y2;
 	    int swLat, swLon, neLat, neLon;
@@ -481,90 +982,102 @@ public class DEM
 		(y2 < 0) ||
 		(y2 > rows))
 	    {
-		new ErrorBox(demMain,
-			     "Error extracting from " + fileName,
-			     "Coordinates are not on the DEM:\n"+
-			     "SW: " + corners[SW_CORNER].toString() + "\n" +
-			     "NE: " + corners[NE_CORNER].toString());
+		ErrorBox.report(demMain,
+				"Error extracting from " + fileName,
+				"Coordinates are not on the DEM:\n"+
+				"SW: " + corners[SW_CORNER].toString() + "\n" +
+				"NE: " + corners[NE_CORNER].toString());
 		return false;
 	    } /* if x1... */
 
 	    int x, y;
 	    
-	    short newColumns = (short) (x2 - x1 + 1);
-	    short newRows = (short) (y2 - y1 + 1);
-	    elevations = new short[newColumns][newRows];
+	    int newColumns = x2 - x1 + 1;
+	    int newRows = y2 - y1 + 1;
+	    ElevationGrid extracted = ElevationGrid.create(newColumns, newRows);
+	    pyramid = null;
+	    derived.clear();
             int pctDone;
-            int minElev = 0;
-            int maxElev = 0;
 	    short elevation;
-	    x = 0;
-	    for (i = 0; i < columns; i++)
-	    {
-		y = 0;
-		
-                if (statusBar != null)
-                {
-                    pctDone = i * 100 / columns;
-                    statusBar.updateProgress(pctDone);
-                } /* if statusBar != null */
-		for (j = 0; j < rows; j++)
+	    ElevationHistogram counted = new ElevationHistogram();
+	    if (in == null)
+	    { /* a mapped file is a row at a time, so only the rows wanted are read */
+		int count = Math.min(x2, columns - 1) - x1 + 1;
+		int lastRow = Math.min(y2, rows - 1);
+		short row[] = new short[newColumns];
+		for (j = y1; j <= lastRow; j++)
 		{
-		    elevation = in.readShort();
-		    if ((i >= x1) &&
-			(i <= x2) &&
-			(j >= y1) &&
-			(j <= y2))
+		    if (statusBar != null)
+		    {
+			pctDone = (j - y1) * 100 / newRows;
+			statusBar.updateProgress(pctDone);
+		    } /* if statusBar != null */
+		    grid.readRow(j, x1, row, 0, count);
+		    extracted.writeRow(j - y1, 0, row, 0, count);
+		    for (i = 0; i < count; i++)
 		    {
-			if ((x == 0) &&
-			    (y == 0))
-			{ /* first point */
-			    minElev = elevation;
-			    maxElev = elevation;
-			} /* if x == 0 && y == 0 */
-			else
-			{ /* not first point */
-			    minElev = Math.min(elevation, minElev);
-			    maxElev = Math.max(elevation, maxElev);
-			} /* if x == 0 && y == 0 */
-			elevations[x][y++] = elevation;
-		    } /* if i >= x1 */
+			counted.add(row[i]);
+		    } /* for i */
 		} /* for j */
-		if ((i >= x1) &&
-		    (i <= x2))
-		    x++;
-	    } /* for i */
+	    } /* if in == null */
+	    else
+	    {
+		x = 0;
+		for (i = 0; i < columns; i++)
+		{
+		    y = 0;
+		
+		    if (statusBar != null)
+		    {
+			pctDone = i * 100 / columns;
+			statusBar.updateProgress(pctDone);
+		    } /* if statusBar != null */
+		    for (j = 0; j < rows; j++)
+		    {
+			elevation = in.readShort();
+			if ((i >= x1) &&
+			    (i <= x2) &&
+			    (j >= y1) &&
+			    (j <= y2))
+			{
+			    counted.add(elevation);
+			    extracted.setElevation(x, y++, elevation);
+			} /* if i >= x1 */
+		    } /* for j */
+		    if ((i >= x1) &&
+			(i <= x2))
+			x++;
+		} /* for i */
+		in.close();
+	    } /* if in == null */
 	    columns = newColumns;
 	    rows = newRows;
-            minimumElevation = (short) minElev;
-            maximumElevation = (short) maxElev;
+	    grid = extracted;
+	    setHistogram(counted);
 	    corners[SW_CORNER] = new GeoCoordinate(swLat, swLon);
 	    corners[NW_CORNER] = new GeoCoordinate(neLat, swLon);
 	    corners[NE_CORNER] = new GeoCoordinate(neLat, neLon);
 	    corners[SE_CORNER] = new GeoCoordinate(swLat, neLon);
-	    in.close();
-            iin.close();
-            fin.close();
 	} /* try */
 	catch (FileNotFoundException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error extracting from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error extracting from " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (IOException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error extracting from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error extracting from " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (SecurityException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error extracting from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error extracting from " + fileName,
+			    e.toString());
 	    return false;
 	}
         if (statusBar != null)
@@ -631,22 +1144,26 @@ public class DEM
 	    int testRows = Util.safeStringToInt(new String(buffer, 852, 6));
 	    if (testRows != 1)
 	    {
-		new ErrorBox(demMain,
-			 "Error reading (USGS) " + fileName,
-			 "Unsupported DEM file feature!");
+		ErrorBox.report(demMain,
+			    "Error reading (USGS) " + fileName,
+			    "Unsupported DEM file feature!");
 		return false;
 	    } /* if rows != 1  */
-	    columns = (short) Util.safeStringToInt(new String(buffer, 858, 6));
+	    columns = Util.safeStringToInt(new String(buffer, 858, 6));
 	    rows = columns; // particularly rude hack for 1 degreee DEMs only.
 
 	    /* read record type B (data "profiles") */
-	    elevations = new short[columns][rows];
+	    grid = ElevationGrid.create(columns, rows);
+	    pyramid = null;
+	    derived.clear();
 	    int i, j;
 	    int rowNum;
 	    boolean firstBlock = true;
 	    int bytesRead;
 	    int rowsThisBlock;
 	    int pctDone;
+	    short elevation;
+	    ElevationHistogram counted = new ElevationHistogram();
 	    /* read the profiles */
 	    for (i=0; i < columns; i++)
 	    {
@@ -671,32 +1188,36 @@ public class DEM
 		    } /* if rowNum == 0 */
 		    for (j=0; j < rowsThisBlock && rowNum < rows; j++)
 		    {
-			elevations[i][rowNum++] = (short) Util.safeStringToInt(new String(buffer, offset, 6));
+			elevation = (short) Util.safeStringToInt(new String(buffer, offset, 6));
+			grid.setElevation(i, rowNum++, elevation);
+			counted.add(elevation);
 			offset += 6;
 		    } /* for j */
 		} /* while */	
 	    } /* for i */
+	    /* the header's elevation range is not always right */
+	    setHistogram(counted);
 	    in.close();
 	} /* try */
 	catch (FileNotFoundException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading (USGS) from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading (USGS) from " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (IOException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading (USGS) from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading (USGS) from " + fileName,
+			    e.toString());
 	    return false;
 	}
 	catch (SecurityException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error reading (USGS) from " + fileName,
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error reading (USGS) from " + fileName,
+			    e.toString());
 	    return false;
 	}
         if (statusBar != null)
@@ -767,7 +1288,7 @@ public class DEM
 				String resultFile,
 				DEMmain demMain)
     {
-	StatusBar statusBar = demMain.statusBar;
+	StatusBar statusBar = (demMain != null) ? demMain.statusBar : null;
         if (statusBar != null)
         {
             statusBar.setMessage("Merging DEMs...");
@@ -775,71 +1296,50 @@ public class DEM
 
 	try
 	{
-	    String name1, name2;
-	    byte units1, units2;
-	    GeoCoordinate corners1[], corners2[];
-	    short minElev1, maxElev1, minElev2, maxElev2;
-	    short minimumElevation, maximumElevation;
-	    int i, j, lat, lon;
-	    byte xRes1, yRes1, zRes1, xRes2, yRes2, zRes2;
+	    DEM dem1 = new DEM(file1, null);
+	    DEM dem2 = new DEM(file2, null);
+	    DEM merged = new DEM(resultFile, null);
+	    int i, j;
 	    int rows1, columns1, rows2, columns2;
 	    int rows, columns;
 	    boolean snFlag = false;
 		
-            FileInputStream fin1 = new FileInputStream(file1);
-            InflaterInputStream iin1 = new InflaterInputStream(fin1);
-	    DataInputStream in1 = new DataInputStream(iin1);
-	    
-            FileInputStream fin2 = new FileInputStream(file2);
-            InflaterInputStream iin2 = new InflaterInputStream(fin2);
-	    DataInputStream in2 = new DataInputStream(iin2);
-	    
-	    name1 = in1.readUTF();
-	    units1 = in1.readByte();
-	    corners1 = new GeoCoordinate[4];
-	    for(i = 0; i < 4; i++)
-	    {
-		lat = in1.readInt();
-		lon = in1.readInt();
-		corners1[i] = new GeoCoordinate(lat, lon);
-	    } /* for i */
-	    minElev1 = in1.readShort();
-	    maxElev1 = in1.readShort();
-	    xRes1 = in1.readByte();
-	    yRes1 = in1.readByte();
-	    zRes1 = in1.readByte();
-	    rows1 = in1.readShort();
-	    columns1 = in1.readShort();
-	    
-	    name2 = in2.readUTF();
-	    units2 = in2.readByte();
-	    corners2 = new GeoCoordinate[4];
-	    for(i = 0; i < 4; i++)
+	    /* writing over an input would cut it short while it is read */
+	    File result = new File(resultFile).getCanonicalFile();
+	    if (result.equals(new File(file1).getCanonicalFile())
+		|| result.equals(new File(file2).getCanonicalFile()))
 	    {
-		lat = in2.readInt();
-		lon = in2.readInt();
-		corners2[i] = new GeoCoordinate(lat, lon);
-	    } /* for i */
-	    minElev2 = in2.readShort();
-	    maxElev2 = in2.readShort();
-	    xRes2 = in2.readByte();
-	    yRes2 = in2.readByte();
-	    zRes2 = in2.readByte();
-	    rows2 = in2.readShort();
-	    columns2 = in2.readShort();
-
-	    if ((xRes1 != xRes2) ||
-		(yRes1 != yRes2) ||
-		(zRes1 != zRes2) ||
-		(units1 != units2))
+		ErrorBox.report(demMain,
+				"Error merging!",
+				"The merged DEM cannot be written over one of the DEMs merged:\n" +
+				resultFile);
+		return false;
+	    } /* if result.equals(...) */
+	    if ((demMain != null) && (demMain.dem != null))
+		demMain.dem.checkNotMapped(resultFile);
+
+	    /* either may be mapped, and is then read through its grid */
+	    DataInputStream in1 = dem1.openColumns();
+	    DataInputStream in2 = dem2.openColumns();
+	    GeoCoordinate corners1[] = dem1.corners;
+	    GeoCoordinate corners2[] = dem2.corners;
+	    rows1 = dem1.rows;
+	    columns1 = dem1.columns;
+	    rows2 = dem2.rows;
+	    columns2 = dem2.columns;
+
+	    if ((dem1.xResolution != dem2.xResolution) ||
+		(dem1.yResolution != dem2.yResolution) ||
+		(dem1.zResolution != dem2.zResolution) ||
+		(dem1.units != dem2.units))
 	    {
-		    new ErrorBox(demMain,
-				 "Error merging!",
-				 "Files are not compatable (resolution or units):\n" +
-				 file1 + "\n" +
-				 file2);
+		    ErrorBox.report(demMain,
+				    "Error merging!",
+				    "Files are not compatable (resolution or units):\n" +
+				    file1 + "\n" +
+				    file2);
 		return false;
-	    } /* if xRes1 != xRes2... */
+	    } /* if xResolution != xResolution... */
 
 	    if (!corners1[SE_CORNER].equals(corners2[SW_CORNER]) ||
 		!corners1[NE_CORNER].equals(corners2[NW_CORNER]))
@@ -851,23 +1351,24 @@ public class DEM
 		} /* if corners1[NW_CORNER]... */
 		else
 		{ /* not south-north */
-		    new ErrorBox(demMain,
-				 "Error merging!",
-				 "Files are not adjacent:\n" +
-				 file1 + "\n" +
-				 file2);
+		    ErrorBox.report(demMain,
+				    "Error merging!",
+				    "Files are not adjacent:\n" +
+				    file1 + "\n" +
+				    file2);
 		    return false;
 		} /* if corners1[NW_CORNER]... */
 	    } /* if !corners1[...].equals(corners2[...]) */
 
-	    minimumElevation = (short) Math.min(minElev1, minElev2);
-	    maximumElevation = (short) Math.max(maxElev1, maxElev2);
-
 	    if (snFlag)
 	    {
 		if (columns1 != columns2)
 		{
-		    statusBar.setMessage("DEM geometry mismatch");
+		    ErrorBox.report(demMain,
+				    "Error merging!",
+				    "DEM geometry mismatch:\n" +
+				    file1 + "\n" +
+				    file2);
 		    return false;
 		} /* if columns1 != columns2 */
 		rows = rows1 + rows2 - 1;
@@ -877,52 +1378,50 @@ public class DEM
 	    {
 		if (rows1 != rows2)
 		{
-		    statusBar.setMessage("DEM geometry mismatch");
+		    ErrorBox.report(demMain,
+				    "Error merging!",
+				    "DEM geometry mismatch:\n" +
+				    file1 + "\n" +
+				    file2);
 		    return false;
 		} /* if columns1 != columns2 */
 		rows = rows1;
 		columns = columns1 + columns2 - 1;
 	    } /* if snFlag */
 
-	    FileOutputStream fout = new FileOutputStream(resultFile);
-            DeflaterOutputStream dout = new DeflaterOutputStream(fout);
-	    DataOutputStream out = new DataOutputStream(dout);
-	    out.writeUTF("merged DEM");
-	    out.writeByte(units1);
+	    merged.name = "merged DEM";
+	    merged.units = dem1.units;
+	    merged.corners = new GeoCoordinate[4];
 	    if (snFlag)
 	    { /* south-north */
-		out.writeInt(corners1[SW_CORNER].getLatitude());
-		out.writeInt(corners1[SW_CORNER].getLongitude());
-		out.writeInt(corners2[NW_CORNER].getLatitude());
-		out.writeInt(corners2[NW_CORNER].getLongitude());
-		out.writeInt(corners2[NE_CORNER].getLatitude());
-		out.writeInt(corners2[NE_CORNER].getLongitude());
-		out.writeInt(corners1[SE_CORNER].getLatitude());
-		out.writeInt(corners1[SE_CORNER].getLongitude());
+		merged.corners[SW_CORNER] = corners1[SW_CORNER];
+		merged.corners[NW_CORNER] = corners2[NW_CORNER];
+		merged.corners[NE_CORNER] = corners2[NE_CORNER];
+		merged.corners[SE_CORNER] = corners1[SE_CORNER];
 	    } /* if snFlag */
 	    else
 	    { /* west-east */
-		out.writeInt(corners1[SW_CORNER].getLatitude());
-		out.writeInt(corners1[SW_CORNER].getLongitude());
-		out.writeInt(corners1[NW_CORNER].getLatitude());
-		out.writeInt(corners1[NW_CORNER].getLongitude());
-		out.writeInt(corners2[NE_CORNER].getLatitude());
-		out.writeInt(corners2[NE_CORNER].getLongitude());
-		out.writeInt(corners2[SE_CORNER].getLatitude());
-		out.writeInt(corners2[SE_CORNER].getLongitude());
+		merged.corners[SW_CORNER] = corners1[SW_CORNER];
+		merged.corners[NW_CORNER] = corners1[NW_CORNER];
+		merged.corners[NE_CORNER] = corners2[NE_CORNER];
+		merged.corners[SE_CORNER] = corners2[SE_CORNER];
 	    } /* if snFlag */
+	    merged.minimumElevation = (short) Math.min(dem1.minimumElevation, dem2.minimumElevation);
+	    merged.maximumElevation = (short) Math.max(dem1.maximumElevation, dem2.maximumElevation);
+	    merged.xResolution = dem1.xResolution;
+	    merged.yResolution = dem1.yResolution;
+	    merged.zResolution = dem1.zResolution;
+	    merged.rows = rows;
+	    merged.columns = columns;
 
-	    out.writeShort(minimumElevation);
-	    out.writeShort(maximumElevation);
-	    out.writeByte(xRes1);
-	    out.writeByte(yRes1);
-	    out.writeByte(zRes1);
-	    
-	    out.writeShort(rows);
-	    out.writeShort(columns);
+	    FileOutputStream fout = new FileOutputStream(resultFile);
+            DeflaterOutputStream dout = new DeflaterOutputStream(fout);
+	    DataOutputStream out = new DataOutputStream(dout);
+	    merged.writeHeader(out);
 	    
             int pctDone;
-	    short elevation;
+	    /* the columns are copied whole, as the bytes are in the same order in both */
+	    byte column[] = new byte[2 * Math.max(rows1, rows2)];
 	    if (snFlag)
 	    { /* south-north merge */
 		for (i = 0; i < columns; i++)
@@ -932,17 +1431,11 @@ public class DEM
 			pctDone = i * 100 / columns;
 			statusBar.updateProgress(pctDone);
 		    } /* if statusBar != null */
-		    for (j = 0; j < rows1; j ++)
-		    {
-			elevation = in1.readShort();
-			out.writeShort(elevation);
-		    } /* for j */
-		    for (j = 0; j < rows2; j ++)
-		    {
-			elevation = in2.readShort();
-			if (j != 0)
-			    out.writeShort(elevation);
-		    } /* for j */
+		    dem1.readColumn(in1, i, column);
+		    out.write(column, 0, 2 * rows1);
+		    /* the first row of the northern DEM is the last of the southern */
+		    dem2.readColumn(in2, i, column);
+		    out.write(column, 2, 2 * (rows2 - 1));
 		} /* for i */
 	    } /* if snFlag */
 	    else
@@ -955,11 +1448,8 @@ public class DEM
 			pctDone = i * 100 / columns;
 			statusBar.updateProgress(pctDone);
 		    } /* if statusBar != null */
-		    for (j = 0; j < rows; j++)
-		    {
-			elevation = in1.readShort();
-			out.writeShort(elevation);
-		    } /* for j */
+		    dem1.readColumn(in1, i, column);
+		    out.write(column, 0, 2 * rows);
 		} /* for i */
 		endColumn = columns2;
 		for (i = 0; i < endColumn ; i++)
@@ -969,43 +1459,38 @@ public class DEM
 			pctDone = (i + columns1 - 1) * 100 / columns;
 			statusBar.updateProgress(pctDone);
 		    } /* if statusBar != null */
-		    for (j = 0; j < rows; j++)
-		    {
-			elevation = in2.readShort();
-			out.writeShort(elevation);
-		    } /* for j */
+		    dem2.readColumn(in2, i, column);
+		    out.write(column, 0, 2 * rows);
 		} /* for i */
 	    } /* if (!) snFlag */
 
-	    in1.close();
-            iin1.close();
-            fin1.close();
-	    in1.close();
-            iin1.close();
-            fin1.close();
+	    if (in1 != null)
+		in1.close();
+	    if (in2 != null)
+		in2.close();
 	    out.close();
             dout.close();
 	    fout.close();
 	} /* try */
 	catch (FileNotFoundException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error merging!",
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error merging!",
+			    e.toString());
 	    return false;
 	}
 	catch (IOException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error merging!",
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error merging!",
+			    e.toString());
 	    return false;
 	}
 	catch (SecurityException e)
 	{
-	    new ErrorBox(demMain,
-			 "Error merging!",
-			 e.toString());
+	    ErrorBox.report(demMain,
+			    "Error merging!",
+			    e.toString());
 	    return false;
 	}
         if (statusBar != null)
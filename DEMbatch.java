@@ -0,0 +1,1026 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * class that provides a command line interface to the DEM application for
+ * batch work on machines with no display.
+ */
+public class DEMbatch
+{
+    static String journalFileName;
+    static int checkpointUnits = Journal.DEFAULT_CHECKPOINT_UNITS;
+    static int checkpointSeconds = Journal.DEFAULT_CHECKPOINT_SECONDS;
+    static String job;
+    static String areaFileName;
+    static String engineName;
+    static int tolerance = TIN.DEFAULT_TOLERANCE;
+    static boolean equalized = false;
+    /* how long kernels warms each kernel up, and how it times it after */
+    static final int KERNEL_WARMUP_MILLISECONDS = 1000;
+    static final int KERNEL_PASSES = 20;
+    static final int KERNEL_ROUNDS = 20;
+    static final int KERNEL_STABLE_PERCENT = 5;
+    static String cacheDirectoryName = "tilecache";
+    static float simplifyTolerance = CoverageVectorizer.DEFAULT_TOLERANCE;
+    /* the address worker listens on, or null for loopback */
+    static String bindAddressName;
+
+    /**
+     * print the usage message.
+     */
+    static void usage()
+    {
+	System.err.println("usage: java DEMbatch [options] command arguments...");
+	System.err.println("options:");
+	System.err.println("  -journal file        checkpoint coverage and sitesearch work to a journal,");
+	System.err.println("                       and resume from it if it is for the same job.");
+	System.err.println("  -checkpoint units    units of work between checkpoints (default "
+			   + Journal.DEFAULT_CHECKPOINT_UNITS + ").");
+	System.err.println("  -checkpointSeconds s seconds between checkpoints (default "
+			   + Journal.DEFAULT_CHECKPOINT_SECONDS + ").");
+	System.err.println("  -area file           restrict viewshed, coverage and sitesearch to the polygon");
+	System.err.println("                       whose corners are in file, one \"latitude longitude\" per line.");
+	System.err.println("  -engine name         the viewshed engine: " + String.join(", ", ViewshedEngines.getNames())
+			   + " (default " + SweepViewshedEngine.NAME + ").");
+	System.err.println("  -tolerance meters    the vertical error allowed in the tin engine's TIN (default "
+			   + TIN.DEFAULT_TOLERANCE + ").");
+	System.err.println("  -colors linear|equalized  colors for equal steps of elevation, or equal");
+	System.err.println("                       numbers of points, in png (default linear).");
+	System.err.println("  -cache directory     where serve keeps the tiles it has drawn (default tilecache).");
+	System.err.println("  -simplify cells      how far vectorize may move a boundary to simplify it (default "
+			   + CoverageVectorizer.DEFAULT_TOLERANCE + ").");
+	System.err.println("  -bind address        the address worker listens on, 0.0.0.0 for all of them");
+	System.err.println("                       (default this host only).  workers do not check who");
+	System.err.println("                       connects, so only open them on a trusted network.");
+	System.err.println("commands:");
+	System.err.println("  tile demFile tileFile");
+	System.err.println("      convert a binary DEM file into a tile file.");
+	System.err.println("  viewshed tileFile resultFile latitude longitude heightAboveGround receiveHeight");
+	System.err.println("      calculate coverage from a tile file, latitude and longitude in");
+	System.err.println("      decimal degrees, heights in meters.");
+	System.err.println("  worker tileFile port");
+	System.err.println("      serve coverage calculations on a port, to this host only unless -bind is given.");
+	System.err.println("  coverage tileFile resultFile latitude longitude heightAboveGround receiveHeight");
+	System.err.println("           degreeIncrement distanceIncrement host:port[,host:port...]");
+	System.err.println("      calculate coverage on workers, sharing the rays out by sector.");
+	System.err.println("  sitesearch tileFile candidateFile heightAboveGround receiveHeight");
+	System.err.println("           degreeIncrement distanceIncrement host:port[,host:port...]");
+	System.err.println("      score candidate sites (one \"latitude longitude\" per line) on workers.");
+	System.err.println("  benchmark demFile latitude longitude heightAboveGround receiveHeight");
+	System.err.println("           degreeIncrement distanceIncrement [engine...]");
+	System.err.println("      time the viewshed engines (all of them if none are named) on a DEM in memory.");
+	System.err.println("  kernels demFile");
+	System.err.println("      time the raster kernels in plain loops against the fastest this java has;");
+	System.err.println("      run java with --add-modules jdk.incubator.vector for the Vector API ones.");
+	System.err.println("  unpack demFile mappedFile");
+	System.err.println("      write a binary DEM file uncompressed, so it opens at once and is read");
+	System.err.println("      from disk as it is used, with the pages shared between processes.");
+	System.err.println("  tin demFile");
+	System.err.println("      build a TIN from a DEM to the -tolerance and report its size and error.");
+	System.err.println("  png tileFile pngFile [resultFile]");
+	System.err.println("      draw a tile file, and the coverage in a viewshed or coverage result");
+	System.err.println("      file if one is given, as a PNG image.");
+	System.err.println("  derive demFile product pngFile");
+	System.err.println("      work out a product of a DEM, one of " + String.join(", ", Stencil.NAMES) + ",");
+	System.err.println("      and draw it as a PNG image.");
+	System.err.println("  serve demFile port [resultFile]");
+	System.err.println("      serve a DEM, and the coverage in a result file if one is given, as");
+	System.err.println("      map tiles at http://localhost:port/terrain/{z}/{x}/{y}.png.");
+	System.err.println("  vectorize resultFile outputFile [visible|shadowed]");
+	System.err.println("      write the visible (or shadowed) areas of a result file as polygons, in KML");
+	System.err.println("      if outputFile ends in .kml, or GeoJSON.");
+    } /* usage() */
+
+    /**
+     * main method to run a batch command.
+     * @param args command line arguments.
+     */
+    public static void main(String args[])
+    {
+	int first = 0;
+	while ((first + 1 < args.length) && args[first].startsWith("-"))
+	{
+	    if (args[first].equals("-journal"))
+		journalFileName = args[first + 1];
+	    else if (args[first].equals("-checkpoint"))
+		checkpointUnits = Util.safeStringToInt(args[first + 1]);
+	    else if (args[first].equals("-checkpointSeconds"))
+		checkpointSeconds = Util.safeStringToInt(args[first + 1]);
+	    else if (args[first].equals("-area"))
+		areaFileName = args[first + 1];
+	    else if (args[first].equals("-engine"))
+		engineName = args[first + 1];
+	    else if (args[first].equals("-tolerance"))
+		tolerance = Util.safeStringToInt(args[first + 1]);
+	    else if (args[first].equals("-colors"))
+		equalized = args[first + 1].equals("equalized");
+	    else if (args[first].equals("-cache"))
+		cacheDirectoryName = args[first + 1];
+	    else if (args[first].equals("-simplify"))
+		simplifyTolerance = Util.safeStringToFloat(args[first + 1]);
+	    else if (args[first].equals("-bind"))
+		bindAddressName = args[first + 1];
+	    else
+		break;
+	    first += 2;
+	} /* while */
+	if (first > 0)
+	{
+	    String rest[] = new String[args.length - first];
+	    System.arraycopy(args, first, rest, 0, rest.length);
+	    args = rest;
+	} /* if first > 0 */
+	if (args.length == 0)
+	{
+	    usage();
+	    System.exit(1);
+	} /* if args.length == 0 */
+	/* the workers are left out of the job, so it can be resumed on others */
+	int jobArgs = (args[0].equals("coverage") || args[0].equals("sitesearch")) ? args.length - 1 : args.length;
+	job = ((areaFileName == null) ? "" : "-area " + areaFileName + " ")
+	    + String.join(" ", Arrays.copyOf(args, jobArgs));
+	try
+	{
+	    String command = args[0];
+	    if (command.equals("tile") && (args.length == 3))
+	    {
+		TileFile.fromDEM(args[1], args[2], TileFile.DEFAULT_TILE_SIZE, null).close();
+		return;
+	    } /* if command.equals("tile") */
+
+	    if (command.equals("viewshed") && (args.length == 7))
+	    {
+		viewshed(args[1],
+			 args[2],
+			 new GeoCoordinate(GeoCoordinate.parseDegrees(args[3]), GeoCoordinate.parseDegrees(args[4])),
+			 (short) Util.safeStringToInt(args[5]),
+			 (short) Util.safeStringToInt(args[6]));
+		return;
+	    } /* if command.equals("viewshed") */
+
+	    if (command.equals("worker") && (args.length == 3))
+	    {
+		CoverageWorker.serve(args[1],
+				     Util.safeStringToInt(args[2]),
+				     (bindAddressName == null) ? InetAddress.getLoopbackAddress()
+				     : InetAddress.getByName(bindAddressName));
+		return;
+	    } /* if command.equals("worker") */
+
+	    if (command.equals("coverage") && (args.length == 10))
+	    {
+		coverage(args[1],
+			 args[2],
+			 new GeoCoordinate(GeoCoordinate.parseDegrees(args[3]), GeoCoordinate.parseDegrees(args[4])),
+			 (short) Util.safeStringToInt(args[5]),
+			 (short) Util.safeStringToInt(args[6]),
+			 Util.safeStringToFloat(args[7]),
+			 Util.safeStringToInt(args[8]),
+			 args[9]);
+		return;
+	    } /* if command.equals("coverage") */
+
+	    if (command.equals("sitesearch") && (args.length == 8))
+	    {
+		siteSearch(args[1],
+			   args[2],
+			   (short) Util.safeStringToInt(args[3]),
+			   (short) Util.safeStringToInt(args[4]),
+			   Util.safeStringToFloat(args[5]),
+			   Util.safeStringToInt(args[6]),
+			   args[7]);
+		return;
+	    } /* if command.equals("sitesearch") */
+	    if (command.equals("benchmark") && (args.length >= 8))
+	    {
+		String engineNames[] = new String[args.length - 8];
+		System.arraycopy(args, 8, engineNames, 0, engineNames.length);
+		benchmark(args[1],
+			  new GeoCoordinate(GeoCoordinate.parseDegrees(args[2]), GeoCoordinate.parseDegrees(args[3])),
+			  (short) Util.safeStringToInt(args[4]),
+			  (short) Util.safeStringToInt(args[5]),
+			  Util.safeStringToFloat(args[6]),
+			  Util.safeStringToInt(args[7]),
+			  (engineNames.length == 0) ? ViewshedEngines.getNames() : engineNames);
+		return;
+	    } /* if command.equals("benchmark") */
+	    if (command.equals("kernels") && (args.length == 2))
+	    {
+		kernels(args[1]);
+		return;
+	    } /* if command.equals("kernels") */
+	    if (command.equals("unpack") && (args.length == 3))
+	    {
+		unpack(args[1], args[2]);
+		return;
+	    } /* if command.equals("unpack") */
+	    if (command.equals("tin") && (args.length == 2))
+	    {
+		tin(args[1]);
+		return;
+	    } /* if command.equals("tin") */
+	    if (command.equals("png") && ((args.length == 3) || (args.length == 4)))
+	    {
+		png(args[1], args[2], (args.length == 4) ? args[3] : null);
+		return;
+	    } /* if command.equals("png") */
+	    if (command.equals("derive") && (args.length == 4))
+	    {
+		derive(args[1], args[2], args[3]);
+		return;
+	    } /* if command.equals("derive") */
+	    if (command.equals("serve") && ((args.length == 3) || (args.length == 4)))
+	    {
+		serve(args[1], Util.safeStringToInt(args[2]), (args.length == 4) ? args[3] : null);
+		return;
+	    } /* if command.equals("serve") */
+	    if (command.equals("vectorize") && ((args.length == 3)
+						|| ((args.length == 4) && (args[3].equals("visible") || args[3].equals("shadowed")))))
+	    {
+		vectorize(args[1], args[2], (args.length == 4) && args[3].equals("shadowed"));
+		return;
+	    } /* if command.equals("vectorize") */
+	} /* try */
+	catch (IOException e)
+	{
+	    System.err.println(e.toString());
+	    System.exit(2);
+	}
+	usage();
+	System.exit(1);
+    } /* main() */
+
+    /**
+     * calculate the coverage of a transmitter out of core.
+     * @param tileFileName the tile file of elevations.
+     * @param resultFileName the tile file to write the results to.
+     * @param location the transmitter antenna location.
+     * @param heightAboveGround the height of the antenna above ground.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @exception IOException if the files cannot be read or written.
+     */
+    static void viewshed(String tileFileName,
+			 String resultFileName,
+			 GeoCoordinate location,
+			 short heightAboveGround,
+			 short receiverHeight) throws IOException
+    {
+	TileFile terrain = TileFile.open(tileFileName, false);
+	int x = (location.getLongitude() - terrain.getSWLongitude()) / terrain.getXResolution();
+	int y = (location.getLatitude() - terrain.getSWLatitude()) / terrain.getYResolution();
+	if ((x < 0) || (x >= terrain.getColumns()) || (y < 0) || (y >= terrain.getRows()))
+	{
+	    terrain.close();
+	    throw new IOException("location " + location + " is not on the DEM");
+	} /* if x < 0... */
+	short amsl = (short) (terrain.getElevation(x, y) + heightAboveGround);
+	TileFile result = TileFile.create(resultFileName, terrain, TileFile.RESULT_CELLS);
+	OutOfCoreViewshed viewshed = new OutOfCoreViewshed(terrain, result, null);
+	PolygonMask mask = readArea(terrain.getSWLatitude(),
+				    terrain.getSWLongitude(),
+				    terrain.getXResolution(),
+				    terrain.getYResolution(),
+				    terrain.getColumns(),
+				    terrain.getRows());
+	viewshed.setMask(mask);
+	if (engineName != null)
+	    viewshed.setEngine(getEngine(engineName));
+	viewshed.calculate(x, y, amsl, receiverHeight);
+	long visible = 0;
+	int column, row;
+	for (row = 0; row < result.getRows(); row++)
+	{
+	    for (column = 0; column < result.getColumns(); column++)
+	    {
+		if (result.getByte(column, row) == OutOfCoreViewshed.VISIBLE)
+		    visible++;
+	    } /* for column */
+	} /* for row */
+	printStatistics(visible, mask, result.getColumns(), result.getRows());
+	result.close();
+	terrain.close();
+    } /* viewshed() */
+
+    /**
+     * find a viewshed engine by name.
+     * @param name the name of the engine.
+     * @return the engine.
+     * @exception IOException if there is no engine by that name.
+     */
+    static ViewshedEngine getEngine(String name) throws IOException
+    {
+	ViewshedEngine engine = ViewshedEngines.get(name);
+	if (name.equals(TINViewshedEngine.NAME))
+	    engine = new TINViewshedEngine(tolerance);
+	if (engine == null)
+	    throw new IOException("unknown engine " + name + ", try one of "
+				  + String.join(", ", ViewshedEngines.getNames()));
+	return engine;
+    } /* getEngine() */
+
+    /**
+     * time viewshed engines against each other on a DEM in memory.  each
+     * engine is run once to warm up and once to be timed.
+     * @param demFileName the binary DEM file.
+     * @param location the transmitter antenna location.
+     * @param heightAboveGround the height of the antenna above ground.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around the transmitter.
+     * @param distanceIncrement the distance increment to vector around the transmitter.
+     * @param engineNames the names of the engines to time.
+     * @exception IOException if the DEM cannot be read or an engine is unknown.
+     */
+    static void benchmark(String demFileName,
+			  GeoCoordinate location,
+			  short heightAboveGround,
+			  short receiverHeight,
+			  float degreeIncrement,
+			  int distanceIncrement,
+			  String engineNames[]) throws IOException
+    {
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	GeoCoordinate swCorner = dem.getCorner(DEM.SW_CORNER);
+	int x = (location.getLongitude() - swCorner.getLongitude()) / dem.getXResolution();
+	int y = (location.getLatitude() - swCorner.getLatitude()) / dem.getYResolution();
+	if (!dem.isValidLocation(x, y))
+	    throw new IOException("location " + location + " is not on the DEM");
+	/* the results are kept in bit sets, one bit per cell */
+	if (!RadialCoverage.fits(dem))
+	    throw new IOException(demFileName + " is too big to benchmark");
+	ViewshedSite site = new ViewshedSite(x,
+					     y,
+					     location.getLatitude(),
+					     (short) (dem.getElevation(x, y) + heightAboveGround),
+					     receiverHeight,
+					     degreeIncrement,
+					     distanceIncrement);
+	site.setMask(readArea(swCorner.getLatitude(),
+			      swCorner.getLongitude(),
+			      dem.getXResolution(),
+			      dem.getYResolution(),
+			      dem.getColumnCount(),
+			      dem.getRowCount()));
+	final BitSet visible = new BitSet(dem.getColumnCount() * dem.getRowCount());
+	/* kept apart from visible, as a cell shadowed by any ray is shadowed */
+	final BitSet shadowed = new BitSet(dem.getColumnCount() * dem.getRowCount());
+	final int columns = dem.getColumnCount();
+	ViewshedSink sink = new ViewshedSink()
+	    {
+		public void setVisible(int column, int row)
+		{
+		    visible.set(row * columns + column);
+		} /* setVisible() */
+
+		public void setShadowed(int column, int row)
+		{
+		    shadowed.set(row * columns + column);
+		} /* setShadowed() */
+
+		public void progress(int pctDone)
+		{
+		} /* progress() */
+	    };
+	int i;
+	for (i = 0; i < engineNames.length; i++)
+	{
+	    ViewshedEngine engine = getEngine(engineNames[i]);
+	    engine.calculate(dem.getGrid(), site, sink);
+	    visible.clear();
+	    shadowed.clear();
+	    long start = System.currentTimeMillis();
+	    engine.calculate(dem.getGrid(), site, sink);
+	    long elapsed = System.currentTimeMillis() - start;
+	    visible.andNot(shadowed);
+	    System.out.println(engine.getName() + ": " + elapsed + " ms, "
+			       + visible.cardinality() + " cells visible.");
+	} /* for i */
+    } /* benchmark() */
+
+    /**
+     * draw a tile file, and perhaps the coverage calculated on it, as a PNG.
+     * @param tileFileName the tile file of elevations.
+     * @param pngFileName the PNG file to write.
+     * @param resultFileName a tile file of coverage results, or null.
+     * @exception IOException if the files cannot be read or written.
+     */
+    static void png(String tileFileName, String pngFileName, String resultFileName) throws IOException
+    {
+	TileFile terrain = TileFile.open(tileFileName, false);
+	TileFile result = (resultFileName == null) ? null : TileFile.open(resultFileName, false);
+	MapExporter.export(terrain,
+			   result,
+			   Map.LAYER_COLORS[0],
+			   equalized,
+			   new BufferedOutputStream(new FileOutputStream(pngFileName)),
+			   null);
+	if (result != null)
+	    result.close();
+	terrain.close();
+    } /* png() */
+
+    /**
+     * work out a product of a DEM with a stencil kernel and write it as a PNG.
+     * @param demFileName the binary DEM file.
+     * @param name the name of the kernel.
+     * @param pngFileName the PNG file to write.
+     * @exception IOException if the DEM cannot be read, there is no such
+     * kernel, or the PNG cannot be written.
+     */
+    static void derive(String demFileName, String name, String pngFileName) throws IOException
+    {
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	StencilKernel kernel = Stencil.getKernel(name, dem.getXSpacing(), dem.getYSpacing());
+	if (kernel == null)
+	    throw new IOException("no product named " + name);
+	long start = System.currentTimeMillis();
+	byte values[] = dem.getDerived(name);
+	if (values == null)
+	    throw new IOException(demFileName + " is too big for a " + name + " product");
+	System.out.println(name + ": " + (System.currentTimeMillis() - start) + " ms");
+	MapExporter.exportProduct(values,
+				  dem.getColumns(),
+				  dem.getRows(),
+				  kernel,
+				  new BufferedOutputStream(new FileOutputStream(pngFileName)));
+    } /* derive() */
+
+    /**
+     * serve a DEM as map tiles until the process is stopped.
+     * @param demFileName the binary DEM file.
+     * @param port the port to listen on, on the loopback address.
+     * @param resultFileName a viewshed or coverage result file the same
+     * size as the DEM, or null.
+     * @exception IOException if the files cannot be read or the port
+     * cannot be listened on.
+     */
+    static void serve(String demFileName, int port, String resultFileName) throws IOException
+    {
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	dem.buildPyramid();
+	TileFile result = (resultFileName == null) ? null : TileFile.open(resultFileName, false);
+	TileServer server = new TileServer(dem, result, new File(cacheDirectoryName), DiskTileCache.DEFAULT_MAXIMUM_BYTES);
+	server.start(port);
+	System.out.println("serving zoom levels 0 to " + (server.getZoomCount() - 1)
+			   + " at http://localhost:" + port + "/");
+    } /* serve() */
+
+    /**
+     * write the visible or shadowed areas of a result file as polygons.
+     * @param resultFileName the viewshed or coverage result file.
+     * @param outputFileName the file to write, KML if it ends in .kml and
+     * GeoJSON otherwise.
+     * @param shadowed true for the shadowed areas, false for the visible.
+     * @exception IOException if the files cannot be read or written.
+     */
+    static void vectorize(String resultFileName, String outputFileName, boolean shadowed) throws IOException
+    {
+	TileFile result = TileFile.open(resultFileName, false);
+	String name = shadowed ? "shadowed" : "visible";
+	BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outputFileName));
+	PolygonSink sink;
+	if (outputFileName.toLowerCase().endsWith(".kml"))
+	    sink = new KMLWriter(out, name, shadowed ? Map.LAYER_COLORS[0] : Color.green, CoverageLayer.SHADOW_ALPHA);
+	else
+	    sink = new GeoJSONWriter(out, "{\"coverage\": \"" + name + "\"}");
+	CoverageVectorizer vectorizer
+	    = new CoverageVectorizer(result, shadowed ? OutOfCoreViewshed.SHADOWED : OutOfCoreViewshed.VISIBLE);
+	vectorizer.setTolerance(simplifyTolerance);
+	long start = System.currentTimeMillis();
+	vectorizer.run(sink, null);
+	sink.close();
+	result.close();
+	System.out.println(vectorizer.getPolygonCount() + " polygons, " + vectorizer.getRingCount() + " rings, "
+			   + vectorizer.getPointCount() + " points, " + new File(outputFileName).length()
+			   + " bytes, in " + (System.currentTimeMillis() - start) + " ms.");
+    } /* vectorize() */
+
+    /**
+     * a pass of a raster kernel over the test data, for timeKernel().
+     */
+    static abstract class KernelPass
+    {
+	/**
+	 * run the kernel once over the data.
+	 * @param kernels the kernels to run it with.
+	 */
+	abstract void run(RasterKernels kernels);
+    } /* class KernelPass */
+
+    /**
+     * time the raster kernels in plain loops against the ones
+     * RasterKernels.getKernels() picks, on the rows of a DEM and of its
+     * first zoomed out level (or the DEM itself, if it is too small to
+     * have one).  a kernel the faster class does not override is timed in
+     * the plain loops alone.  each is warmed up, then timed as described
+     * at timeKernel(), and the answers are checked against each other.
+     * @param demFileName the binary DEM file.
+     * @exception IOException if the DEM cannot be read.
+     */
+    static void kernels(String demFileName) throws IOException
+    {
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	ElevationPyramid pyramid = dem.getPyramid();
+	RasterKernels scalar = new RasterKernels();
+	RasterKernels fastest = RasterKernels.getKernels();
+	if (fastest.getName().equals(scalar.getName()))
+	    System.out.println("the Vector API kernels are not available; timing the plain loops alone.");
+
+	final short blocks[][] = dem.getGrid().getBlocks();
+	if (blocks == null)
+	    throw new IOException(demFileName + " is mapped; time the kernels on a deflated DEM file");
+	int level = Math.min(1, pyramid.getLevelCount() - 1);
+	final int columns = pyramid.getColumnCount(level);
+	final int rows = pyramid.getRowCount(level);
+	final short means[] = new short[columns * rows];
+	ElevationSource levelSource = pyramid.getLevel(level);
+	short row[] = new short[columns];
+	int y, k;
+	for (y = 0; y < rows; y++)
+	{
+	    Stencil.readRow(levelSource, y, 0, row);
+	    System.arraycopy(row, 0, means, y * columns, columns);
+	} /* for y */
+	final short minimum = dem.getMinimumElevation();
+	final byte palette[] = new byte[dem.getMaximumElevation() - minimum + 1];
+	int interval = palette.length / Map.NUM_COLORS + 1;
+	for (k = 0; k < palette.length; k++)
+	{
+	    palette[k] = (byte) (k / interval);
+	} /* for k */
+
+	RasterKernels kernels[] = overrides(fastest, "range", short[].class, int.class, int.class, short[].class)
+	    ? new RasterKernels[] { scalar, fastest } : new RasterKernels[] { scalar };
+	final short range[] = new short[2];
+	short ranges[][] = new short[kernels.length][];
+	long times[] = new long[kernels.length];
+	for (k = 0; k < kernels.length; k++)
+	{
+	    times[k] = timeKernel(kernels[k], new KernelPass()
+		{
+		    void run(RasterKernels kernels)
+		    {
+			range[0] = Short.MAX_VALUE;
+			range[1] = Short.MIN_VALUE;
+			int b;
+			for (b = 0; b < blocks.length; b++)
+			{
+			    kernels.range(blocks[b], 0, blocks[b].length, range);
+			} /* for b */
+		    } /* run() */
+		});
+	    ranges[k] = range.clone();
+	} /* for k */
+	long points = (long) dem.getColumnCount() * dem.getRowCount();
+	System.out.println("range of " + points + " points, " + KERNEL_PASSES + " passes:");
+	printKernelTimes(kernels, times);
+	for (k = 1; k < kernels.length; k++)
+	{
+	    if ((ranges[k][0] != ranges[0][0]) || (ranges[k][1] != ranges[0][1]))
+		System.out.println(kernels[k].getName() + " range is wrong!");
+	} /* for k */
+
+	kernels = overrides(fastest, "mapPalette", short[].class, int.class, int.class, short.class,
+			    byte[].class, byte.class, byte[].class, int.class)
+	    ? new RasterKernels[] { scalar, fastest } : new RasterKernels[] { scalar };
+	final byte pixels[][] = new byte[kernels.length][columns * rows];
+	times = new long[kernels.length];
+	for (k = 0; k < kernels.length; k++)
+	{
+	    final byte kernelPixels[] = pixels[k];
+	    times[k] = timeKernel(kernels[k], new KernelPass()
+		{
+		    void run(RasterKernels kernels)
+		    {
+			int y;
+			for (y = 0; y < rows; y++)
+			{
+			    kernels.mapPalette(means, y * columns, columns, minimum, palette, (byte) Map.NUM_COLORS,
+					       kernelPixels, y * columns);
+			} /* for y */
+		    } /* run() */
+		});
+	} /* for k */
+	System.out.println("palette of " + (columns * rows) + " points, " + KERNEL_PASSES + " passes:");
+	printKernelTimes(kernels, times);
+	for (k = 1; k < kernels.length; k++)
+	{
+	    if (!Arrays.equals(pixels[k], pixels[0]))
+		System.out.println(kernels[k].getName() + " palette is wrong!");
+	} /* for k */
+    } /* kernels() */
+
+    /**
+     * find out whether some kernels have their own version of a kernel, or
+     * use the plain loop they inherit.
+     * @param kernels the kernels.
+     * @param name the name of the kernel's method.
+     * @param types the types of its parameters.
+     * @return true if the kernels' class or a superclass other than
+     * RasterKernels declares the method.
+     */
+    static boolean overrides(RasterKernels kernels, String name, Class<?>... types)
+    {
+	try
+	{
+	    return kernels.getClass().getMethod(name, types).getDeclaringClass() != RasterKernels.class;
+	} /* try */
+	catch (NoSuchMethodException e)
+	{
+	    return false;
+	}
+    } /* overrides() */
+
+    /**
+     * time a kernel.  it is first run for at least KERNEL_WARMUP_MILLISECONDS,
+     * so the JIT has compiled it, then timed over rounds of KERNEL_PASSES
+     * passes until a round comes within KERNEL_STABLE_PERCENT of the best
+     * round so far, or KERNEL_ROUNDS rounds have been run.
+     * @param kernels the kernels to run it with.
+     * @param pass one pass of the kernel.
+     * @return the time of the best round, in nanoseconds.
+     */
+    static long timeKernel(RasterKernels kernels, KernelPass pass)
+    {
+	long start = System.nanoTime();
+	int passes = 0;
+	while ((passes < KERNEL_PASSES)
+	       || (System.nanoTime() - start < KERNEL_WARMUP_MILLISECONDS * 1000000L))
+	{
+	    pass.run(kernels);
+	    passes++;
+	} /* while */
+	long best = Long.MAX_VALUE;
+	long time;
+	int round, i;
+	for (round = 0; round < KERNEL_ROUNDS; round++)
+	{
+	    start = System.nanoTime();
+	    for (i = 0; i < KERNEL_PASSES; i++)
+	    {
+		pass.run(kernels);
+	    } /* for i */
+	    time = System.nanoTime() - start;
+	    if ((round > 0) && (time * 100 <= best * (100 + KERNEL_STABLE_PERCENT)))
+		return Math.min(best, time);
+	    best = Math.min(best, time);
+	} /* for round */
+	return best;
+    } /* timeKernel() */
+
+    /**
+     * print the times of the kernels, and how much faster each was than the
+     * first.
+     * @param kernels the kernels.
+     * @param times the time each took, in nanoseconds.
+     */
+    static void printKernelTimes(RasterKernels kernels[], long times[])
+    {
+	int k;
+	for (k = 0; k < kernels.length; k++)
+	{
+	    System.out.println("  " + kernels[k].getName() + ": " + ((times[k] / 10000) / 100.0) + " ms"
+			       + ((k == 0) ? "" : ", " + ((float) Math.round(times[0] * 10.0 / times[k]) / 10) + "x"));
+	} /* for k */
+    } /* printKernelTimes() */
+
+    /**
+     * write a binary DEM file as a mapped DEM file, and time opening it
+     * both ways.
+     * @param demFileName the binary DEM file.
+     * @param mappedFileName the mapped DEM file to write.
+     * @exception IOException if either file cannot be processed.
+     */
+    static void unpack(String demFileName, String mappedFileName) throws IOException
+    {
+	long start = System.currentTimeMillis();
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	long readTime = System.currentTimeMillis() - start;
+	if (!dem.writeMapped(mappedFileName))
+	    throw new IOException("cannot write " + mappedFileName);
+	start = System.currentTimeMillis();
+	DEM mapped = new DEM(mappedFileName, null);
+	if (!mapped.read())
+	    throw new IOException("cannot map " + mappedFileName);
+	long mapTime = System.currentTimeMillis() - start;
+	System.out.println(dem.getColumns() + " x " + dem.getRows() + ": read in " + readTime + " ms, mapped in "
+			   + mapTime + " ms.");
+    } /* unpack() */
+
+    /**
+     * build a TIN from a DEM and report how big it is and how far it is
+     * from the DEM.  the error is checked again at every grid point here,
+     * independently of the build.
+     * @param demFileName the binary DEM file.
+     * @exception IOException if the DEM cannot be read.
+     */
+    static void tin(String demFileName) throws IOException
+    {
+	DEM dem = new DEM(demFileName, null);
+	if (!dem.read())
+	    throw new IOException("cannot read " + demFileName);
+	long start = System.currentTimeMillis();
+	TIN tin = new TIN(dem, tolerance);
+	tin.build(null);
+	long elapsed = System.currentTimeMillis() - start;
+	int columns = dem.getColumnCount();
+	int rows = dem.getRowCount();
+	float worst = 0.0f;
+	int column, row;
+	for (row = 0; row < rows; row++)
+	{
+	    for (column = 0; column < columns; column++)
+	    {
+		worst = Math.max(worst, Math.abs(dem.getElevation(column, row) - tin.getElevation(column, row)));
+	    } /* for column */
+	} /* for row */
+	long gridBytes = 2L * columns * rows;
+	System.out.println(tin.getVertexCount() + " vertices, " + tin.getTriangleCount() + " triangles, built in "
+			   + elapsed + " ms.");
+	System.out.println(tin.getMemorySize() + " bytes, " + gridBytes + " for the grid ("
+			   + (tin.getMemorySize() * 100 / gridBytes) + "%).");
+	System.out.println("maximum error " + tin.getMaximumError() + " m (tolerance " + tolerance
+			   + " m), checked " + worst + " m.");
+    } /* tin() */
+
+    /**
+     * read the polygon named by the -area option and rasterize it.
+     * @param swLatitude the latitude of the grid's SW corner in arc-seconds.
+     * @param swLongitude the longitude of the grid's SW corner in arc-seconds.
+     * @param xResolution the x-resolution of the grid in arc-seconds.
+     * @param yResolution the y-resolution of the grid in arc-seconds.
+     * @param columns the number of columns in the grid.
+     * @param rows the number of rows in the grid.
+     * @return the mask, or null if there is no -area option.
+     * @exception IOException if the polygon cannot be read or is not on the DEM.
+     */
+    static PolygonMask readArea(int swLatitude,
+				int swLongitude,
+				int xResolution,
+				int yResolution,
+				int columns,
+				int rows) throws IOException
+    {
+	if (areaFileName == null)
+	    return null;
+	PolygonMask mask = new PolygonMask(GeoCoordinate.read(areaFileName),
+					   swLatitude,
+					   swLongitude,
+					   xResolution,
+					   yResolution,
+					   columns,
+					   rows);
+	if (mask.isEmpty())
+	    throw new IOException("area " + areaFileName + " is not on the DEM");
+	return mask;
+    } /* readArea() */
+
+    /**
+     * print how much of the DEM, or of the area, can see the transmitter.
+     * @param visible the number of cells that can see the transmitter.
+     * @param mask the area, or null for the whole DEM.
+     * @param columns the number of columns in the DEM.
+     * @param rows the number of rows in the DEM.
+     */
+    static void printStatistics(long visible, PolygonMask mask, int columns, int rows)
+    {
+	long total = (mask == null) ? (long) columns * rows : mask.getCellCount();
+	System.out.println(visible + " of " + total + " cells " +
+			   ((mask == null) ? "" : "in the area ") +
+			   "can see the transmitter (" +
+			   (visible * 1000 / Math.max(1, total)) / 10.0 + "%)");
+    } /* printStatistics() */
+
+    /**
+     * create a coordinator for the workers, with a journal if one was asked for.
+     * @param workers the workers as a comma separated list of host:port.
+     * @return the coordinator.
+     * @exception IOException if the journal cannot be opened.
+     */
+    static CoverageCoordinator newCoordinator(String workers) throws IOException
+    {
+	CoverageCoordinator coordinator = new CoverageCoordinator(workers);
+	if (journalFileName != null)
+	{
+	    Journal journal = new Journal(journalFileName, job, checkpointUnits, checkpointSeconds);
+	    if (journal.getCompletedCount() != 0)
+	    {
+		System.err.println("resuming, " + journal.getCompletedCount() + " units already done");
+	    } /* if journal.getCompletedCount() != 0 */
+	    coordinator.setJournal(journal);
+	} /* if journalFileName != null */
+	if (areaFileName != null)
+	{
+	    coordinator.setArea(GeoCoordinate.read(areaFileName));
+	} /* if areaFileName != null */
+	return coordinator;
+    } /* newCoordinator() */
+
+    /**
+     * close a coordinator's journal after its job has finished.  the journal
+     * is kept, so that running the same job again just replays it.
+     * @param coordinator the coordinator.
+     * @exception IOException if the journal cannot be written.
+     */
+    static void closeJournal(CoverageCoordinator coordinator) throws IOException
+    {
+	if (coordinator.journal != null)
+	    coordinator.journal.close();
+    } /* closeJournal() */
+
+    /**
+     * calculate the coverage of a transmitter on a set of workers, and
+     * write the results to a tile file.
+     * @param tileFileName the tile file of elevations.
+     * @param resultFileName the tile file to write the results to.
+     * @param location the transmitter antenna location.
+     * @param heightAboveGround the height of the antenna above ground.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around the transmitter.
+     * @param distanceIncrement the distance increment to vector around the transmitter.
+     * @param workers the workers as a comma separated list of host:port.
+     * @exception IOException if the files cannot be read or written, or a worker fails.
+     */
+    static void coverage(String tileFileName,
+			 String resultFileName,
+			 GeoCoordinate location,
+			 short heightAboveGround,
+			 short receiverHeight,
+			 float degreeIncrement,
+			 int distanceIncrement,
+			 String workers) throws IOException
+    {
+	MappedTerrain terrain = new MappedTerrain(tileFileName);
+	int x = (location.getLongitude() - terrain.getSWLongitude()) / terrain.getXResolution();
+	int y = (location.getLatitude() - terrain.getSWLatitude()) / terrain.getYResolution();
+	if ((x < 0) || (x >= terrain.getColumnCount()) || (y < 0) || (y >= terrain.getRowCount()))
+	    throw new IOException("location " + location + " is not on the DEM");
+	if (!RadialCoverage.fits(terrain))
+	    throw new IOException(tileFileName + " is too big for a radial coverage");
+	RadialCoverage coverage = new RadialCoverage(terrain,
+						     location.getLatitude(),
+						     x,
+						     y,
+						     (short) (terrain.getElevation(x, y) + heightAboveGround),
+						     receiverHeight,
+						     degreeIncrement,
+						     distanceIncrement);
+	PolygonMask mask = readArea(terrain.getSWLatitude(),
+				    terrain.getSWLongitude(),
+				    terrain.getXResolution(),
+				    terrain.getYResolution(),
+				    terrain.getColumnCount(),
+				    terrain.getRowCount());
+	coverage.setMask(mask);
+	BitSet reached = new BitSet();
+	BitSet shadowed = new BitSet();
+	CoverageCoordinator coordinator = newCoordinator(workers);
+	coordinator.calculate(coverage, location.getLatitude(), reached, shadowed);
+	closeJournal(coordinator);
+
+	TileFile model = TileFile.open(tileFileName, false);
+	TileFile result = TileFile.create(resultFileName, model, TileFile.RESULT_CELLS);
+	model.close();
+	/* the site itself is visible, unless the area leaves it out */
+	boolean siteVisible = (mask == null) || mask.contains(x, y);
+	long visible = 0;
+	int column, row, index;
+	for (row = 0; row < terrain.getRowCount(); row++)
+	{
+	    for (column = 0; column < terrain.getColumnCount(); column++)
+	    {
+		index = coverage.getIndex(column, row);
+		if (shadowed.get(index))
+		{
+		    result.setByte(column, row, OutOfCoreViewshed.SHADOWED);
+		} /* if shadowed.get(index) */
+		else if (reached.get(index) || (siteVisible && (column == x) && (row == y)))
+		{
+		    result.setByte(column, row, OutOfCoreViewshed.VISIBLE);
+		    visible++;
+		} /* if reached.get(index) */
+	    } /* for column */
+	} /* for row */
+	result.close();
+	printStatistics(visible,
+			mask,
+			terrain.getColumnCount(),
+			terrain.getRowCount());
+    } /* coverage() */
+
+    /**
+     * score candidate sites on a set of workers, and print the candidates
+     * best first.
+     * @param tileFileName the tile file of elevations.
+     * @param candidateFileName a file of candidates, one "latitude longitude"
+     * pair (decimal degrees) per line.
+     * @param heightAboveGround the height of the antenna above ground.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around each candidate.
+     * @param distanceIncrement the distance increment to vector around each candidate.
+     * @param workers the workers as a comma separated list of host:port.
+     * @exception IOException if the files cannot be read, or a worker fails.
+     */
+    static void siteSearch(String tileFileName,
+			   String candidateFileName,
+			   short heightAboveGround,
+			   short receiverHeight,
+			   float degreeIncrement,
+			   int distanceIncrement,
+			   String workers) throws IOException
+    {
+	MappedTerrain terrain = new MappedTerrain(tileFileName);
+	GeoCoordinate candidates[] = GeoCoordinate.read(candidateFileName);
+	int n = candidates.length;
+	int latitudes[] = new int[n];
+	int xs[] = new int[n];
+	int ys[] = new int[n];
+	short amsls[] = new short[n];
+	int i;
+	for (i = 0; i < n; i++)
+	{
+	    latitudes[i] = candidates[i].getLatitude();
+	    xs[i] = (candidates[i].getLongitude() - terrain.getSWLongitude()) / terrain.getXResolution();
+	    ys[i] = (latitudes[i] - terrain.getSWLatitude()) / terrain.getYResolution();
+	    if ((xs[i] < 0) || (xs[i] >= terrain.getColumnCount()) ||
+		(ys[i] < 0) || (ys[i] >= terrain.getRowCount()))
+		throw new IOException("candidate " + candidates[i] + " is not on the DEM");
+	    amsls[i] = (short) (terrain.getElevation(xs[i], ys[i]) + heightAboveGround);
+	} /* for i */
+	CoverageCoordinator coordinator = newCoordinator(workers);
+	int scores[] = coordinator.scoreSites(latitudes,
+					      xs,
+					      ys,
+					      amsls,
+					      receiverHeight,
+					      degreeIncrement,
+					      distanceIncrement);
+	closeJournal(coordinator);
+	printScores(candidates, scores);
+    } /* siteSearch() */
+
+    /**
+     * print candidate sites and their scores, best first.
+     * @param candidates the candidate sites.
+     * @param scores the score of each candidate.
+     */
+    static void printScores(GeoCoordinate candidates[], int scores[])
+    {
+	int n = candidates.length;
+	boolean printed[] = new boolean[n];
+	int i, j, best;
+	for (i = 0; i < n; i++)
+	{
+	    best = -1;
+	    for (j = 0; j < n; j++)
+	    {
+		if (!printed[j] && ((best < 0) || (scores[j] > scores[best])))
+		    best = j;
+	    } /* for j */
+	    printed[best] = true;
+	    System.out.println(scores[best] + " " + candidates[best].toString());
+	} /* for i */
+    } /* printScores() */
+} /* class DEMbatch */
@@ -32,13 +32,21 @@ import java.awt.FileDialog;
 import java.awt.Font;
 import java.awt.Frame;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Menu;
 import java.awt.MenuBar;
 import java.awt.MenuItem;
-import java.awt.PrintJob;
 import java.awt.ScrollPane;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.awt.print.PrinterJob;
+import java.io.IOException;
+import javax.print.attribute.HashPrintRequestAttributeSet;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.attribute.standard.PrinterResolution;
 
 /**
  * class that provides and manages the User Interface for the DEM application.
@@ -84,12 +92,19 @@ public class DEMmain extends Frame implements ActionListener, Runnable
      * constant that specifies that the action thread calculate AHAAT.
      */
     public static final int AHAAT = 8;
+    /**
+     * constant that specifies that the action thread print the DEM scaled
+     * to fit the page.
+     */
+    public static final int PRINT_FIT = 9;
 
     /**
      * constant that specifies the verion number.
      */
     private static String msVersion = "1.01";
     
+    /* the contour intervals offered on the View menu, in meters */
+    private static final int CONTOUR_INTERVALS[] = { 10, 20, 50, 100 };
     private static final int X_SIZE = 800;
     private static final int Y_SIZE = 600;
 
@@ -127,12 +142,42 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 	addMenuItem(fileMenu, "View DEM", "FileView");
 	addMenuItem(fileMenu, "Merge 2 DEMs", "FileMerge");
 	addMenuItem(fileMenu, "Extract Region", "FileExtract");
+	addMenuItem(fileMenu, "Set Service Area", "FileServiceArea");
+	addMenuItem(fileMenu, "Clear Service Area", "FileClearServiceArea");
 	addMenuItem(fileMenu, "View Coverage", "FileCoverage");
+	addMenuItem(fileMenu, "Show/Hide Coverage", "FileToggleCoverage");
+	addMenuItem(fileMenu, "Next Coverage Color", "FileCoverageColor");
+	addMenuItem(fileMenu, "Clear Coverage", "FileClearCoverage");
 	addMenuItem(fileMenu, "Calculate AHAAT", "FileAHAAT");
 	addMenuItem(fileMenu, "Print Image", "FilePrint");
+	addMenuItem(fileMenu, "Print Image to Fit Page", "FilePrintFit");
 	addMenuItem(fileMenu, "About", "FileAbout");
 	addMenuItem(fileMenu, "Exit", "FileExit");
 	mb.add(fileMenu);
+	Menu viewMenu = new Menu("View");
+	addMenuItem(viewMenu, "Zoom In", "ViewZoomIn");
+	addMenuItem(viewMenu, "Zoom Out", "ViewZoomOut");
+	addMenuItem(viewMenu, "Actual Size", "ViewActualSize");
+	addMenuItem(viewMenu, "Hillshade On/Off", "ViewHillshade");
+	addMenuItem(viewMenu, "Equalized Colors On/Off", "ViewEqualized");
+	Menu contourMenu = new Menu("Contours");
+	addMenuItem(contourMenu, "None", "ViewContours0");
+	int i;
+	for (i = 0; i < CONTOUR_INTERVALS.length; i++)
+	{
+	    addMenuItem(contourMenu, "Every " + CONTOUR_INTERVALS[i] + " m", "ViewContours" + CONTOUR_INTERVALS[i]);
+	} /* for i */
+	viewMenu.add(contourMenu);
+	Menu productMenu = new Menu("Show");
+	addMenuItem(productMenu, "Elevation", "ViewProduct");
+	for (i = 0; i < Stencil.NAMES.length; i++)
+	{
+	    addMenuItem(productMenu,
+			Stencil.NAMES[i].substring(0, 1).toUpperCase() + Stencil.NAMES[i].substring(1),
+			"ViewProduct" + Stencil.NAMES[i]);
+	} /* for i */
+	viewMenu.add(productMenu);
+	mb.add(viewMenu);
 	
 	setMenuBar(mb);
 
@@ -236,11 +281,110 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 	    return;
 	} /* if arg.equals("FileMerge") */
 	    
+	if (arg.equals("FileServiceArea"))
+	{
+	    if (dem == null)
+	    {
+		new ErrorBox(this, "Error!", "No DEM data loaded.");
+		return;
+	    } /* if dem == null */
+	    String areaFileName = getFileName("Open Service Area", FileDialog.LOAD);
+	    if (areaFileName != null)
+	    {
+		try
+		{
+		    PolygonMask serviceArea = new PolygonMask(GeoCoordinate.read(areaFileName), dem);
+		    if (serviceArea.isEmpty())
+		    {
+			new ErrorBox(this, "Error!", "The service area is not on the DEM.");
+		    } /* if serviceArea.isEmpty() */
+		    else
+		    {
+			map.setServiceArea(serviceArea);
+			statusBar.setMessage("Service area: " + serviceArea.getCellCount() + " points");
+		    } /* if serviceArea.isEmpty() */
+		} /* try */
+		catch (IOException ex)
+		{
+		    new ErrorBox(this, "Error reading " + areaFileName, ex.toString());
+		}
+	    } /* if areaFileName != null */
+	    return;
+	} /* if arg.equals("FileServiceArea") */
+
+	if (arg.equals("FileClearServiceArea"))
+	{
+	    map.setServiceArea(null);
+	    statusBar.setMessage("");
+	    return;
+	} /* if arg.equals("FileClearServiceArea") */
+	    
 	if (arg.equals("FileCoverage"))
 	{
 	    startAction(COVERAGE);
 	    return;
 	} /* if arg.equals("FileCoverage") */
+
+	if (arg.equals("FileToggleCoverage"))
+	{
+	    map.setCoverageVisible(!map.isCoverageVisible());
+	    return;
+	} /* if arg.equals("FileToggleCoverage") */
+
+	if (arg.equals("FileCoverageColor"))
+	{
+	    map.nextCoverageColor();
+	    return;
+	} /* if arg.equals("FileCoverageColor") */
+
+	if (arg.equals("FileClearCoverage"))
+	{
+	    map.clearCoverage();
+	    return;
+	} /* if arg.equals("FileClearCoverage") */
+	    
+	if (arg.equals("ViewZoomIn"))
+	{
+	    map.zoomIn();
+	    return;
+	} /* if arg.equals("ViewZoomIn") */
+
+	if (arg.equals("ViewZoomOut"))
+	{
+	    map.zoomOut();
+	    return;
+	} /* if arg.equals("ViewZoomOut") */
+
+	if (arg.equals("ViewActualSize"))
+	{
+	    map.setZoom(0);
+	    return;
+	} /* if arg.equals("ViewActualSize") */
+
+	if (arg.equals("ViewHillshade"))
+	{
+	    map.setHillshade(!map.isHillshade());
+	    return;
+	} /* if arg.equals("ViewHillshade") */
+
+	if (arg.equals("ViewEqualized"))
+	{
+	    map.setEqualized(!map.isEqualized());
+	    return;
+	} /* if arg.equals("ViewEqualized") */
+
+	if (arg.startsWith("ViewProduct"))
+	{
+	    String name = arg.substring("ViewProduct".length());
+	    map.setProduct((name.length() == 0) ? null : name);
+	    return;
+	} /* if arg.startsWith("ViewProduct") */
+
+	if (arg.startsWith("ViewContours"))
+	{
+	    map.setContourInterval(Util.safeStringToInt(arg.substring("ViewContours".length())));
+	    return;
+	} /* if arg.startsWith("ViewContours") */
 	    
 	if (arg.equals("FileAHAAT"))
 	{
@@ -253,6 +397,12 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 	    startAction(PRINT);
 	    return;
 	} /* if arg.equals("FilePrint") */
+
+	if (arg.equals("FilePrintFit"))
+	{
+	    startAction(PRINT_FIT);
+	    return;
+	} /* if arg.equals("FilePrintFit") */
 	    
 	if (arg.equals("FileAbout"))
 	{
@@ -305,8 +455,10 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 		this.setTitle(APP_NAME + " (loading USGS)");
 		if (dem.readUSGS())
 		{
+		    dem.buildPyramid();
 		    this.setTitle(APP_NAME + " " + demFileName);
 		    antennaLocationDialog.setDEM(dem);
+		    map.setServiceArea(null);
 		} /* if dem.readDEM(demFileName) */
 		else
 		{
@@ -318,8 +470,10 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 		this.setTitle(APP_NAME + " (loading)");
 		if (dem.read())
 		{
+		    dem.buildPyramid();
 		    this.setTitle(APP_NAME + " " + demFileName);
 		    antennaLocationDialog.setDEM(dem);
+		    map.setServiceArea(null);
 		} /* if dem.readBinaryDEM(demFileName) */
 		else
 		{
@@ -374,10 +528,11 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 		break;
 
 	    case PRINT:
+	    case PRINT_FIT:
 		this.setTitle(APP_NAME + " (printing)");
 		if (dem != null)
 		{
-		    print();
+		    print(threadAction == PRINT_FIT);
 		} /* if dem != null*/
 		else
 		{
@@ -416,16 +571,42 @@ public class DEMmain extends Frame implements ActionListener, Runnable
 	setWait(false);
     } /* run() */
 
-    void print()
+    /**
+     * print the map on one page.
+     * @param fit true to scale the map to fit the page, false to print a
+     * point of the DEM per printer dot.
+     */
+    void print(final boolean fit)
     {
-	PrintJob pj = getToolkit().getPrintJob(this, "output", null);
-	if (pj != null)
+	PrinterJob job = PrinterJob.getPrinterJob();
+	PrintRequestAttributeSet attributes = new HashPrintRequestAttributeSet();
+	if (!job.printDialog(attributes))
+	    return;
+	/* the resolution chosen, or the printer's own if none was */
+	PrinterResolution resolution = (PrinterResolution) attributes.get(PrinterResolution.class);
+	if ((resolution == null) && (job.getPrintService() != null))
+	    resolution = (PrinterResolution) job.getPrintService().getDefaultAttributeValue(PrinterResolution.class);
+	final int dpi = (resolution == null) ? 0
+	    : Math.min(resolution.getCrossFeedResolution(PrinterResolution.DPI),
+		       resolution.getFeedResolution(PrinterResolution.DPI));
+	job.setPrintable(new Printable()
+	    {
+		public int print(Graphics g, PageFormat format, int pageIndex)
+		{
+		    if (pageIndex > 0)
+			return NO_SUCH_PAGE;
+		    map.print((Graphics2D) g, format, dpi, fit);
+		    return PAGE_EXISTS;
+		} /* print() */
+	    });
+	try
+	{
+	    job.print(attributes);
+	} /* try */
+	catch (PrinterException e)
 	{
-	    Graphics g = pj.getGraphics();
-	    map.paint(g);
-	    g.dispose();
-	    pj.end();
-	} /* if pj != null */
+	    ErrorBox.report(this, "Error printing", e.toString());
+	}
     } /* print() */
     
     /**
@@ -0,0 +1,196 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a class that keeps rendered tiles as files in a directory, least
+ * recently used first, up to a limit on the disk space they use.  every
+ * file is named tile-version-name.png, where the version names the data
+ * the tiles were drawn from; tiles of another version are left over from
+ * other data and are removed when the cache is opened, as are tiles that
+ * were still being written.  the tiles there of the right version are
+ * kept, oldest first, so a restarted server still has its tiles.  files
+ * not named like tiles are never touched, so the directory may be shared.
+ */
+public class DiskTileCache
+{
+    /**
+     * the default limit on the disk space used by tiles, in bytes.
+     */
+    public static final long DEFAULT_MAXIMUM_BYTES = 256L * 1024 * 1024;
+    private static final String SUFFIX = ".png";
+    /* the names of the files this cache makes, and of those being written */
+    private static final Pattern TILE_NAME = Pattern.compile("tile-[0-9a-f]+-[A-Za-z0-9-]+\\.png(\\.[0-9]+)?");
+
+    File directory;
+    String prefix;
+    long maximumBytes;
+    LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(64, 0.75f, true);
+    long bytes = 0;
+    int temporary = 0;
+
+    /**
+     * open a cache directory, creating it if need be.
+     * @param directory the directory to keep the tiles in.
+     * @param version the version of the tiles that belong, in hex.
+     * @param maximumBytes the most disk space the tiles may use.
+     * @exception IOException if the directory cannot be made.
+     */
+    public DiskTileCache(File directory, String version, long maximumBytes) throws IOException
+    {
+	this.directory = directory;
+	prefix = "tile-" + version + "-";
+	this.maximumBytes = maximumBytes;
+	if (!directory.isDirectory() && !directory.mkdirs())
+	    throw new IOException("cannot make " + directory);
+	File found[] = directory.listFiles();
+	Arrays.sort(found, new Comparator<File>()
+	    {
+		public int compare(File a, File b)
+		{
+		    return Long.compare(a.lastModified(), b.lastModified());
+		} /* compare() */
+	    });
+	int i;
+	Matcher matcher;
+	for (i = 0; i < found.length; i++)
+	{
+	    matcher = TILE_NAME.matcher(found[i].getName());
+	    if (!matcher.matches() || !found[i].isFile())
+		continue;
+	    if (matcher.group(1) != null)
+	    { /* a tile that was being written when the last server stopped */
+		found[i].delete();
+		continue;
+	    } /* if group(1) != null */
+	    if (found[i].getName().startsWith(prefix))
+	    {
+		files.put(found[i].getName(), Long.valueOf(found[i].length()));
+		bytes += found[i].length();
+	    } /* if startsWith(prefix) */
+	    else
+		found[i].delete();
+	} /* for i */
+	trim();
+    } /* DiskTileCache constructor */
+
+    /**
+     * get a tile.
+     * @param name the name of the tile, of letters, digits and dashes.
+     * @return the tile, or null if it is not in the cache.
+     */
+    public byte[] get(String name)
+    {
+	String fileName = prefix + name + SUFFIX;
+	synchronized (this)
+	{
+	    if (files.get(fileName) == null)
+		return null;
+	} /* synchronized */
+	try
+	{
+	    RandomAccessFile in = new RandomAccessFile(new File(directory, fileName), "r");
+	    byte tile[] = new byte[(int) in.length()];
+	    in.readFully(tile);
+	    in.close();
+	    return tile;
+	} /* try */
+	catch (IOException e)
+	{ /* removed by another thread since; draw it again */
+	    return null;
+	}
+    } /* get() */
+
+    /**
+     * add a tile, removing the least recently used tiles if they then
+     * take too much space.  the tile is written to a new file, then renamed,
+     * so a reader never sees part of one.
+     * @param name the name of the tile, of letters, digits and dashes.
+     * @param tile the tile.
+     * @exception IOException if the tile cannot be written.
+     */
+    public void put(String name, byte tile[]) throws IOException
+    {
+	String fileName = prefix + name + SUFFIX;
+	File part;
+	synchronized (this)
+	{
+	    part = new File(directory, fileName + "." + (temporary++));
+	} /* synchronized */
+	FileOutputStream out = new FileOutputStream(part);
+	out.write(tile);
+	out.close();
+	synchronized (this)
+	{
+	    if (!part.renameTo(new File(directory, fileName)))
+	    {
+		part.delete();
+		return;
+	    } /* if !renameTo() */
+	    Long old = files.put(fileName, Long.valueOf(tile.length));
+	    if (old != null)
+		bytes -= old.longValue();
+	    bytes += tile.length;
+	    trim();
+	} /* synchronized */
+    } /* put() */
+
+    /**
+     * get the disk space the tiles are using.
+     * @return the size of the cached tiles in bytes.
+     */
+    public synchronized long getBytes()
+    {
+	return bytes;
+    } /* getBytes() */
+
+    /**
+     * remove the least recently used tiles until the rest fit.
+     */
+    synchronized void trim()
+    {
+	Iterator<java.util.Map.Entry<String, Long>> it = files.entrySet().iterator();
+	java.util.Map.Entry<String, Long> entry;
+	while ((bytes > maximumBytes) && it.hasNext())
+	{
+	    entry = it.next();
+	    bytes -= entry.getValue().longValue();
+	    it.remove();
+	    new File(directory, entry.getKey()).delete();
+	} /* while */
+    } /* trim() */
+} /* class DiskTileCache */
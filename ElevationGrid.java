@@ -0,0 +1,174 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that holds a grid of elevations in one flat array, a row at a
+ * time from the south, so point column, row is at [row * stride + column]
+ * and the stride is the number of columns.  this is the order the levels
+ * of an ElevationPyramid are kept in, and the order maps, stencils and
+ * contours are worked out in, so they read memory straight through rather
+ * than stepping from one array to the next.  grids too big for one array
+ * are TiledElevationGrids, which create() makes when it has to, and grids
+ * left on disk are MappedElevationGrids.
+ */
+public class ElevationGrid implements ElevationSource
+{
+    /**
+     * the most elements an array can be relied on to hold.
+     */
+    public static final int MAXIMUM_ARRAY = Integer.MAX_VALUE - 8;
+    int columns;
+    int rows;
+    int stride;
+    short elevations[];
+
+    /**
+     * create a new ElevationGrid with every elevation zero.  the grid must
+     * fit in one array; use create() if it might not.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     */
+    public ElevationGrid(int columns, int rows)
+    {
+	this(columns, rows, new short[columns * rows]);
+    } /* ElevationGrid constructor */
+
+    /**
+     * create a new ElevationGrid around an array of elevations.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @param elevations the elevations, or null for a subclass that keeps
+     * its own.
+     */
+    ElevationGrid(int columns, int rows, short elevations[])
+    {
+	this.columns = columns;
+	this.rows = rows;
+	stride = columns;
+	this.elevations = elevations;
+    } /* ElevationGrid constructor */
+
+    /**
+     * create a grid of elevations, all zero, in one array if it fits and in
+     * blocks of rows if not.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @return the new grid.
+     */
+    public static ElevationGrid create(int columns, int rows)
+    {
+	if ((long) columns * rows <= MAXIMUM_ARRAY)
+	    return new ElevationGrid(columns, rows);
+	return new TiledElevationGrid(columns, rows, MAXIMUM_ARRAY);
+    } /* create() */
+
+    /**
+     * get the number of columns of elevations.
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+	return columns;
+    } /* getColumnCount() */
+
+    /**
+     * get the number of rows of elevations.
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+	return rows;
+    } /* getRowCount() */
+
+    /**
+     * get the distance in an array from a point to the one north of it.
+     * @return the stride.
+     */
+    public int getStride()
+    {
+	return stride;
+    } /* getStride() */
+
+    /**
+     * get the arrays the elevations are kept in, in the order described
+     * above, for loops that walk them themselves.  this grid has just the
+     * one.
+     * @return the arrays of elevations, or null if they are not in arrays.
+     */
+    public short[][] getBlocks()
+    {
+	return new short[][] { elevations };
+    } /* getBlocks() */
+
+    /**
+     * get the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @return the elevation at that point.
+     */
+    public short getElevation(int column, int row)
+    {
+	return elevations[row * stride + column];
+    } /* getElevation() */
+
+    /**
+     * set the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @param elevation the elevation.
+     */
+    public void setElevation(int column, int row, short elevation)
+    {
+	elevations[row * stride + column] = elevation;
+    } /* setElevation() */
+
+    /**
+     * copy part of a row.
+     * @param row the row.
+     * @param column the first column to copy.
+     * @param buffer where to copy the elevations to.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     */
+    public void readRow(int row, int column, short buffer[], int offset, int count)
+    {
+	System.arraycopy(elevations, row * stride + column, buffer, offset, count);
+    } /* readRow() */
+
+    /**
+     * copy elevations into part of a row.
+     * @param row the row.
+     * @param column the first column to copy to.
+     * @param buffer where to copy the elevations from.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     */
+    public void writeRow(int row, int column, short buffer[], int offset, int count)
+    {
+	System.arraycopy(buffer, offset, elevations, row * stride + column, count);
+    } /* writeRow() */
+} /* class ElevationGrid */
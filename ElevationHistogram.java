@@ -0,0 +1,117 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that counts how many points of a DEM are at each elevation.
+ * the points are added as they are loaded, so the true lowest and highest
+ * elevations are known without another pass over the DEM, whatever the
+ * file's header says.
+ */
+public class ElevationHistogram
+{
+    /* counts[e - Short.MIN_VALUE] is the number of points at elevation e */
+    int counts[] = new int[1 << 16];
+    long total = 0;
+    short minimum = Short.MAX_VALUE;
+    short maximum = Short.MIN_VALUE;
+
+    /**
+     * count a point.
+     * @param elevation the elevation of the point.
+     */
+    public void add(short elevation)
+    {
+	counts[elevation - Short.MIN_VALUE]++;
+	total++;
+	if (elevation < minimum)
+	    minimum = elevation;
+	if (elevation > maximum)
+	    maximum = elevation;
+    } /* add() */
+
+    /**
+     * get the number of points counted.
+     * @return the number of points.
+     */
+    public long getTotal()
+    {
+	return total;
+    } /* getTotal() */
+
+    /**
+     * get the lowest elevation counted.
+     * @return the lowest elevation, or 0 if nothing was counted.
+     */
+    public short getMinimum()
+    {
+	return (minimum > maximum) ? 0 : minimum;
+    } /* getMinimum() */
+
+    /**
+     * get the highest elevation counted.
+     * @return the highest elevation, or 0 if nothing was counted.
+     */
+    public short getMaximum()
+    {
+	return (minimum > maximum) ? 0 : maximum;
+    } /* getMaximum() */
+
+    /**
+     * get the number of points at an elevation.
+     * @param elevation the elevation.
+     * @return the number of points.
+     */
+    public int getCount(short elevation)
+    {
+	return counts[elevation - Short.MIN_VALUE];
+    } /* getCount() */
+
+    /**
+     * divide the elevations into classes holding about the same number of
+     * points each, so that flat and steep DEMs use all the colors.
+     * @param classes the number of classes.
+     * @return the class of each elevation from getMinimum() to getMaximum(),
+     * at [elevation - getMinimum()], 0 to classes-1.
+     */
+    public byte[] equalize(int classes)
+    {
+	short low = getMinimum();
+	byte table[] = new byte[getMaximum() - low + 1];
+	long points = getTotal();
+	long below = 0;
+	int count;
+	int k;
+	for (k = 0; k < table.length; k++)
+	{
+	    count = counts[low + k - Short.MIN_VALUE];
+	    /* the class of the middle point at this elevation */
+	    table[k] = (byte) Math.min(classes - 1, (below + count / 2) * classes / Math.max(points, 1));
+	    below += count;
+	} /* for k */
+	return table;
+    } /* equalize() */
+} /* class ElevationHistogram */
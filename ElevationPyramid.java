@@ -0,0 +1,243 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that holds a DEM at a series of coarser resolutions, for drawing
+ * zoomed out views without reading every elevation.  level 0 is the DEM
+ * itself; each level after it has one point for each 2 x 2 block of the
+ * level before, holding both the mean and the maximum of the block.  the
+ * levels stop once they fit in MINIMUM_SIZE points each way.
+ * <p>
+ * each level is stored in an ElevationGrid, made by ElevationGrid.create()
+ * so that a level too big for one array is kept in blocks of rows.
+ */
+public class ElevationPyramid
+{
+    /**
+     * the size the coarsest level fits in.
+     */
+    public static final int MINIMUM_SIZE = 256;
+
+    ElevationSource terrain;
+    int levelCount;
+    int columns[];
+    int rows[];
+    ElevationGrid means[];
+    ElevationGrid maxima[];
+
+    /**
+     * create a new ElevationPyramid.  call build() to fill it in.
+     * @param terrain the full resolution elevations.
+     */
+    public ElevationPyramid(ElevationSource terrain)
+    {
+	this.terrain = terrain;
+	int c = terrain.getColumnCount();
+	int r = terrain.getRowCount();
+	levelCount = 1;
+	while ((c > MINIMUM_SIZE) || (r > MINIMUM_SIZE))
+	{
+	    c = (c + 1) / 2;
+	    r = (r + 1) / 2;
+	    levelCount++;
+	} /* while */
+	columns = new int[levelCount];
+	rows = new int[levelCount];
+	means = new ElevationGrid[levelCount];
+	maxima = new ElevationGrid[levelCount];
+	columns[0] = terrain.getColumnCount();
+	rows[0] = terrain.getRowCount();
+	int level;
+	for (level = 1; level < levelCount; level++)
+	{
+	    columns[level] = (columns[level - 1] + 1) / 2;
+	    rows[level] = (rows[level - 1] + 1) / 2;
+	} /* for level */
+    } /* ElevationPyramid constructor */
+
+    /**
+     * work out all the levels, each one in bands on all the processors.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public void build(StatusBar statusBar)
+    {
+	int level;
+	for (level = 1; level < levelCount; level++)
+	{
+	    final int l = level;
+	    means[level] = ElevationGrid.create(columns[level], rows[level]);
+	    maxima[level] = ElevationGrid.create(columns[level], rows[level]);
+	    Bands.run(rows[level], new BandTask()
+		{
+		    public void run(int firstRow, int lastRow)
+		    {
+			buildRows(l, firstRow, lastRow);
+		    } /* run() */
+		}, (level == 1) ? statusBar : null);
+	} /* for level */
+	if (statusBar != null)
+	{
+	    statusBar.updateProgress(0);
+	} /* if statusBar != null */
+    } /* build() */
+
+    /**
+     * work out some rows of a level from the level before.  blocks on the
+     * north and east edges may be missing a row or column, and are averaged
+     * over the points they have.
+     * @param level the level to work out.
+     * @param firstRow the first row.
+     * @param lastRow the row after the last.
+     */
+    void buildRows(int level, int firstRow, int lastRow)
+    {
+	int sourceColumns = columns[level - 1];
+	int sourceRows = rows[level - 1];
+	int levelColumns = columns[level];
+	int column, row, x, y, sum, count;
+	short maximum;
+	/* the two rows of the level before that each row is made from */
+	short sourceMeans[][] = new short[2][sourceColumns];
+	short sourceMaxima[][] = (level == 1) ? sourceMeans : new short[2][sourceColumns];
+	short levelMeans[] = new short[levelColumns];
+	short levelMaxima[] = new short[levelColumns];
+	for (row = firstRow; row < lastRow; row++)
+	{
+	    for (y = 2 * row; y < Math.min(2 * row + 2, sourceRows); y++)
+	    {
+		if (level == 1)
+		{ /* the level before level 1 is the terrain itself */
+		    Stencil.readRow(terrain, y, 0, sourceMeans[y - 2 * row]);
+		} /* if level == 1 */
+		else
+		{
+		    means[level - 1].readRow(y, 0, sourceMeans[y - 2 * row], 0, sourceColumns);
+		    maxima[level - 1].readRow(y, 0, sourceMaxima[y - 2 * row], 0, sourceColumns);
+		} /* if level == 1 */
+	    } /* for y */
+	    for (column = 0; column < levelColumns; column++)
+	    {
+		sum = 0;
+		count = 0;
+		maximum = Short.MIN_VALUE;
+		for (y = 0; y < Math.min(2, sourceRows - 2 * row); y++)
+		{
+		    for (x = 2 * column; x < Math.min(2 * column + 2, sourceColumns); x++)
+		    {
+			sum += sourceMeans[y][x];
+			maximum = (short) Math.max(maximum, sourceMaxima[y][x]);
+			count++;
+		    } /* for x */
+		} /* for y */
+		levelMeans[column] = (short) Math.round((float) sum / count);
+		levelMaxima[column] = maximum;
+	    } /* for column */
+	    means[level].writeRow(row, 0, levelMeans, 0, levelColumns);
+	    maxima[level].writeRow(row, 0, levelMaxima, 0, levelColumns);
+	} /* for row */
+    } /* buildRows() */
+
+    /**
+     * get a level as an ElevationSource of its mean elevations.
+     * @param level the level.
+     * @return the level.
+     */
+    public ElevationSource getLevel(int level)
+    {
+	if (level == 0)
+	    return terrain;
+	return means[level];
+    } /* getLevel() */
+
+    /**
+     * get the grid of mean elevations of a level, for reading a row at a
+     * time.
+     * @param level the level, which must be at least 1.
+     * @return the mean elevations.
+     */
+    public ElevationGrid getMeans(int level)
+    {
+	return means[level];
+    } /* getMeans() */
+
+    /**
+     * get the number of levels, counting the full resolution level 0.
+     * @return the number of levels.
+     */
+    public int getLevelCount()
+    {
+	return levelCount;
+    } /* getLevelCount() */
+
+    /**
+     * get the number of columns in a level.
+     * @param level the level.
+     * @return the number of columns.
+     */
+    public int getColumnCount(int level)
+    {
+	return columns[level];
+    } /* getColumnCount() */
+
+    /**
+     * get the number of rows in a level.
+     * @param level the level.
+     * @return the number of rows.
+     */
+    public int getRowCount(int level)
+    {
+	return rows[level];
+    } /* getRowCount() */
+
+    /**
+     * get the mean elevation of a block.
+     * @param level the level.
+     * @param column the column of the block in the level.
+     * @param row the row of the block in the level.
+     * @return the mean elevation.
+     */
+    public short getMean(int level, int column, int row)
+    {
+	if (level == 0)
+	    return terrain.getElevation(column, row);
+	return means[level].getElevation(column, row);
+    } /* getMean() */
+
+    /**
+     * get the highest elevation in a block.
+     * @param level the level.
+     * @param column the column of the block in the level.
+     * @param row the row of the block in the level.
+     * @return the maximum elevation.
+     */
+    public short getMaximum(int level, int column, int row)
+    {
+	if (level == 0)
+	    return terrain.getElevation(column, row);
+	return maxima[level].getElevation(column, row);
+    } /* getMaximum() */
+} /* class ElevationPyramid */
@@ -0,0 +1,54 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an interface for anything that can supply a grid of elevations, whether
+ * it is held in memory, read through a cache or mapped from a file.
+ * columns run west to east and rows run south to north from the SW corner.
+ */
+public interface ElevationSource
+{
+    /**
+     * get the number of columns of elevations.
+     * @return the number of columns.
+     */
+    public int getColumnCount();
+
+    /**
+     * get the number of rows of elevations.
+     * @return the number of rows.
+     */
+    public int getRowCount();
+
+    /**
+     * get the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @return the elevation at that point.
+     */
+    public short getElevation(int column, int row);
+} /* interface ElevationSource */
@@ -69,6 +69,25 @@ public class ErrorBox extends Dialog implements ActionListener
 	setVisible(true);
     } /* ErrorBox() */
 
+    /**
+     * report an error, either in an ErrorBox or, when there is no parent
+     * frame to own the dialog (batch and server use), on the console.
+     * @param parent the Frame that owns the application, or null.
+     * @param title text to show in the title bar of the dialog.
+     * @param caption text to display inside the dialog box.
+     */
+    public static void report(Frame parent, String title, String caption)
+    {
+	if (parent == null)
+	{
+	    System.err.println(title + ": " + caption);
+	} /* if parent == null */
+	else
+	{
+	    new ErrorBox(parent, title, caption);
+	} /* if parent == null */
+    } /* report() */
+
     /**
      * manage action of the OK button.
      * @param e the ActionEvent from the OK button.
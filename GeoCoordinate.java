@@ -25,6 +25,12 @@ For more information, to submit bugs, software changes, etc., please contact
 
 */
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
 /**
  * a class that represents geographic coordinates of latitude and longitude.
  */
@@ -149,4 +155,66 @@ public class GeoCoordinate
 			   lat_min + "m " +
 			   lat + "s " + ((latitude >= 0) ? "N" : "S"));
     } /* toString() */
+
+    /**
+     * convert decimal degrees to arc-seconds.
+     * @param s the string representation of the decimal degrees.
+     * @return the number of arc-seconds, or 0 if not convertable.
+     */
+    public static int parseDegrees(String s)
+    {
+	return (int) Math.round(Util.safeStringToFloat(s) * 3600.0);
+    } /* parseDegrees() */
+
+    /**
+     * find out whether a string is a finite number.
+     * @param s the string.
+     * @return true if it is a finite number.
+     */
+    static boolean isNumber(String s)
+    {
+	try
+	{
+	    double value = Double.parseDouble(s);
+	    return !Double.isNaN(value) && !Double.isInfinite(value);
+	} /* try */
+	catch (NumberFormatException e)
+	{
+	    return false;
+	}
+    } /* isNumber() */
+
+    /**
+     * read a list of GeoCoordinates from a text file with one "latitude
+     * longitude" pair, in decimal degrees, per line.  lines without two
+     * numbers are skipped.
+     * @param fileName the name of the file to read.
+     * @return the GeoCoordinates in the order they appear in the file.
+     * @exception IOException if the file cannot be read.
+     */
+    public static GeoCoordinate[] read(String fileName) throws IOException
+    {
+	BufferedReader in = new BufferedReader(new FileReader(fileName));
+	Vector<GeoCoordinate> coordinates = new Vector<GeoCoordinate>();
+	String line;
+	StringTokenizer st;
+	String latitude, longitude;
+	while ((line = in.readLine()) != null)
+	{
+	    st = new StringTokenizer(line);
+	    if (st.countTokens() >= 2)
+	    {
+		latitude = st.nextToken();
+		longitude = st.nextToken();
+		if (isNumber(latitude) && isNumber(longitude))
+		{
+		    coordinates.addElement(new GeoCoordinate(parseDegrees(latitude), parseDegrees(longitude)));
+		} /* if isNumber(latitude)... */
+	    } /* if st.countTokens() >= 2 */
+	} /* while */
+	in.close();
+	GeoCoordinate result[] = new GeoCoordinate[coordinates.size()];
+	coordinates.copyInto(result);
+	return result;
+    } /* read() */
 } /* class GeoCoordinate */
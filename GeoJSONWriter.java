@@ -0,0 +1,125 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * a class that writes polygons as a GeoJSON FeatureCollection, each as a
+ * Feature of its own, as they come.
+ */
+public class GeoJSONWriter implements PolygonSink
+{
+    /* the number of decimal places in a coordinate, about 10 cm */
+    private static final int DECIMALS = 6;
+    private static final long SCALE = 1000000L;
+
+    Writer out;
+    String properties;
+    int count = 0;
+
+    /**
+     * create a new GeoJSONWriter and write the start of the collection.
+     * @param out the stream to write to.
+     * @param properties the JSON object written as the properties of each
+     * feature, such as {"coverage": "visible"}.
+     * @exception IOException if the start cannot be written.
+     */
+    public GeoJSONWriter(OutputStream out, String properties) throws IOException
+    {
+	this.out = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+	this.properties = properties;
+	this.out.write("{\"type\": \"FeatureCollection\", \"features\": [\n");
+    } /* GeoJSONWriter constructor */
+
+    /**
+     * write a polygon as a Feature.
+     * @param rings the boundary, then the holes, as longitude, latitude pairs.
+     * @exception IOException if the polygon cannot be written.
+     */
+    public void writePolygon(double rings[][]) throws IOException
+    {
+	if (count++ > 0)
+	    out.write(",\n");
+	out.write("{\"type\": \"Feature\", \"properties\": ");
+	out.write(properties);
+	out.write(", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": [");
+	int i, k;
+	for (i = 0; i < rings.length; i++)
+	{
+	    out.write((i == 0) ? "[" : ", [");
+	    for (k = 0; k < rings[i].length; k += 2)
+	    {
+		out.write((k == 0) ? "[" : ", [");
+		out.write(formatDegrees(rings[i][k]));
+		out.write(", ");
+		out.write(formatDegrees(rings[i][k + 1]));
+		out.write("]");
+	    } /* for k */
+	    out.write("]");
+	} /* for i */
+	out.write("]}}");
+    } /* writePolygon() */
+
+    /**
+     * write the end of the collection and close the stream.
+     * @exception IOException if the end cannot be written.
+     */
+    public void close() throws IOException
+    {
+	out.write("\n]}\n");
+	out.close();
+    } /* close() */
+
+    /**
+     * format an angle to a fixed number of decimal places, without the
+     * trailing zeroes.
+     * @param degrees the angle.
+     * @return the angle as a string.
+     */
+    static String formatDegrees(double degrees)
+    {
+	long units = Math.round(Math.abs(degrees) * SCALE);
+	StringBuilder s = new StringBuilder();
+	if ((degrees < 0) && (units != 0))
+	    s.append('-');
+	s.append(units / SCALE);
+	long fraction = units % SCALE;
+	if (fraction != 0)
+	{
+	    String digits = Long.toString(fraction + SCALE).substring(1);
+	    int end = DECIMALS;
+	    while (digits.charAt(end - 1) == '0')
+		end--;
+	    s.append('.').append(digits, 0, end);
+	} /* if fraction != 0 */
+	return s.toString();
+    } /* formatDegrees() */
+} /* class GeoJSONWriter */
@@ -0,0 +1,158 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a StencilKernel that works out how brightly terrain is lit by a low sun
+ * in the northwest, to make ridges stand out on the map.  the slope and
+ * aspect of each point come from the 3 x 3 block of elevations around it
+ * (Horn's method).
+ */
+public class Hillshade implements StencilKernel
+{
+    /**
+     * the name of the kernel.
+     */
+    public static final String NAME = "hillshade";
+    /**
+     * the number of levels of light, from darkest (0) to brightest.
+     */
+    public static final int SHADES = 8;
+    /**
+     * the direction the light comes from, in degrees clockwise from north.
+     */
+    public static final double SUN_AZIMUTH = 315.0;
+    /**
+     * the height of the light above the horizon, in degrees.
+     */
+    public static final double SUN_ALTITUDE = 45.0;
+
+    final double flat;
+    final double xLight;
+    final double yLight;
+    final double xScale;
+    final double yScale;
+
+    /**
+     * create a new Hillshade kernel.
+     * @param xSpacing the distance between columns in meters.
+     * @param ySpacing the distance between rows in meters.
+     */
+    public Hillshade(double xSpacing, double ySpacing)
+    {
+	double zenith = Math.toRadians(90.0 - SUN_ALTITUDE);
+	/* the direction of the sun as an angle counter clockwise from east */
+	double azimuth = Math.toRadians(360.0 - SUN_AZIMUTH + 90.0);
+	/*
+	 * with p the gradient, cos(slope) = 1/sqrt(1+p*p), sin(slope) = p/sqrt(1+p*p)
+	 * and the aspect's cosine and sine are -dzdx/p and -dzdy/p, so the usual
+	 * cos(zenith)cos(slope) + sin(zenith)sin(slope)cos(azimuth-aspect) needs
+	 * only a square root per point.
+	 */
+	flat = Math.cos(zenith) * SHADES;
+	xLight = Math.sin(zenith) * Math.cos(azimuth) * SHADES / (8.0 * xSpacing);
+	yLight = Math.sin(zenith) * Math.sin(azimuth) * SHADES / (8.0 * ySpacing);
+	xScale = 1.0 / (8.0 * xSpacing);
+	yScale = 1.0 / (8.0 * ySpacing);
+    } /* Hillshade constructor */
+
+    /**
+     * work out the light level of every point.
+     * @param terrain the elevations.
+     * @param xSpacing the distance between columns in meters.
+     * @param ySpacing the distance between rows in meters.
+     * @param statusBar the StatusBar to show progress on, or null.
+     * @return the light levels, 0 to SHADES-1, a row at a time from the
+     * south, so point column, row is at [row * columns + column].
+     */
+    public static byte[] compute(ElevationSource terrain,
+				 double xSpacing,
+				 double ySpacing,
+				 StatusBar statusBar)
+    {
+	return Stencil.run(terrain, new Hillshade(xSpacing, ySpacing), statusBar);
+    } /* compute() */
+
+    /**
+     * get the name of the kernel.
+     * @return the name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * get how far the square reaches from its middle.
+     * @return the radius.
+     */
+    public int getRadius()
+    {
+	return 1;
+    } /* getRadius() */
+
+    /**
+     * get the number of different values the kernel gives.
+     * @return the number of values.
+     */
+    public int getValueCount()
+    {
+	return SHADES;
+    } /* getValueCount() */
+
+    /**
+     * work out the values of a row of points.
+     * @param window the rows of elevations around the row, south first.
+     * @param columns the number of points in the row.
+     * @param values the array to put the values in.
+     * @param offset where in values the row's first value goes.
+     */
+    public void apply(short window[][], int columns, byte values[], int offset)
+    {
+	int column, dx, dy;
+	double dzdx, dzdy, light;
+	for (column = 0; column < columns; column++)
+	{
+	    dx = Stencil.eastward(window, column);
+	    dy = Stencil.northward(window, column);
+	    dzdx = dx * xScale;
+	    dzdy = dy * yScale;
+	    light = (flat - xLight * dx - yLight * dy)
+		/ Math.sqrt(1.0 + dzdx * dzdx + dzdy * dzdy);
+	    values[offset + column] = (byte) Math.max(0, Math.min(SHADES - 1, (int) light));
+	} /* for column */
+    } /* apply() */
+
+    /**
+     * describe a value for the status bar.
+     * @param value the value.
+     * @return the description.
+     */
+    public String describe(int value)
+    {
+	return "light " + (value + 1) + "/" + SHADES;
+    } /* describe() */
+} /* class Hillshade */
@@ -0,0 +1,89 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.util.BitSet;
+
+/**
+ * an engine that casts the same rays as the radial engine, but keeps the
+ * steepest slope seen so far along each ray instead of testing every
+ * earlier sample, so each ray costs time in proportion to its length
+ * rather than its length squared.  this is the engine the coverage
+ * workers use, through RadialCoverage.
+ */
+public class HorizonViewshedEngine implements ViewshedEngine
+{
+    /**
+     * the name of this engine.
+     */
+    public static final String NAME = "horizon";
+
+    /**
+     * get the name this engine is selected by.
+     * @return the engine's name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * calculate the coverage of a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @param sink the receiver of the results.
+     */
+    public void calculate(ElevationSource terrain, ViewshedSite site, ViewshedSink sink)
+    {
+	RadialCoverage coverage = new RadialCoverage(terrain, site);
+	BitSet reached = new BitSet();
+	BitSet shadowed = new BitSet();
+	int rays = coverage.getRayCount();
+	int columns = terrain.getColumnCount();
+	int ray, step, end, index;
+	step = Math.max(1, rays / 100);
+	for (ray = 0; ray < rays; ray = end)
+	{
+	    end = Math.min(rays, ray + step);
+	    coverage.calculate(ray, end, reached, shadowed);
+	    /*
+	     * report each batch of rays as it is done, so a map can show it;
+	     * cells near the site are reported again by later batches, and
+	     * any that one of them shadows stays shadowed.
+	     */
+	    for (index = reached.nextSetBit(0); index >= 0; index = reached.nextSetBit(index + 1))
+	    {
+		if (shadowed.get(index))
+		    sink.setShadowed(index % columns, index / columns);
+		else
+		    sink.setVisible(index % columns, index / columns);
+	    } /* for index */
+	    reached.clear();
+	    shadowed.clear();
+	    sink.progress(end * 100 / rays);
+	} /* for ray */
+    } /* calculate() */
+} /* class HorizonViewshedEngine */
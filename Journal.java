@@ -0,0 +1,223 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Vector;
+
+/**
+ * a class that records completed units of a long batch job (finished sites,
+ * finished azimuth sectors) in a local file, so that a job that is stopped
+ * can be restarted where it left off.  completed units are collected in
+ * memory and written out, and synced to the disk, every so many units or
+ * so many seconds, whichever comes first; larger intervals cost less but
+ * lose more work in a crash.  a record that was only partly written when
+ * the job stopped is discarded when the journal is reopened.
+ */
+public class Journal
+{
+    private static final int MAGIC = 0x44454d4a; /* "DEMJ" */
+    /**
+     * the default number of units between checkpoints.
+     */
+    public static final int DEFAULT_CHECKPOINT_UNITS = 16;
+    /**
+     * the default number of seconds between checkpoints.
+     */
+    public static final int DEFAULT_CHECKPOINT_SECONDS = 60;
+    String fileName;
+    RandomAccessFile file;
+    int checkpointUnits;
+    long checkpointMillis;
+    long lastCheckpoint;
+    int pendingUnits;
+    ByteArrayOutputStream pending;
+    DataOutputStream pendingOut;
+    Vector<Integer> units;
+    Vector<byte[]> results;
+
+    /**
+     * open a journal for a job, reading the units already completed.  if the
+     * file holds a journal for a different job it is started over.
+     * @param fileName the name of the journal file.
+     * @param job a description of the job, e.g. its command line.
+     * @param checkpointUnits the number of units between checkpoints.
+     * @param checkpointSeconds the number of seconds between checkpoints.
+     * @exception IOException if the journal cannot be read or created.
+     */
+    public Journal(String fileName, String job, int checkpointUnits, int checkpointSeconds) throws IOException
+    {
+	this.fileName = fileName;
+	this.checkpointUnits = Math.max(1, checkpointUnits);
+	checkpointMillis = checkpointSeconds * 1000L;
+	units = new Vector<Integer>();
+	results = new Vector<byte[]>();
+	long goodLength = recover(job);
+	file = new RandomAccessFile(fileName, "rw");
+	if (goodLength == 0)
+	{ /* new or different job, start over */
+	    file.setLength(0);
+	    file.writeInt(MAGIC);
+	    file.writeUTF(job);
+	    file.getFD().sync();
+	} /* if goodLength == 0 */
+	else
+	{
+	    file.setLength(goodLength);
+	    file.seek(goodLength);
+	} /* if goodLength == 0 */
+	pending = new ByteArrayOutputStream();
+	pendingOut = new DataOutputStream(pending);
+	lastCheckpoint = System.currentTimeMillis();
+    } /* Journal constructor */
+
+    /**
+     * read the completed units from an existing journal for the same job.
+     * @return the length of the good part of the file, or 0 to start over.
+     */
+    private long recover(String job) throws IOException
+    {
+	DataInputStream in;
+	try
+	{
+	    in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+	} /* try */
+	catch (FileNotFoundException e)
+	{
+	    return 0;
+	}
+	long goodLength = 0;
+	try
+	{
+	    if ((in.readInt() != MAGIC) || !in.readUTF().equals(job))
+	    {
+		in.close();
+		return 0;
+	    } /* if in.readInt() != MAGIC ... */
+	    /* the job was written with writeUTF, in modified UTF-8, so measure it the same way */
+	    ByteArrayOutputStream key = new ByteArrayOutputStream();
+	    new DataOutputStream(key).writeUTF(job);
+	    goodLength = 4 + key.size();
+	    while (true)
+	    {
+		int unit = in.readInt();
+		byte result[] = new byte[in.readInt()];
+		in.readFully(result);
+		units.addElement(Integer.valueOf(unit));
+		results.addElement(result);
+		goodLength += 8 + result.length;
+	    } /* while */
+	} /* try */
+	catch (EOFException e)
+	{ /* end of the journal, or a record cut short */
+	}
+	in.close();
+	return goodLength;
+    } /* recover() */
+
+    /**
+     * get the number of units recovered from the journal.
+     * @return the number of completed units.
+     */
+    public int getCompletedCount()
+    {
+	return units.size();
+    } /* getCompletedCount() */
+
+    /**
+     * get the number of a unit recovered from the journal.
+     * @param i which recovered unit, 0 to getCompletedCount()-1.
+     * @return the unit number.
+     */
+    public int getCompletedUnit(int i)
+    {
+	return units.elementAt(i).intValue();
+    } /* getCompletedUnit() */
+
+    /**
+     * get the result of a unit recovered from the journal.
+     * @param i which recovered unit, 0 to getCompletedCount()-1.
+     * @return the result recorded for the unit.
+     */
+    public byte[] getCompletedResult(int i)
+    {
+	return results.elementAt(i);
+    } /* getCompletedResult() */
+
+    /**
+     * record a completed unit.  it is written out at the next checkpoint.
+     * @param unit the unit number.
+     * @param result the result of the unit.
+     * @exception IOException if a checkpoint is due and cannot be written.
+     */
+    public synchronized void record(int unit, byte result[]) throws IOException
+    {
+	pendingOut.writeInt(unit);
+	pendingOut.writeInt(result.length);
+	pendingOut.write(result);
+	pendingUnits++;
+	if ((pendingUnits >= checkpointUnits) ||
+	    (System.currentTimeMillis() - lastCheckpoint >= checkpointMillis))
+	{
+	    checkpoint();
+	} /* if pendingUnits >= checkpointUnits ... */
+    } /* record() */
+
+    /**
+     * write the recorded units out and sync them to the disk.
+     * @exception IOException if the journal cannot be written.
+     */
+    public synchronized void checkpoint() throws IOException
+    {
+	if (pendingUnits > 0)
+	{
+	    pendingOut.flush();
+	    file.write(pending.toByteArray());
+	    file.getFD().sync();
+	    pending.reset();
+	    pendingUnits = 0;
+	} /* if pendingUnits > 0 */
+	lastCheckpoint = System.currentTimeMillis();
+    } /* checkpoint() */
+
+    /**
+     * write out any recorded units and close the journal.
+     * @exception IOException if the journal cannot be written.
+     */
+    public void close() throws IOException
+    {
+	checkpoint();
+	file.close();
+    } /* close() */
+} /* class Journal */
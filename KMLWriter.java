@@ -0,0 +1,105 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * a class that writes polygons as the Placemarks of a KML document, as
+ * they come.
+ */
+public class KMLWriter implements PolygonSink
+{
+    Writer out;
+    String name;
+
+    /**
+     * create a new KMLWriter and write the start of the document.
+     * @param out the stream to write to.
+     * @param name the name of the document and its placemarks.
+     * @param color the color to fill the polygons with.
+     * @param alpha the opacity of the fill, 0 to 255.
+     * @exception IOException if the start cannot be written.
+     */
+    public KMLWriter(OutputStream out, String name, Color color, int alpha) throws IOException
+    {
+	this.out = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+	this.name = name;
+	/* KML colors are aabbggrr */
+	String fill = Long.toHexString(0x100000000L
+					  | ((long) alpha << 24)
+					  | (color.getBlue() << 16)
+					  | (color.getGreen() << 8)
+					  | color.getRed()).substring(1);
+	this.out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+	this.out.write("<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n<Document>\n");
+	this.out.write("<name>" + name + "</name>\n");
+	this.out.write("<Style id=\"area\"><LineStyle><width>0</width></LineStyle>"
+		       + "<PolyStyle><color>" + fill + "</color></PolyStyle></Style>\n");
+    } /* KMLWriter constructor */
+
+    /**
+     * write a polygon as a Placemark.
+     * @param rings the boundary, then the holes, as longitude, latitude pairs.
+     * @exception IOException if the polygon cannot be written.
+     */
+    public void writePolygon(double rings[][]) throws IOException
+    {
+	out.write("<Placemark><name>" + name + "</name><styleUrl>#area</styleUrl><Polygon>");
+	int i, k;
+	for (i = 0; i < rings.length; i++)
+	{
+	    out.write((i == 0) ? "<outerBoundaryIs>" : "<innerBoundaryIs>");
+	    out.write("<LinearRing><coordinates>");
+	    for (k = 0; k < rings[i].length; k += 2)
+	    {
+		if (k > 0)
+		    out.write(' ');
+		out.write(GeoJSONWriter.formatDegrees(rings[i][k]));
+		out.write(',');
+		out.write(GeoJSONWriter.formatDegrees(rings[i][k + 1]));
+	    } /* for k */
+	    out.write("</coordinates></LinearRing>");
+	    out.write((i == 0) ? "</outerBoundaryIs>" : "</innerBoundaryIs>");
+	} /* for i */
+	out.write("</Polygon></Placemark>\n");
+    } /* writePolygon() */
+
+    /**
+     * write the end of the document and close the stream.
+     * @exception IOException if the end cannot be written.
+     */
+    public void close() throws IOException
+    {
+	out.write("</Document>\n</kml>\n");
+	out.close();
+    } /* close() */
+} /* class KMLWriter */
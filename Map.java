@@ -29,38 +29,96 @@ import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.ScrollPane;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
-import java.awt.image.MemoryImageSource;
+import java.awt.print.PageFormat;
+import java.util.LinkedHashMap;
+import java.util.Vector;
 
 /**
  * a class that displays a color coded map of a DEM.
  */
-public class Map extends Canvas implements MouseListener, MouseMotionListener
+public class Map extends Canvas implements MouseListener, MouseMotionListener, AdjustmentListener
 {
-    private final static int NUM_COLORS = 24;
-    private final static int TOTAL_COLORS = NUM_COLORS + NUM_COLORS + 3;
-    private final static int BLACK = NUM_COLORS + NUM_COLORS;
+    final static int NUM_COLORS = 24;
+    private final static int BLACK = NUM_COLORS;
     private final static int WHITE = BLACK + 1;
-    private final static int MARKER = BLACK + 2;
-    Image image;
+    /* the palette again at each level of hillshade, darkest first */
+    private final static int SHADED_COLORS = WHITE + 1;
+    private final static int TOTAL_COLORS = SHADED_COLORS + NUM_COLORS * Hillshade.SHADES;
+    private final static int TILE_SIZE = 256;
+    /* how far ahead to prefetch tiles while scrolling, in milliseconds */
+    private final static int PREFETCH_MILLISECONDS = 500;
+    /* scrolling slower than this, in pixels per millisecond, is not a direction */
+    private final static float PREFETCH_MINIMUM_SPEED = 0.05f;
+    /* how often the coverage is drawn while it is calculated, at most */
+    private final static int COVERAGE_REPAINT_MILLISECONDS = 100;
+    /* shadow colors for coverage layers, used in turn */
+    final static Color LAYER_COLORS[] = {
+	new Color(0xff, 0xff, 0x66),
+	new Color(0x66, 0x99, 0xff),
+	new Color(0xff, 0x66, 0xcc),
+	new Color(0xff, 0x99, 0x33)
+    };
+    /* contour colors, with every fifth contour darker */
+    private final static Color CONTOUR_COLOR = new Color(0xaa, 0x66, 0x33);
+    private final static Color INDEX_CONTOUR_COLOR = new Color(0x66, 0x33, 0x11);
+    MapTileCache tiles = new MapTileCache(MapTileCache.DEFAULT_MAXIMUM_BYTES);
+    TilePrefetcher prefetcher = new TilePrefetcher(this, tiles);
+    Point lastScroll = null;
+    long lastScrollTime;
+    float velocityX = 0.0f;
+    float velocityY = 0.0f;
+    int directionX = 0;
+    int directionY = 0;
+    byte palette[];
+    short paletteMinimum;
+    boolean outOfRangeReported;
+    DEM terrainDEM;
+    boolean hillshade = false;
+    boolean equalized = false;
+    byte shades[][];
+    boolean shadesTooBigReported;
+    /* the contours being drawn, and those worked out for each interval */
+    int contourInterval = 0;
+    Contours contours;
+    LinkedHashMap<Integer, Contours> contourCache = new LinkedHashMap<Integer, Contours>();
+    /* a product of a stencil kernel drawn instead of the elevations */
+    StencilKernel product;
+    byte productValues[];
+    byte productPalette[];
+    Vector<CoverageLayer> layers = new Vector<CoverageLayer>();
+    boolean keepLayers = false;
+    int layersMade = 0;
     IndexColorModel colorModel;
     DEM dem;
     DEMmain demMain;
     StatusBar statusBar;
     int width;
     int height;
+    int zoom = 0;
+    int viewWidth;
+    int viewHeight;
+    ElevationPyramid pyramid;
     GeoCoordinate swCorner;
     int lat;
     int lon;
     int xResolution;
     int yResolution;
     boolean coordsDisplayed = false;
+    PolygonMask serviceArea;
+    ViewshedEngine engine = ViewshedEngines.get(ViewshedEngines.DEFAULT);
 
     /**
      * create a new Map with the specified StatusBar used for status information.
@@ -73,7 +131,20 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
         statusBar = demMain.statusBar;
         width = 0;
         height = 0;
-	setSize(width, height);
+	setSize(viewWidth, viewHeight);
+	colorModel = makeColorModel();
+	addMouseListener(this);
+	addMouseMotionListener(this);
+    } /* Map constructor */
+
+    /**
+     * build the map's palette: NUM_COLORS shades of green to white for the
+     * elevations, black, white, and the elevation colors again at each
+     * level of hillshade.
+     * @return the palette.
+     */
+    static IndexColorModel makeColorModel()
+    {
         byte reds[] = new byte[TOTAL_COLORS];
         byte blues[] = new byte[TOTAL_COLORS];
         byte greens[] = new byte[TOTAL_COLORS];
@@ -82,32 +153,16 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 	int colorWhitener = 0;
 	int colorIncrement = 0x11;
 	int whitenerIncrement = 0x11; 
-
-	int shadowColorBase = 0x33;
-	int shadowColorWhitener = 0;
-	int shadowColorIncrement = 0x11;
-	int shadowWhitenerIncrement = 0x11; 
 	int i, j;
 	for (i = 0; i < NUM_COLORS; i++)
 	{
-	    //System.out.println("i="+i+" base="+colorBase+" whitener="+colorWhitener);
-	    j = i + NUM_COLORS;
 	    reds[i] = (byte) colorWhitener;
 	    blues[i] = (byte) colorWhitener;
 	    greens[i] = (byte) colorBase;
-	    
-	    reds[j] = (byte) shadowColorBase;
-	    blues[j] = (byte) shadowColorWhitener;
-	    greens[j] = (byte) shadowColorBase;
 	    if (colorBase < 0xff)
 		colorBase = colorBase + colorIncrement;
 	    else
 		colorWhitener = colorWhitener + whitenerIncrement;
-
-	    if (shadowColorBase < 0xff)
-		shadowColorBase = shadowColorBase + shadowColorIncrement;
-	    else
-		shadowColorWhitener = shadowColorWhitener + shadowWhitenerIncrement;
 	} /* for i */
 	reds[BLACK] = 0;
 	blues[BLACK] = 0;
@@ -116,13 +171,22 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 	blues[WHITE] = (byte) 255;
 	greens[WHITE] = (byte) 255;
 
-	reds[MARKER] = (byte) 0xff;
-	blues[MARKER] = (byte) 0;
-	greens[MARKER] = (byte) 0;
-        colorModel = new IndexColorModel(8, TOTAL_COLORS, reds, greens, blues);
-	addMouseListener(this);
-	addMouseMotionListener(this);
-    } /* Map constructor */
+	int shade;
+	float light;
+	for (shade = 0; shade < Hillshade.SHADES; shade++)
+	{
+	    light = 0.35f + 0.9f * shade / (Hillshade.SHADES - 1);
+	    for (i = 0; i < NUM_COLORS; i++)
+	    {
+		j = SHADED_COLORS + shade * NUM_COLORS + i;
+		reds[j] = (byte) Math.min(255, (int) ((reds[i] & 0xff) * light));
+		greens[j] = (byte) Math.min(255, (int) ((greens[i] & 0xff) * light));
+		blues[j] = (byte) Math.min(255, (int) ((blues[i] & 0xff) * light));
+	    } /* for i */
+	} /* for shade */
+
+        return new IndexColorModel(8, TOTAL_COLORS, reds, greens, blues);
+    } /* makeColorModel() */
 
     /**
      * Assign a DEM object to the Map as a data source for images.
@@ -133,7 +197,9 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 	this.dem = dem;
         width = dem.getColumns();
         height = dem.getRows();
-	setSize(width, height);
+	pyramid = dem.getPyramid();
+	zoom = Math.min(zoom, pyramid.getLevelCount() - 1);
+	setViewSize();
 	GeoCoordinate swCorner;
 	swCorner = dem.getCorner(DEM.SW_CORNER);
 	lat = swCorner.getLatitude();
@@ -145,6 +211,29 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
         repaint();
     } /* setDEM() */
 
+    /**
+     * restrict coverage calculations to a service area.
+     * @param serviceArea the service area, or null for the whole DEM.
+     */
+    public void setServiceArea(PolygonMask serviceArea)
+    {
+	this.serviceArea = serviceArea;
+    } /* setServiceArea() */
+
+    /**
+     * choose the engine used to calculate coverage.  choosing the engine
+     * already in use keeps it, and anything it has kept from the last run.
+     * @param name the name of the engine, from ViewshedEngines.getNames().
+     */
+    public void setEngine(String name)
+    {
+	if (engine.getName().equals(name))
+	    return;
+	ViewshedEngine newEngine = ViewshedEngines.get(name);
+	if (newEngine != null)
+	    engine = newEngine;
+    } /* setEngine() */
+
     /**
      * calculate the radio horizon based on supplied parameters.
      * @param dem the DEM to plot against.
@@ -163,11 +252,10 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 			     int distanceIncrement,
                              int kMTick)
     {
-        int i, j;
+        int i;
 	this.dem = dem;
         width = dem.getColumns();
         height = dem.getRows();
-	setSize(width, height);
 
 	GeoCoordinate swCorner;
 	swCorner = dem.getCorner(DEM.SW_CORNER);
@@ -175,105 +263,112 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 	lon = swCorner.getLongitude();
 	xResolution = dem.getXResolution();
 	yResolution = dem.getYResolution();
-	image = null;
-	byte pixels[] = generateImagePixels();
+	prepareImage();
+	setViewSize();
 	
 	int latitude = location.getLatitude();
 	int x = (location.getLongitude() - lon) / xResolution;
 	int y = (latitude  - lat) / yResolution;
+	if (!keepLayers)
+	    layers.removeAllElements();
+	final CoverageLayer layer = new CoverageLayer(width,
+						      height,
+						      LAYER_COLORS[layersMade++ % LAYER_COLORS.length],
+						      location.toString());
 
 	/* draw the center marker */
-	byte mc = (byte) MARKER;
  	for (i=-1;i<=1;i++)
 	{
-	    updatePixel(pixels, x+i, y-3, mc);
-	    updatePixel(pixels, x+i, y+3, mc);
-	    updatePixel(pixels, x-3, y+i, mc);
-	    updatePixel(pixels, x+3, y+i, mc);
+	    layer.setMarker(x+i, y-3);
+	    layer.setMarker(x+i, y+3);
+	    layer.setMarker(x-3, y+i);
+	    layer.setMarker(x+3, y+i);
 	} /* for i */
 
 	for (i=-2;i<=2;i++)
 	{
-	    updatePixel(pixels, x+i, y-2, mc);
-	    updatePixel(pixels, x+i, y+2, mc);
-	    updatePixel(pixels, x-2, y+i, mc);
-	    updatePixel(pixels, x+2, y+i, mc);
+	    layer.setMarker(x+i, y-2);
+	    layer.setMarker(x+i, y+2);
+	    layer.setMarker(x-2, y+i);
+	    layer.setMarker(x+2, y+i);
 	} /* for i */
-	updatePixel(pixels, x-1, y-1, mc);
-	updatePixel(pixels, x-1, y+1, mc);
-	updatePixel(pixels, x+1, y-1, mc);
-	updatePixel(pixels, x+1, y+1, mc);
-	
-        float degrees;
-        int distance;
-        int maxDistance = (int) Math.sqrt((double)(width * width + height * height));
-        int pctDone = 0;
-        short elevation;
-	boolean vectorOK;
-	Point point;
-	int lx, ly;
-	short elevations[];
-	short earthCurveDeltaZ[];
-	int maxElevations = maxDistance / distanceIncrement;
-	elevations = new short[maxElevations];
-	earthCurveDeltaZ = new short[maxElevations];
-	int numElevations;
-	float slope;
-	boolean occluded;
-	short lineElev;
-	int r = GISCalculations.getEarthRadius(latitude) * 4 / 3;
+	layer.setMarker(x-1, y-1);
+	layer.setMarker(x-1, y+1);
+	layer.setMarker(x+1, y-1);
+	layer.setMarker(x+1, y+1);
 	
-	numElevations = 0;
-	statusBar.setMessage("calculating curvature...");
-	for (distance = distanceIncrement; distance < maxDistance; distance += distanceIncrement)
+	ViewshedSite site = new ViewshedSite(x,
+					     y,
+					     latitude,
+					     amsl,
+					     receiverHeight,
+					     degreeIncrement,
+					     distanceIncrement);
+	site.setMask(serviceArea);
+	/* show the layer now, and draw it again as the engine fills it in */
+	layers.addElement(layer);
+	repaint();
+	statusBar.setMessage("calculating coverage (" + engine.getName() + ")...");
+	try
 	{
-            pctDone = distance * 100 / maxDistance;
-            statusBar.updateProgress(pctDone);
-	    earthCurveDeltaZ[numElevations++] = GISCalculations.getEarthCurveDrop(distance, r);	    
-	} /* for distance */
-
-	for (degrees = (float) 0.0; degrees < 360.0; degrees += degreeIncrement)
-        {
-            pctDone = (int) (degrees / 360.0 * 100);
-            statusBar.updateProgress(pctDone);
-	    statusBar.setMessage("working on vector "+degrees);
-	    numElevations = 0;
-	    vectorOK = true;
-	    elevations[numElevations++] = (short) amsl;
-	    for (distance = distanceIncrement; (distance < maxDistance) && vectorOK; distance += distanceIncrement)
-	    {
-		point = addVector(x, y, degrees, distance);
-		if (point == null)
+	    engine.calculate(dem.getGrid(), site, new ViewshedSink()
 		{
-		    vectorOK = false;
-		} /* if lx... */
-		else
-		{ /* valid spot on the map */
-		    lx = point.x;
-		    ly = point.y;
-		    /* check for visibility here */
-		    elevation = (short) (dem.getElevation(lx,ly) - earthCurveDeltaZ[numElevations]);
-		    elevations[numElevations] = elevation;
-		    slope = (float) ((elevation + receiverHeight) - amsl) / (float) numElevations;
-		    occluded = false;
-		    j = numElevations - 1;
-		    for (i = 1; (i < j) && (!occluded); i++)
+		    /* the box around the points shadowed since the last repaint */
+		    int minX = Integer.MAX_VALUE;
+		    int minY = Integer.MAX_VALUE;
+		    int maxX = -1;
+		    int maxY = -1;
+		    long nextRepaint = System.currentTimeMillis() + COVERAGE_REPAINT_MILLISECONDS;
+
+		    public void setVisible(int column, int row)
 		    {
-			lineElev = (short) ((i * slope) + amsl);
-			if (lineElev < elevations[i])
-			{
-			    occluded = true;
-			} /* if lineElev < elevations[i] */
-		    } /* for i */
-		    
-		    if (occluded)
+		    } /* setVisible() */
+
+		    public void setShadowed(int column, int row)
+		    {
+			layer.setShadowed(column, row);
+			if (column < minX)
+			    minX = column;
+			if (column > maxX)
+			    maxX = column;
+			if (row < minY)
+			    minY = row;
+			if (row > maxY)
+			    maxY = row;
+		    } /* setShadowed() */
+
+		    /*
+		     * the engines report progress as each ray or ring is finished,
+		     * so the box is only drawn between them, and no more often
+		     * than COVERAGE_REPAINT_MILLISECONDS.  repaint() only posts an
+		     * event, which AWT merges with any still waiting.
+		     */
+		    public void progress(int pctDone)
 		    {
-			dimPixel(pixels, lx, ly);
-		    } /* if occluded */
-		    numElevations++;
-		} /* if lx... */
-	    } /* for distance */
-        } /* for degrees */
+			statusBar.updateProgress(pctDone);
+			if (maxX < 0)
+			    return;
+			long now = System.currentTimeMillis();
+			if (now < nextRepaint)
+			    return;
+			repaintPoints(minX, minY, maxX, maxY);
+			minX = Integer.MAX_VALUE;
+			minY = Integer.MAX_VALUE;
+			maxX = -1;
+			maxY = -1;
+			nextRepaint = now + COVERAGE_REPAINT_MILLISECONDS;
+		    } /* progress() */
+		});
+	} /* try */
+	catch (IllegalArgumentException e)
+	{ /* the engine cannot handle a DEM this big */
+	    layers.removeElement(layer);
+	    statusBar.updateProgress(0);
+	    statusBar.setMessage("");
+	    ErrorBox.report(demMain, "Error!", e.getMessage());
+	    repaint();
+	    return;
+	} /* catch */
 
 	if (kMTick != 0)
 	{ /* add tick marks */
@@ -325,66 +420,103 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 			tx = x + (int) (kMLon * pixelsPerKMLon);
 			for (i = -2; i < 3; i++)
 			{
-			    updatePixel(pixels, tx+i, ty, (byte) MARKER);
-			    updatePixel(pixels, tx, ty+i, (byte) MARKER);
+			    layer.setMarker(tx+i, ty);
+			    layer.setMarker(tx, ty+i);
 			} /* for i */
 		    } /* if kMLat != 0 && kMLon != 0 */
 		} /* for kMLon */
 	    } /* for kMLat */
 	} /* if ... */
 
-        image = createImage(new MemoryImageSource(width,
-						  height,
-						  colorModel,
-						  pixels,
-						  0,
-						  width));
 	if (statusBar != null)
 	{
 	    statusBar.updateProgress(0);
 	    statusBar.setMessage("");
 	} /* if statusBar != null */
-	setSize(width, height);
 	getParent().validate();
         repaint();
     } /* plotCoverage() */
 
     /**
-     * change the value of a pixel in an array of pixels intended for MemoryImageSource.
-     * @param pixels the pixel array to modify.
-     * @param x the x offset from the SW corner.
-     * @param y the y offset from the SW corner.
-     * @param newPixel the new value for the pixel.
+     * ask for the part of the map covering a box of points to be drawn
+     * again, at the current zoom.
+     * @param x0 the x offset of the west edge of the box from the SW corner.
+     * @param y0 the y offset of the south edge of the box from the SW corner.
+     * @param x1 the x offset of the east edge of the box from the SW corner.
+     * @param y1 the y offset of the north edge of the box from the SW corner.
      */
-    void updatePixel(byte[] pixels, int x, int y, byte newPixel)
+    void repaintPoints(int x0, int y0, int x1, int y1)
     {
-	if ((x < 0) || (x >= width) || (y < 0) || (y >= height))
-	    return;
-        y = height - y - 1;
-	int index;
-	index = x + (y * width);
-	pixels[index] = newPixel;
-    } /* updatePixel() */
+	double xScale = viewWidth / (double) width;
+	double yScale = viewHeight / (double) height;
+	int left = (int) (x0 * xScale);
+	int right = (int) Math.ceil((x1 + 1) * xScale);
+	/* view rows run north to south */
+	int top = (int) ((height - y1 - 1) * yScale);
+	int bottom = (int) Math.ceil((height - y0) * yScale);
+	repaint(left, top, right - left, bottom - top);
+    } /* repaintPoints() */
 
     /**
-     * dim a pixel.
-     * @param pixels the pixel array to modify.
-     * @param x the x offset from the SW corner.
-     * @param y the y offset from the SW corner.
+     * choose whether a new coverage plot replaces the old ones or is laid
+     * over them, to compare sites.
+     * @param keepLayers true to keep the old coverage layers.
      */
-    void dimPixel(byte[] pixels, int x, int y)
+    public void setKeepLayers(boolean keepLayers)
     {
-	if ((x < 0) || (x >= width) || (y < 0) || (y >= height))
-	    return;
-        y = height - y - 1;
-	int index;
-	index = x + (y * width);
-	int pix = pixels[index];
-	if (pix < NUM_COLORS)
+	this.keepLayers = keepLayers;
+    } /* setKeepLayers() */
+
+    /**
+     * remove all the coverage layers.
+     */
+    public void clearCoverage()
+    {
+	layers.removeAllElements();
+	repaint();
+    } /* clearCoverage() */
+
+    /**
+     * determine if any coverage layer is shown.
+     * @return true if a coverage layer is visible.
+     */
+    public boolean isCoverageVisible()
+    {
+	int i;
+	for (i = 0; i < layers.size(); i++)
 	{
-	    pixels[index] = (byte) (pix + NUM_COLORS);
-	} /* if pix < NUM_COLORS */
-    } /* updatePixel() */
+	    if (layers.elementAt(i).isVisible())
+		return true;
+	} /* for i */
+	return false;
+    } /* isCoverageVisible() */
+
+    /**
+     * show or hide all the coverage layers.  the terrain is not redrawn.
+     * @param visible true to show the layers.
+     */
+    public void setCoverageVisible(boolean visible)
+    {
+	int i;
+	for (i = 0; i < layers.size(); i++)
+	{
+	    layers.elementAt(i).setVisible(visible);
+	} /* for i */
+	repaint();
+    } /* setCoverageVisible() */
+
+    /**
+     * give the newest coverage layer the next shadow color.  the terrain
+     * is not redrawn.
+     */
+    public void nextCoverageColor()
+    {
+	if (layers.isEmpty())
+	    return;
+	CoverageLayer layer = layers.lastElement();
+	layer.setColor(LAYER_COLORS[layersMade++ % LAYER_COLORS.length]);
+	repaint();
+    } /* nextCoverageColor() */
 
     /**
      * calculate a new point based on the supplied parameters.
@@ -417,91 +549,807 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
     {
         if (dem != null)
         {
-	    image = null;
-	    byte pixels[] = generateImagePixels();
-            image = createImage(new MemoryImageSource(width, height, colorModel, pixels, 0, width));
+	    terrainDEM = null;
+	    prepareImage();
         } /* if dem != null */
 	if (statusBar != null)
 	{
 	    statusBar.updateProgress(0);
 	    statusBar.setMessage("");
 	} /* if statusBar != null */
-	setSize(width, height);
+	setViewSize();
     } /* mapImage() */
 
     /**
-     * generate a pixels array for the image.
+     * make sure the terrain tiles are for the DEM.  when the DEM changes
+     * the palette table is rebuilt and the old tiles and coverage dropped;
+     * the tiles themselves are only rendered when they are painted.
      */
-    private byte[] generateImagePixels()
+    void prepareImage()
     {
-	byte pixels[] = new byte[width*height];
-	int index = 0;
-	
-	short elevation;
-	short minimumElevation = dem.getMinimumElevation();
-	int interval = (dem.getMaximumElevation() - minimumElevation) / NUM_COLORS + 1;
-	int i, j, k;
-	int x, y;
-	int pctDone;
-	
-	if (statusBar != null)
+	if (terrainDEM != dem)
 	{
-	    statusBar.setMessage("Creating image,  please wait...");
-	} /* if statusBar != null */
-	
-	for (j =0; j < height; j++)
+	    prefetcher.cancel();
+	    pyramid = dem.getPyramid();
+	    zoom = Math.min(zoom, pyramid.getLevelCount() - 1);
+	    shades = new byte[pyramid.getLevelCount()][];
+	    shadesTooBigReported = false;
+	    buildPalette();
+	    tiles.clear();
+	    layers.removeAllElements();
+	    synchronized (contourCache)
+	    {
+		contourCache.clear();
+	    } /* synchronized */
+	    contours = null;
+	    product = null;
+	    productValues = null;
+	    terrainDEM = dem;
+	    if (contourInterval != 0)
+		showContours(contourInterval);
+	} /* if terrainDEM != dem */
+    } /* prepareImage() */
+
+    /**
+     * work out the palette index of every elevation from the DEM's minimum
+     * to its maximum.  the colors either cover equal steps of elevation
+     * or, when equalized, equal numbers of points.
+     */
+    void buildPalette()
+    {
+	/* a mapped DEM counts its histogram now, which can move its lowest elevation */
+	ElevationHistogram histogram = equalized ? dem.getHistogram() : null;
+	paletteMinimum = dem.getMinimumElevation();
+	if (histogram != null)
 	{
-	    if (statusBar != null)
+	    palette = histogram.equalize(NUM_COLORS);
+	} /* if histogram != null */
+	else
+	{
+	    int range = dem.getMaximumElevation() - paletteMinimum + 1;
+	    int interval = (dem.getMaximumElevation() - paletteMinimum) / NUM_COLORS + 1;
+	    palette = new byte[Math.max(range, 1)];
+	    int k;
+	    for (k = 0; k < palette.length; k++)
 	    {
-		pctDone = j * 100 / height;
-		statusBar.updateProgress(pctDone);
-	    } /* if statusBar != null */
-	    y = height - j - 1;
-	    for (i =0; i < width; i++)
+		palette[k] = (byte) (k / interval);
+	    } /* for k */
+	} /* if histogram != null */
+	outOfRangeReported = false;
+    } /* buildPalette() */
+
+    /**
+     * limit the memory used by rendered terrain tiles.
+     * @param maximumBytes the most memory the tiles may use.
+     */
+    public void setTileCacheSize(long maximumBytes)
+    {
+	tiles.setMaximumBytes(maximumBytes);
+    } /* setTileCacheSize() */
+
+    /**
+     * determine if the palette is equalized.
+     * @return true if each color covers about the same number of points.
+     */
+    public boolean isEqualized()
+    {
+	return equalized;
+    } /* isEqualized() */
+
+    /**
+     * choose between colors for equal steps of elevation and colors for
+     * equal numbers of points, which shows more detail in DEMs that are
+     * mostly flat with a few peaks.
+     * @param equalized true to equalize the palette.
+     */
+    public void setEqualized(boolean equalized)
+    {
+	if (this.equalized == equalized)
+	    return;
+	this.equalized = equalized;
+	if (terrainDEM == null)
+	    return;
+	prefetcher.cancel();
+	buildPalette();
+	tiles.clear();
+	repaint();
+    } /* setEqualized() */
+
+    /**
+     * get the interval of the contours drawn over the map.
+     * @return the interval, or 0 if no contours are drawn.
+     */
+    public int getContourInterval()
+    {
+	return contourInterval;
+    } /* getContourInterval() */
+
+    /**
+     * draw contours over the map, or stop drawing them.  the contours are
+     * found in the background the first time an interval is asked for,
+     * and kept for as long as the DEM is shown.
+     * @param interval the difference in elevation between contours, or 0
+     * for none.
+     */
+    public void setContourInterval(int interval)
+    {
+	contourInterval = interval;
+	contours = null;
+	repaint();
+	if ((interval != 0) && (terrainDEM != null))
+	    showContours(interval);
+    } /* setContourInterval() */
+
+    /**
+     * find the contours at an interval in a new thread, and draw them when
+     * they are ready, unless the interval or DEM has changed by then.
+     * @param interval the difference in elevation between contours.
+     */
+    void showContours(final int interval)
+    {
+	final DEM contourDEM = terrainDEM;
+	Thread thread = new Thread("contours")
 	    {
-		x = i;
-		elevation = dem.getElevation(x,y);
-		k = (elevation - minimumElevation) / interval;
-		if ((k >= NUM_COLORS) || (k < 0))
+		public void run()
 		{
-		    System.err.println("("+x+","+y+")"+
-				       " k = "+ k +
-				       " elev = " + elevation +
-				       " min = "+ dem.getMinimumElevation() +
-				       " max = " + dem.getMaximumElevation());
-		    k = BLACK;
-		} /* if k >= NUM_COLORS */
-		pixels[index++] = (byte) k;
-	    } /* for i */
-	} /* for j */
-	return pixels;
-    } /* generateImagePixels */
+		    Contours found = getContours(contourDEM, interval);
+		    if ((contourDEM == terrainDEM) && (interval == contourInterval))
+		    {
+			contours = found;
+			repaint();
+		    } /* if contourDEM == terrainDEM... */
+		} /* run() */
+	    };
+	thread.setDaemon(true);
+	thread.start();
+    } /* showContours() */
+
+    /**
+     * get the contours of a DEM at an interval, finding them the first time.
+     * @param contourDEM the DEM.
+     * @param interval the difference in elevation between contours.
+     * @return the contours.
+     */
+    Contours getContours(DEM contourDEM, int interval)
+    {
+	Integer key = Integer.valueOf(interval);
+	Contours found;
+	synchronized (contourCache)
+	{
+	    found = contourCache.get(key);
+	} /* synchronized */
+	if (found == null)
+	{
+	    found = new Contours(contourDEM, interval);
+	    found.build(null);
+	    synchronized (contourCache)
+	    {
+		if (contourDEM == terrainDEM)
+		    contourCache.put(key, found);
+	    } /* synchronized */
+	} /* if found == null */
+	return found;
+    } /* getContours() */
+
+    /**
+     * draw the contours, as lines, over the part of the map in an area.
+     * @param g the graphics object to draw into.
+     * @param area the area to draw, in the units of g.
+     * @param scale the units of g for each point of the DEM.
+     */
+    void paintContours(Graphics g, Rectangle area, double scale)
+    {
+	Contours shown = contours;
+	if (shown == null)
+	    return;
+	/* the area in DEM points from the SW corner */
+	double west = area.x / scale - 1;
+	double east = (area.x + area.width) / scale + 1;
+	double north = height - area.y / scale + 1;
+	double south = height - (area.y + area.height) / scale - 1;
+	int indexInterval = 5 * shown.getInterval();
+	int xs[] = new int[256];
+	int ys[] = new int[256];
+	float line[], box[];
+	int i, k, n;
+	for (i = 0; i < shown.getLineCount(); i++)
+	{
+	    box = shown.getBounds(i);
+	    if ((box[0] > east) || (box[2] < west) || (box[1] > north) || (box[3] < south))
+		continue;
+	    line = shown.getLine(i);
+	    n = line.length / 2;
+	    if (n > xs.length)
+	    {
+		xs = new int[n];
+		ys = new int[n];
+	    } /* if n > xs.length */
+	    for (k = 0; k < n; k++)
+	    { /* through the middle of the points, with north at the top */
+		xs[k] = (int) Math.round((line[2 * k] + 0.5) * scale);
+		ys[k] = (int) Math.round((height - line[2 * k + 1] - 0.5) * scale);
+	    } /* for k */
+	    g.setColor((shown.getElevation(i) % indexInterval == 0) ? INDEX_CONTOUR_COLOR : CONTOUR_COLOR);
+	    g.drawPolyline(xs, ys, n);
+	} /* for i */
+    } /* paintContours() */
+
+    /**
+     * get the product drawn instead of the elevations.
+     * @return the name of the product, or null if the elevations are drawn.
+     */
+    public String getProduct()
+    {
+	return (product == null) ? null : product.getName();
+    } /* getProduct() */
+
+    /**
+     * draw a product of the DEM, such as slope, instead of the elevations,
+     * in the elevation colors from the lowest value to the highest.  the
+     * product is worked out in the background the first time, and kept
+     * with the DEM.
+     * @param name the name of the product, one of Stencil.NAMES, or null
+     * to draw the elevations.
+     */
+    public void setProduct(final String name)
+    {
+	if (terrainDEM == null)
+	    return;
+	if (name == null)
+	{
+	    showProduct(null, null);
+	    return;
+	} /* if name == null */
+	final DEM productDEM = terrainDEM;
+	Thread thread = new Thread(name)
+	    {
+		public void run()
+		{
+		    byte values[] = productDEM.getDerived(name);
+		    if ((values != null) && (productDEM == terrainDEM))
+			showProduct(Stencil.getKernel(name, productDEM.getXSpacing(), productDEM.getYSpacing()), values);
+		} /* run() */
+	    };
+	thread.setDaemon(true);
+	thread.start();
+    } /* setProduct() */
+
+    /**
+     * switch the map to a product, and draw it again.
+     * @param kernel the kernel of the product, or null for the elevations.
+     * @param values the product.
+     */
+    void showProduct(StencilKernel kernel, byte values[])
+    {
+	if (kernel != null)
+	{
+	    byte colors[] = new byte[256];
+	    int k;
+	    for (k = 0; k < kernel.getValueCount(); k++)
+	    {
+		colors[k] = (byte) (k * NUM_COLORS / kernel.getValueCount());
+	    } /* for k */
+	    productPalette = colors;
+	} /* if kernel != null */
+	prefetcher.cancel();
+	product = kernel;
+	productValues = values;
+	tiles.clear();
+	repaint();
+    } /* showProduct() */
+
+    /**
+     * determine if the terrain is drawn with hillshading.
+     * @return true if it is hillshaded.
+     */
+    public boolean isHillshade()
+    {
+	return hillshade;
+    } /* isHillshade() */
+
+    /**
+     * turn hillshading on or off.  the light levels are worked out once
+     * for each zoom level of a DEM and kept, so only the tiles are drawn
+     * again.
+     * @param hillshade true to shade the terrain.
+     */
+    public void setHillshade(boolean hillshade)
+    {
+	if (this.hillshade == hillshade)
+	    return;
+	prefetcher.cancel();
+	this.hillshade = hillshade;
+	tiles.clear();
+	repaint();
+    } /* setHillshade() */
+
+    /**
+     * get the hillshade light levels of a zoom level, working them out the
+     * first time.
+     * @param level the zoom level.
+     * @return the light levels, a row at a time from the south, or null if
+     * the level is too big for them to fit in one array.
+     */
+    synchronized byte[] getShades(int level)
+    {
+	if ((shades[level] == null) && !Stencil.fits(pyramid.getLevel(level)))
+	{
+	    if (!shadesTooBigReported && (statusBar != null))
+	    {
+		statusBar.setMessage("hillshade is off at this zoom, as the map is too big to shade");
+	    } /* if !shadesTooBigReported... */
+	    shadesTooBigReported = true;
+	    return null;
+	} /* if shades[level] == null... */
+	if (shades[level] == null)
+	{
+	    shades[level] = Hillshade.compute(pyramid.getLevel(level),
+					      dem.getXSpacing() * (1 << level),
+					      dem.getYSpacing() * (1 << level),
+					      null);
+	} /* if shades[level] == null */
+	return shades[level];
+    } /* getShades() */
+
+    /**
+     * get the zoom level.
+     * @return the level: 0 is one point per elevation, and each level
+     * after that halves the size of the map.
+     */
+    public int getZoom()
+    {
+	return zoom;
+    } /* getZoom() */
+
+    /**
+     * change the zoom level, keeping the middle of the view in the middle.
+     * zoomed out views are drawn from the DEM's pyramid, so they only read
+     * the coarse level.
+     * @param newZoom the new level, from 0 to the pyramid's last level.
+     */
+    public void setZoom(int newZoom)
+    {
+	if ((pyramid == null) || (newZoom < 0) || (newZoom >= pyramid.getLevelCount()) || (newZoom == zoom))
+	    return;
+	ScrollPane scrollPane = null;
+	Point center = null;
+	if (getParent() instanceof ScrollPane)
+	{ /* remember where the middle of the view is, in elevation points */
+	    scrollPane = (ScrollPane) getParent();
+	    Point position = scrollPane.getScrollPosition();
+	    Dimension view = scrollPane.getViewportSize();
+	    center = new Point((position.x + view.width / 2) << zoom, (position.y + view.height / 2) << zoom);
+	} /* if getParent() instanceof ScrollPane */
+	prefetcher.cancel();
+	zoom = newZoom;
+	setViewSize();
+	if (getParent() != null)
+	    getParent().validate();
+	if (scrollPane != null)
+	{
+	    Dimension view = scrollPane.getViewportSize();
+	    scrollPane.setScrollPosition((center.x >> zoom) - view.width / 2, (center.y >> zoom) - view.height / 2);
+	} /* if scrollPane != null */
+	repaint();
+    } /* setZoom() */
+
+    /**
+     * halve the size of the map.
+     */
+    public void zoomOut()
+    {
+	setZoom(zoom + 1);
+    } /* zoomOut() */
+
+    /**
+     * double the size of the map.
+     */
+    public void zoomIn()
+    {
+	setZoom(zoom - 1);
+    } /* zoomIn() */
+
+    /**
+     * work out the size of the map at the zoom level.
+     */
+    void setViewSize()
+    {
+	if (pyramid != null)
+	{
+	    viewWidth = pyramid.getColumnCount(zoom);
+	    viewHeight = pyramid.getRowCount(zoom);
+	} /* if pyramid != null */
+	else
+	{
+	    viewWidth = width;
+	    viewHeight = height;
+	} /* if pyramid != null */
+	setSize(viewWidth, viewHeight);
+    } /* setViewSize() */
+
+    /**
+     * render a terrain tile through the palette table.
+     * @param level the zoom level of the tile.
+     * @param tileColumn the column of the tile, from the west.
+     * @param tileRow the row of the tile, from the north.
+     * @return the tile.
+     */
+    BufferedImage renderTile(int level, int tileColumn, int tileRow)
+    {
+	int levelWidth = pyramid.getColumnCount(level);
+	int levelHeight = pyramid.getRowCount(level);
+	int x0 = tileColumn * TILE_SIZE;
+	int j0 = tileRow * TILE_SIZE;
+	int tileWidth = Math.min(TILE_SIZE, levelWidth - x0);
+	int tileHeight = Math.min(TILE_SIZE, levelHeight - j0);
+	BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+	byte pixels[] = ((DataBufferByte) tile.getRaster().getDataBuffer()).getData();
+	/* image rows run north to south, DEM rows south to north */
+	int firstY = levelHeight - j0 - tileHeight;
+	int lastY = levelHeight - j0;
+	byte shade[] = hillshade ? getShades(level) : null;
+	int x, y, offset;
+	int bad = 0;
+	byte values[] = productValues;
+	if (values != null)
+	{ /* a point of the product for each point of the level; there is
+	     only a product if width * height fits in an int */
+	    byte colors[] = productPalette;
+	    int row;
+	    for (y = firstY; y < lastY; y++)
+	    {
+		row = Math.min(height - 1, y << level) * width;
+		for (x = 0; x < tileWidth; x++)
+		{
+		    pixels[(lastY - y - 1) * tileWidth + x] =
+			colors[values[row + Math.min(width - 1, (x0 + x) << level)] & 0xff];
+		} /* for x */
+	    } /* for y */
+	} /* if values != null */
+	else
+	{ /* a row at a time, as that is how the DEM and the levels are stored */
+	    ElevationGrid grid = (level == 0) ? dem.getGrid() : pyramid.getMeans(level);
+	    short source[] = new short[tileWidth];
+	    RasterKernels kernels = RasterKernels.getKernels();
+	    int index;
+	    for (y = firstY; y < lastY; y++)
+	    {
+		grid.readRow(y, x0, source, 0, tileWidth);
+		index = 0;
+		if (shade == null)
+		{
+		    bad += kernels.mapPalette(source,
+					      0,
+					      tileWidth,
+					      paletteMinimum,
+					      palette,
+					      (byte) BLACK,
+					      pixels,
+					      (lastY - y - 1) * tileWidth);
+		    continue;
+		} /* if shade == null */
+		for (x = 0; x < tileWidth; x++)
+		{
+		    offset = source[index++] - paletteMinimum;
+		    if ((offset >= 0) && (offset < palette.length))
+			pixels[(lastY - y - 1) * tileWidth + x] =
+			    (byte) (SHADED_COLORS + shade[y * levelWidth + x0 + x] * NUM_COLORS + palette[offset]);
+		    else
+		    {
+			pixels[(lastY - y - 1) * tileWidth + x] = (byte) BLACK;
+			bad++;
+		    } /* if offset >= 0... */
+		} /* for x */
+	    } /* for y */
+	} /* if values != null */
+	if ((bad != 0) && !outOfRangeReported)
+	{
+	    outOfRangeReported = true;
+	    System.err.println("elevations outside"
+			       + " min = " + dem.getMinimumElevation()
+			       + " max = " + dem.getMaximumElevation());
+	} /* if bad != 0... */
+	return tile;
+    } /* renderTile() */
+
+    /**
+     * watch the ScrollPane the map is in, to prefetch while it scrolls.
+     */
+    public void addNotify()
+    {
+	super.addNotify();
+	if (getParent() instanceof ScrollPane)
+	{
+	    ScrollPane scrollPane = (ScrollPane) getParent();
+	    scrollPane.getHAdjustable().addAdjustmentListener(this);
+	    scrollPane.getVAdjustable().addAdjustmentListener(this);
+	} /* if getParent() instanceof ScrollPane */
+    } /* addNotify() */
+
+    /**
+     * process scroll bar movements.  the speed and direction of scrolling
+     * are tracked, and the tiles the view will reach in the next
+     * PREFETCH_MILLISECONDS are rendered in the background.  a change of
+     * direction cancels the tiles asked for before.
+     * @param e the AdjustmentEvent to process.
+     */
+    public void adjustmentValueChanged(AdjustmentEvent e)
+    {
+	if ((terrainDEM == null) || !(getParent() instanceof ScrollPane))
+	    return;
+	ScrollPane scrollPane = (ScrollPane) getParent();
+	Point position = scrollPane.getScrollPosition();
+	Dimension view = scrollPane.getViewportSize();
+	long now = System.currentTimeMillis();
+	if (lastScroll != null)
+	{
+	    long elapsed = Math.max(1, now - lastScrollTime);
+	    /* smooth the speed over a few events */
+	    velocityX = (velocityX + (float) (position.x - lastScroll.x) / elapsed) / 2.0f;
+	    velocityY = (velocityY + (float) (position.y - lastScroll.y) / elapsed) / 2.0f;
+	} /* if lastScroll != null */
+	lastScroll = position;
+	lastScrollTime = now;
+	int newDirectionX = direction(velocityX);
+	int newDirectionY = direction(velocityY);
+	if ((newDirectionX != directionX) || (newDirectionY != directionY))
+	{
+	    prefetcher.cancel();
+	    directionX = newDirectionX;
+	    directionY = newDirectionY;
+	} /* if newDirectionX != directionX... */
+	if ((directionX == 0) && (directionY == 0))
+	    return;
+
+	/* the view where it will be, and at least a tile further on */
+	int aheadX = (int) (velocityX * PREFETCH_MILLISECONDS) + directionX * TILE_SIZE;
+	int aheadY = (int) (velocityY * PREFETCH_MILLISECONDS) + directionY * TILE_SIZE;
+	int firstColumn = Math.max(0, Math.min(position.x, position.x + aheadX) / TILE_SIZE);
+	int firstRow = Math.max(0, Math.min(position.y, position.y + aheadY) / TILE_SIZE);
+	int lastColumn = Math.min((viewWidth - 1) / TILE_SIZE,
+				  (Math.max(position.x, position.x + aheadX) + view.width - 1) / TILE_SIZE);
+	int lastRow = Math.min((viewHeight - 1) / TILE_SIZE,
+			       (Math.max(position.y, position.y + aheadY) + view.height - 1) / TILE_SIZE);
+	if ((lastColumn < firstColumn) || (lastRow < firstRow))
+	    return;
+	int visibleColumn0 = position.x / TILE_SIZE;
+	int visibleRow0 = position.y / TILE_SIZE;
+	int visibleColumn1 = (position.x + view.width - 1) / TILE_SIZE;
+	int visibleRow1 = (position.y + view.height - 1) / TILE_SIZE;
+	int size = (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+	int columns[] = new int[size];
+	int rows[] = new int[size];
+	int distances[] = new int[size];
+	int count = 0;
+	int column, row, i, distance;
+	for (row = firstRow; row <= lastRow; row++)
+	{
+	    for (column = firstColumn; column <= lastColumn; column++)
+	    {
+		if ((column >= visibleColumn0) && (column <= visibleColumn1) &&
+		    (row >= visibleRow0) && (row <= visibleRow1))
+		    continue; /* paint does these */
+		if (tiles.get(zoom, column, row) != null)
+		    continue;
+		/* insert in order of distance from the view, nearest first */
+		distance = Math.max(Math.max(visibleColumn0 - column, column - visibleColumn1),
+				    Math.max(visibleRow0 - row, row - visibleRow1));
+		for (i = count; (i > 0) && (distances[i - 1] > distance); i--)
+		{
+		    columns[i] = columns[i - 1];
+		    rows[i] = rows[i - 1];
+		    distances[i] = distances[i - 1];
+		} /* for i */
+		columns[i] = column;
+		rows[i] = row;
+		distances[i] = distance;
+		count++;
+	    } /* for column */
+	} /* for row */
+	if (count > 0)
+	    prefetcher.request(zoom, columns, rows, count);
+    } /* adjustmentValueChanged() */
+
+    /**
+     * get the direction of a scrolling speed.
+     * @param velocity the speed in pixels per millisecond.
+     * @return -1, 0 or 1.
+     */
+    static int direction(float velocity)
+    {
+	if (velocity > PREFETCH_MINIMUM_SPEED)
+	    return 1;
+	if (velocity < -PREFETCH_MINIMUM_SPEED)
+	    return -1;
+	return 0;
+    } /* direction() */
+
+    /**
+     * draw the terrain tiles that meet a rectangle, rendering the ones
+     * that are not cached on all the processors first.
+     * @param g the graphics object to draw into.
+     * @param area the part of the map to draw.
+     */
+    void paintTerrain(Graphics g, Rectangle area)
+    {
+	final int level = zoom;
+	int firstColumn = Math.max(0, area.x / TILE_SIZE);
+	int firstRow = Math.max(0, area.y / TILE_SIZE);
+	int lastColumn = Math.min((viewWidth - 1) / TILE_SIZE, (area.x + area.width - 1) / TILE_SIZE);
+	int lastRow = Math.min((viewHeight - 1) / TILE_SIZE, (area.y + area.height - 1) / TILE_SIZE);
+	if ((lastColumn < firstColumn) || (lastRow < firstRow))
+	    return;
+	int across = lastColumn - firstColumn + 1;
+	final int count = across * (lastRow - firstRow + 1);
+	final BufferedImage visible[] = new BufferedImage[count];
+	final int columns[] = new int[count];
+	final int rows[] = new int[count];
+	final int missing[] = new int[count];
+	int missingCount = 0;
+	int i;
+	for (i = 0; i < count; i++)
+	{
+	    columns[i] = firstColumn + i % across;
+	    rows[i] = firstRow + i / across;
+	    visible[i] = tiles.get(level, columns[i], rows[i]);
+	    if (visible[i] == null)
+		missing[missingCount++] = i;
+	} /* for i */
+	/* a tile rendered before the settings change is drawn, but not kept */
+	final int generation = tiles.getGeneration();
+	Bands.run(missingCount, new BandTask()
+	    {
+		public void run(int first, int last)
+		{
+		    int k, n;
+		    for (k = first; k < last; k++)
+		    {
+			n = missing[k];
+			visible[n] = renderTile(level, columns[n], rows[n]);
+			tiles.put(level, columns[n], rows[n], visible[n], generation);
+		    } /* for k */
+		} /* run() */
+	    }, null);
+	for (i = 0; i < count; i++)
+	{
+	    g.drawImage(visible[i], columns[i] * TILE_SIZE, rows[i] * TILE_SIZE, this);
+	} /* for i */
+    } /* paintTerrain() */
     
     /**
-     * draw the map image into the graphics object.
+     * draw the terrain, then the coverage layers over it, into the graphics
+     * object.  only the tiles inside the clip are drawn.
      * @param g the graphics object to receive the image for display.
      */
     public void paint(Graphics g)
     {
-        if (image != null)
+        if (terrainDEM != null)
         {
-            g.drawImage(image,0,0,this);
+	    Rectangle area = g.getClipBounds();
+	    if (area == null)
+		area = new Rectangle(0, 0, viewWidth, viewHeight);
+	    paintTerrain(g, area);
+	    CoverageLayer current[] = layers.toArray(new CoverageLayer[0]);
+	    int i;
+	    for (i = 0; i < current.length; i++)
+	    {
+		current[i].paint(g, viewWidth, viewHeight, this);
+	    } /* for i */
+	    paintContours(g, area, 1.0 / (1 << zoom));
         } /* if dem != null */
     } /* paint */
 
+    /**
+     * print the map, terrain and coverage, a band of tiles at a time.  the
+     * terrain comes from the coarsest zoom level that still has a point
+     * for every printer dot, so a big DEM scaled to fit the page sends
+     * no more points than the printer can show.  each band is drawn from
+     * the tile cache if it is there, otherwise rendered and dropped once
+     * it is drawn, so the screen's tiles are not pushed out.
+     * <p>
+     * the printer's dots are found from the transform of g, which maps
+     * points to the device; a printer that takes its drawing as lines and
+     * images, as PostScript does, may leave that at one dot a point, so
+     * the resolution it was given is used when that is finer.
+     * @param g the printer's graphics object, in points (1/72 inch).
+     * @param format the page; the map is drawn in its imageable area.
+     * @param resolution the resolution of the printer in dots per inch,
+     * or 0 if it is not known.
+     * @param fit true to scale the whole map to fit the page, false to
+     * print a point of the DEM per printer dot from the NW corner.
+     */
+    public void print(Graphics2D g, PageFormat format, int resolution, boolean fit)
+    {
+	if (terrainDEM == null)
+	    return;
+	double dotsPerPoint = Math.max(Math.sqrt(Math.abs(g.getTransform().getDeterminant())),
+				       resolution / 72.0);
+	/* from here on g is in printer dots, from the corner of the imageable area */
+	g.translate(format.getImageableX(), format.getImageableY());
+	g.scale(1.0 / dotsPerPoint, 1.0 / dotsPerPoint);
+	Dimension page = new Dimension((int) (format.getImageableWidth() * dotsPerPoint),
+				       (int) (format.getImageableHeight() * dotsPerPoint));
+	g.clipRect(0, 0, page.width, page.height);
+	/* printer dots for each point of the DEM */
+	double scale;
+	if (fit)
+	    scale = Math.min(page.width / (double) width, page.height / (double) height);
+	else
+	    scale = 1.0;
+	int level = 0;
+	while ((level + 1 < pyramid.getLevelCount()) && (scale * (1 << (level + 1)) <= 1.0))
+	{
+	    level++;
+	} /* while */
+	double levelScale = scale * (1 << level);
+	int levelWidth = pyramid.getColumnCount(level);
+	int levelHeight = pyramid.getRowCount(level);
+	int tilesAcross = (levelWidth + TILE_SIZE - 1) / TILE_SIZE;
+	int tilesDown = (levelHeight + TILE_SIZE - 1) / TILE_SIZE;
+	CoverageLayer current[] = layers.toArray(new CoverageLayer[0]);
+	BufferedImage tile;
+	int tileRow, tileColumn, i, top, bottom, left, right, firstRow, lastRow;
+	for (tileRow = 0; tileRow < tilesDown; tileRow++)
+	{
+	    top = (int) Math.round(tileRow * TILE_SIZE * levelScale);
+	    bottom = (int) Math.round(Math.min((tileRow + 1) * TILE_SIZE, levelHeight) * levelScale);
+	    if (top >= page.height)
+		break;
+	    if (statusBar != null)
+		statusBar.updateProgress(tileRow * 100 / tilesDown);
+	    for (tileColumn = 0; tileColumn < tilesAcross; tileColumn++)
+	    {
+		left = (int) Math.round(tileColumn * TILE_SIZE * levelScale);
+		right = (int) Math.round(Math.min((tileColumn + 1) * TILE_SIZE, levelWidth) * levelScale);
+		if (left >= page.width)
+		    break;
+		tile = tiles.get(level, tileColumn, tileRow);
+		if (tile == null)
+		    tile = renderTile(level, tileColumn, tileRow);
+		g.drawImage(tile, left, top, right - left, bottom - top, this);
+	    } /* for tileColumn */
+	    /* the layers are full size; draw the same band of them */
+	    firstRow = Math.min(height, (tileRow * TILE_SIZE) << level);
+	    lastRow = Math.min(height, ((tileRow + 1) * TILE_SIZE) << level);
+	    for (i = 0; i < current.length; i++)
+	    {
+		current[i].paintBand(g,
+				     firstRow,
+				     lastRow,
+				     0,
+				     top,
+				     (int) Math.round(width * scale),
+				     bottom - top,
+				     this);
+	    } /* for i */
+	} /* for tileRow */
+	paintContours(g, new Rectangle(0, 0, page.width, page.height), scale);
+	if (statusBar != null)
+	    statusBar.updateProgress(0);
+    } /* print() */
+
+    /**
+     * paint without clearing first; the tiles cover everything.
+     * @param g the graphics object to receive the image for display.
+     */
+    public void update(Graphics g)
+    {
+	paint(g);
+    } /* update() */
+
     /**
      * process mousePressed events.
      * @param e the MouseEvent to process.
      */
     public void mousePressed(MouseEvent e)
     {
-	if ((image != null) && (statusBar != null))
+	if ((terrainDEM != null) && (statusBar != null))
 	{
-	    int x = e.getX();
-	    int y = height - e.getY() - 1;
-	    if ((x <= width) &&
+	    int x = e.getX() << zoom;
+	    int y = height - (e.getY() << zoom) - 1;
+	    if ((x < width) &&
 		(y >= 0) &&
-		(y <= height))
+		(y < height))
 	    {
 		int longitude = lon + (x * xResolution);
 		int latitude  = lat + (y * yResolution);
@@ -511,7 +1359,7 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 		    demMain.startAction(demMain.COVERAGE);
 		} /* if e.getModifiers() == */
 	    } /* if x <= width */
-	} /* if image != null */
+	} /* if terrainDEM != null */
     } /* mousePressed() */
 
     /**
@@ -544,11 +1392,11 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
      */
     public void mouseExited(MouseEvent e)
     {
-	if ((image != null) && (statusBar != null) && coordsDisplayed)
+	if ((terrainDEM != null) && (statusBar != null) && coordsDisplayed)
 	{
 	    statusBar.setMessage("");
 	    coordsDisplayed = false;
-	} /* if image != null */
+	} /* if terrainDEM != null */
     } /* mouseExited() */
 
     /**
@@ -565,17 +1413,27 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
      */
     public void mouseMoved(MouseEvent e)
     {
-	if ((image != null) && (statusBar != null))
+	if ((terrainDEM != null) && (statusBar != null))
 	{
-	    int x = e.getX();
-	    int y = height - e.getY() - 1;
-	    if ((x <= width) &&
+	    int x = e.getX() << zoom;
+	    int y = height - (e.getY() << zoom) - 1;
+	    if ((x < width) &&
 		(y >= 0) &&
-		(y <= height))
+		(y < height))
 	    {
 		int longitude = lon + (x * xResolution);
 		int latitude  = lat + (y * yResolution);
-		statusBar.setMessage("" + dem.getElevation(x,y) + " "+GeoCoordinate.toString(latitude,longitude));
+		String elevation = "" + dem.getElevation(x,y);
+		if (zoom > 0)
+		{ /* show the highest point under the mouse too */
+		    elevation = elevation + " (max " +
+			pyramid.getMaximum(zoom, e.getX(), viewHeight - e.getY() - 1) + ")";
+		} /* if zoom > 0 */
+		StencilKernel kernel = product;
+		byte values[] = productValues;
+		if ((kernel != null) && (values != null))
+		    elevation = elevation + " " + kernel.describe(values[y * width + x] & 0xff);
+		statusBar.setMessage(elevation + " "+GeoCoordinate.toString(latitude,longitude));
 		coordsDisplayed = true;
 	    } /* if x <= width */
 	    else
@@ -583,7 +1441,7 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
 		statusBar.setMessage("");
 		coordsDisplayed = false;
 	    } /* if x <= width */
-	} /* if image != null */
+	} /* if terrainDEM != null */
     } /* mouseDragged() */
 
     /**
@@ -601,7 +1459,7 @@ public class Map extends Canvas implements MouseListener, MouseMotionListener
      */
     public java.awt.Dimension getMinimumSize()
     {
-	return new Dimension(width, height);
+	return new Dimension(viewWidth, viewHeight);
     } /* getMinimumSize() */
 
 } /* class Map */
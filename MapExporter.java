@@ -0,0 +1,172 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.Color;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a class that draws terrain, and optionally coverage, from tile files
+ * straight into a PNG file, in the same colors as the map.  it needs no
+ * display, so it can run in batch on a server.  the image is made and
+ * compressed a row at a time, so only a row of tiles and a row of pixels
+ * are in memory however big the mosaic is.
+ * All the methods are static; this class should never be instantiated.
+ */
+public class MapExporter
+{
+    /**
+     * write a map as an indexed color PNG, north at the top.
+     * @param terrain the tile file of elevations.
+     * @param coverage a tile file of results from OutOfCoreViewshed, the
+     * same size as terrain, or null for terrain alone.
+     * @param shadowColor the color to tint shadowed points.
+     * @param equalized true for colors covering equal numbers of points,
+     * false for equal steps of elevation.
+     * @param out the stream to write the PNG to; it is closed.
+     * @param statusBar the StatusBar to show progress on, or null.
+     * @exception IOException if the files cannot be read or the image written.
+     */
+    public static void export(TileFile terrain,
+			      TileFile coverage,
+			      Color shadowColor,
+			      boolean equalized,
+			      OutputStream out,
+			      StatusBar statusBar) throws IOException
+    {
+	int columns = terrain.getColumns();
+	int rows = terrain.getRows();
+	if ((coverage != null) && ((coverage.getColumns() != columns) || (coverage.getRows() != rows)))
+	    throw new IOException("the coverage is not the same size as the terrain");
+
+	/* a first pass for the elevation range, as tile files have no header for it */
+	ElevationHistogram histogram = new ElevationHistogram();
+	int column, row;
+	for (row = 0; row < rows; row++)
+	{
+	    for (column = 0; column < columns; column++)
+	    {
+		histogram.add(terrain.getElevation(column, row));
+	    } /* for column */
+	    if ((statusBar != null) && (row % 256 == 0))
+		statusBar.updateProgress(row * 50 / rows);
+	} /* for row */
+	short minimum = histogram.getMinimum();
+	byte table[];
+	if (equalized)
+	{
+	    table = histogram.equalize(Map.NUM_COLORS);
+	} /* if equalized */
+	else
+	{
+	    table = new byte[histogram.getMaximum() - minimum + 1];
+	    int interval = (histogram.getMaximum() - minimum) / Map.NUM_COLORS + 1;
+	    int k;
+	    for (k = 0; k < table.length; k++)
+	    {
+		table[k] = (byte) (k / interval);
+	    } /* for k */
+	} /* if equalized */
+
+	/* the map's elevation colors, then the same colors under a shadow */
+	IndexColorModel colors = Map.makeColorModel();
+	int paletteSize = (coverage == null) ? Map.NUM_COLORS : 2 * Map.NUM_COLORS;
+	byte reds[] = new byte[paletteSize];
+	byte greens[] = new byte[paletteSize];
+	byte blues[] = new byte[paletteSize];
+	int i, rgb;
+	for (i = 0; i < paletteSize; i++)
+	{
+	    rgb = colors.getRGB(i % Map.NUM_COLORS);
+	    if (i >= Map.NUM_COLORS)
+		rgb = CoverageLayer.blend(rgb, shadowColor);
+	    reds[i] = (byte) (rgb >> 16);
+	    greens[i] = (byte) (rgb >> 8);
+	    blues[i] = (byte) rgb;
+	} /* for i */
+
+	PNGWriter png = new PNGWriter(out, columns, rows, reds, greens, blues);
+	byte pixels[] = new byte[columns];
+	for (row = rows - 1; row >= 0; row--)
+	{ /* image rows run north to south, tile file rows south to north */
+	    for (column = 0; column < columns; column++)
+	    {
+		pixels[column] = table[terrain.getElevation(column, row) - minimum];
+		if ((coverage != null) && (coverage.getByte(column, row) == OutOfCoreViewshed.SHADOWED))
+		    pixels[column] += Map.NUM_COLORS;
+	    } /* for column */
+	    png.writeRow(pixels);
+	    if ((statusBar != null) && (row % 256 == 0))
+		statusBar.updateProgress(100 - row * 50 / rows);
+	} /* for row */
+	png.close();
+	if (statusBar != null)
+	    statusBar.updateProgress(0);
+    } /* export() */
+
+    /**
+     * write a product of a stencil kernel as an indexed color PNG, north at
+     * the top, in the map's elevation colors from the lowest value to the
+     * highest.
+     * @param values the product, a row at a time from the south.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @param kernel the kernel that made the product.
+     * @param out the stream to write the PNG to; it is closed.
+     * @exception IOException if the image cannot be written.
+     */
+    public static void exportProduct(byte values[],
+				     int columns,
+				     int rows,
+				     StencilKernel kernel,
+				     OutputStream out) throws IOException
+    {
+	IndexColorModel colors = Map.makeColorModel();
+	int valueCount = kernel.getValueCount();
+	byte reds[] = new byte[valueCount];
+	byte greens[] = new byte[valueCount];
+	byte blues[] = new byte[valueCount];
+	int i, rgb;
+	for (i = 0; i < valueCount; i++)
+	{
+	    rgb = colors.getRGB(i * Map.NUM_COLORS / valueCount);
+	    reds[i] = (byte) (rgb >> 16);
+	    greens[i] = (byte) (rgb >> 8);
+	    blues[i] = (byte) rgb;
+	} /* for i */
+	PNGWriter png = new PNGWriter(out, columns, rows, reds, greens, blues);
+	byte pixels[] = new byte[columns];
+	int row;
+	for (row = rows - 1; row >= 0; row--)
+	{ /* image rows run north to south, product rows south to north */
+	    System.arraycopy(values, row * columns, pixels, 0, columns);
+	    png.writeRow(pixels);
+	} /* for row */
+	png.close();
+    } /* exportProduct() */
+} /* class MapExporter */
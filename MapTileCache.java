@@ -0,0 +1,161 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * a class that keeps rendered map tiles, least recently used first, up to
+ * a limit on the memory they use.  tiles are found by their zoom level and
+ * their column and row in that level's grid of tiles.  clear() starts a
+ * new generation, and a tile rendered in an older one is not kept, so a
+ * tile drawn from the map's settings before they changed cannot be put
+ * back after the tiles drawn from them were thrown away.
+ */
+public class MapTileCache
+{
+    /**
+     * the default limit on the memory used by tiles, in bytes.
+     */
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024 * 1024;
+
+    LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true);
+    long maximumBytes;
+    long bytes = 0;
+    int generation = 0;
+
+    /**
+     * create a new MapTileCache.
+     * @param maximumBytes the most memory the tiles may use.
+     */
+    public MapTileCache(long maximumBytes)
+    {
+	this.maximumBytes = maximumBytes;
+    } /* MapTileCache constructor */
+
+    /**
+     * change the limit on the memory the tiles may use.
+     * @param maximumBytes the most memory the tiles may use.
+     */
+    public synchronized void setMaximumBytes(long maximumBytes)
+    {
+	this.maximumBytes = maximumBytes;
+	trim();
+    } /* setMaximumBytes() */
+
+    /**
+     * get the memory the tiles are using.
+     * @return the size of the cached tiles in bytes.
+     */
+    public synchronized long getBytes()
+    {
+	return bytes;
+    } /* getBytes() */
+
+    /**
+     * get a tile.
+     * @param level the zoom level of the tile.
+     * @param column the column of the tile.
+     * @param row the row of the tile.
+     * @return the tile, or null if it is not cached.
+     */
+    public synchronized BufferedImage get(int level, int column, int row)
+    {
+	return tiles.get(key(level, column, row));
+    } /* get() */
+
+    /**
+     * get the generation, to note before rendering a tile to put.
+     * @return the number of times the tiles have been cleared.
+     */
+    public synchronized int getGeneration()
+    {
+	return generation;
+    } /* getGeneration() */
+
+    /**
+     * add a tile, dropping the least recently used tiles if they are over
+     * the limit.  the tile is not added if the tiles have been cleared
+     * since it was started.
+     * @param level the zoom level of the tile.
+     * @param column the column of the tile.
+     * @param row the row of the tile.
+     * @param tile the rendered tile.
+     * @param tileGeneration what getGeneration() returned before the tile
+     * was rendered.
+     */
+    public synchronized void put(int level, int column, int row, BufferedImage tile, int tileGeneration)
+    {
+	if (tileGeneration != generation)
+	    return;
+	BufferedImage old = tiles.put(key(level, column, row), tile);
+	if (old != null)
+	    bytes -= sizeOf(old);
+	bytes += sizeOf(tile);
+	trim();
+    } /* put() */
+
+    /**
+     * drop all the tiles.
+     */
+    public synchronized void clear()
+    {
+	tiles.clear();
+	bytes = 0;
+	generation++;
+    } /* clear() */
+
+    /**
+     * drop the least recently used tiles until they fit the limit.
+     */
+    void trim()
+    {
+	Iterator<BufferedImage> it = tiles.values().iterator();
+	while ((bytes > maximumBytes) && it.hasNext())
+	{
+	    bytes -= sizeOf(it.next());
+	    it.remove();
+	} /* while */
+    } /* trim() */
+
+    /**
+     * make the key for a tile.
+     */
+    static Long key(int level, int column, int row)
+    {
+	return Long.valueOf(((long) level << 56) | ((long) column << 28) | row);
+    } /* key() */
+
+    /**
+     * get the memory used by a tile, at one byte a pixel.
+     */
+    static long sizeOf(BufferedImage tile)
+    {
+	return (long) tile.getWidth() * tile.getHeight();
+    } /* sizeOf() */
+} /* class MapTileCache */
@@ -0,0 +1,155 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * an ElevationGrid whose elevations stay in a mapped DEM file rather than
+ * on the heap.  nothing is read when the file is opened; pages are brought
+ * in by the operating system as they are touched, and every process that
+ * maps the same file shares the same pages.  the rows are mapped in
+ * blocks, a power of two rows to a block, as one mapping can hold no more
+ * than 2GB.  the grid is read only.
+ */
+public class MappedElevationGrid extends ElevationGrid
+{
+    String fileName;
+    /* row is in block row >> blockShift, at row & blockMask within it */
+    int blockShift;
+    int blockMask;
+    ShortBuffer blocks[];
+
+    /**
+     * map the elevations of a mapped DEM file.
+     * @param fileName the name of the file.
+     * @param offset where in the file the elevations start.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @exception IOException if the file cannot be mapped.
+     */
+    public MappedElevationGrid(String fileName, long offset, int columns, int rows) throws IOException
+    {
+	super(columns, rows, null);
+	this.fileName = fileName;
+	blockShift = 0;
+	while ((((long) columns << (blockShift + 2)) <= Integer.MAX_VALUE) && (blockShift < 30))
+	{
+	    blockShift++;
+	} /* while columns << blockShift + 2... */
+	int blockRows = 1 << blockShift;
+	blockMask = blockRows - 1;
+	RandomAccessFile file = new RandomAccessFile(fileName, "r");
+	if (file.length() < offset + 2L * columns * rows)
+	{
+	    file.close();
+	    throw new IOException(fileName + " is too short for " + columns + " x " + rows + " elevations");
+	} /* if file.length() < ... */
+	FileChannel channel = file.getChannel();
+	blocks = new ShortBuffer[(int) (((long) rows + blockMask) >> blockShift)];
+	int i;
+	for (i = 0; i < blocks.length; i++)
+	{
+	    blocks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+				    offset + 2L * columns * ((long) i << blockShift),
+				    2L * columns * Math.min(rows - (i << blockShift), blockRows)).asShortBuffer();
+	} /* for i */
+	channel.close();
+	file.close();
+    } /* MappedElevationGrid constructor */
+
+    /**
+     * get the name of the file the elevations are mapped from.
+     * @return the file name.
+     */
+    public String getFileName()
+    {
+	return fileName;
+    } /* getFileName() */
+
+    /**
+     * get the arrays the elevations are kept in.  there are none, as
+     * they are in the file.
+     * @return null.
+     */
+    public short[][] getBlocks()
+    {
+	return null;
+    } /* getBlocks() */
+
+    /**
+     * get the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @return the elevation at that point.
+     */
+    public short getElevation(int column, int row)
+    {
+	return blocks[row >> blockShift].get((row & blockMask) * stride + column);
+    } /* getElevation() */
+
+    /**
+     * the elevations cannot be set, as the file is mapped read only.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @param elevation the elevation.
+     * @exception java.nio.ReadOnlyBufferException always.
+     */
+    public void setElevation(int column, int row, short elevation)
+    {
+	blocks[row >> blockShift].put((row & blockMask) * stride + column, elevation);
+    } /* setElevation() */
+
+    /**
+     * copy part of a row.
+     * @param row the row.
+     * @param column the first column to copy.
+     * @param buffer where to copy the elevations to.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     */
+    public void readRow(int row, int column, short buffer[], int offset, int count)
+    {
+	blocks[row >> blockShift].get((row & blockMask) * stride + column, buffer, offset, count);
+    } /* readRow() */
+
+    /**
+     * the elevations cannot be written, as the file is mapped read only.
+     * @param row the row.
+     * @param column the first column to copy to.
+     * @param buffer where to copy the elevations from.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     * @exception java.nio.ReadOnlyBufferException always.
+     */
+    public void writeRow(int row, int column, short buffer[], int offset, int count)
+    {
+	blocks[row >> blockShift].put((row & blockMask) * stride + column, buffer, offset, count);
+    } /* writeRow() */
+} /* class MappedElevationGrid */
@@ -0,0 +1,155 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * a class that reads the elevations of a tile file through memory mapping.
+ * nothing is read when the file is opened; pages are brought in by the
+ * operating system as they are touched, and every process that maps the
+ * same file shares the same pages.  each row of tiles is mapped separately
+ * so that files bigger than one mapping can be used.
+ */
+public class MappedTerrain implements ElevationSource
+{
+    int columns;
+    int rows;
+    int tileSize;
+    int swLatitude;
+    int swLongitude;
+    byte xResolution;
+    byte yResolution;
+    ShortBuffer tileRows[];
+
+    /**
+     * map a tile file of elevations.
+     * @param fileName the name of the tile file.
+     * @exception IOException if the file cannot be mapped.
+     */
+    public MappedTerrain(String fileName) throws IOException
+    {
+	TileFile header = TileFile.open(fileName, false);
+	if (header.getCellSize() != TileFile.ELEVATION_CELLS)
+	{
+	    header.close();
+	    throw new IOException(fileName + " does not contain elevations");
+	} /* if getCellSize() != ELEVATION_CELLS */
+	columns = header.getColumns();
+	rows = header.getRows();
+	tileSize = header.getTileSize();
+	swLatitude = header.getSWLatitude();
+	swLongitude = header.getSWLongitude();
+	xResolution = header.getXResolution();
+	yResolution = header.getYResolution();
+	int tilesAcross = (columns + tileSize - 1) / tileSize;
+	int tilesDown = (rows + tileSize - 1) / tileSize;
+	long tileRowBytes = (long) tilesAcross * tileSize * tileSize * TileFile.ELEVATION_CELLS;
+	header.close();
+
+	RandomAccessFile file = new RandomAccessFile(fileName, "r");
+	FileChannel channel = file.getChannel();
+	tileRows = new ShortBuffer[tilesDown];
+	int ty;
+	for (ty = 0; ty < tilesDown; ty++)
+	{
+	    tileRows[ty] = channel.map(FileChannel.MapMode.READ_ONLY,
+				       TileFile.HEADER_SIZE + ty * tileRowBytes,
+				       tileRowBytes).asShortBuffer();
+	} /* for ty */
+	channel.close();
+	file.close();
+    } /* MappedTerrain constructor */
+
+    /**
+     * get the number of columns of elevations.
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+	return columns;
+    } /* getColumnCount() */
+
+    /**
+     * get the number of rows of elevations.
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+	return rows;
+    } /* getRowCount() */
+
+    /**
+     * get the elevation of a particular point.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @return the elevation at that point.
+     */
+    public short getElevation(int column, int row)
+    {
+	int index = ((column / tileSize) * tileSize + (row % tileSize)) * tileSize + (column % tileSize);
+	return tileRows[row / tileSize].get(index);
+    } /* getElevation() */
+
+    /**
+     * get the latitude of the SW corner.
+     * @return the latitude of the SW corner in arc-seconds.
+     */
+    public int getSWLatitude()
+    {
+	return swLatitude;
+    } /* getSWLatitude() */
+
+    /**
+     * get the longitude of the SW corner.
+     * @return the longitude of the SW corner in arc-seconds.
+     */
+    public int getSWLongitude()
+    {
+	return swLongitude;
+    } /* getSWLongitude() */
+
+    /**
+     * return the X resolution in arc-seconds.
+     * @return the x-resolution in arc-seconds.
+     */
+    public byte getXResolution()
+    {
+	return xResolution;
+    } /* getXResolution() */
+
+    /**
+     * return the Y resolution in arc-seconds.
+     * @return the y-resolution in arc-seconds.
+     */
+    public byte getYResolution()
+    {
+	return yResolution;
+    } /* getYResolution() */
+} /* class MappedTerrain */
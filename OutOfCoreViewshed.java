@@ -0,0 +1,181 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * a class that calculates radio coverage for DEMs too big to load.  the
+ * terrain is read from a TileFile and the results are written to another,
+ * using the sweep engine by default, which visits the cells in square rings
+ * outward from the transmitter and keeps only two rings of horizons in memory.
+ * memory use is the two rings plus the two tile caches, which grow with
+ * the perimeter of the DEM and not its area.
+ */
+public class OutOfCoreViewshed
+{
+    /**
+     * result value for a cell that can see the transmitter.
+     */
+    public static final byte VISIBLE = 1;
+    /**
+     * result value for a cell that is shadowed by terrain.
+     */
+    public static final byte SHADOWED = 2;
+    TileFile terrain;
+    TileFile result;
+    StatusBar statusBar;
+    PolygonMask mask;
+    ViewshedEngine engine = new SweepViewshedEngine();
+
+    /**
+     * create a new OutOfCoreViewshed.
+     * @param terrain the tile file of elevations to analyze.
+     * @param result a tile file of results, the same size as terrain.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public OutOfCoreViewshed(TileFile terrain, TileFile result, StatusBar statusBar)
+    {
+	this.terrain = terrain;
+	this.result = result;
+	this.statusBar = statusBar;
+    } /* OutOfCoreViewshed constructor */
+
+    /**
+     * restrict the calculation to an area.  the sweep stops at the ring that
+     * holds the far edge of the area, and only cells inside the area are
+     * written.
+     * @param mask the area, or null for the whole DEM.
+     */
+    public void setMask(PolygonMask mask)
+    {
+	this.mask = mask;
+    } /* setMask() */
+
+    /**
+     * choose the engine that calculates the viewshed.  the sweep engine is
+     * the default, and the only one that reads the tiles in order; the
+     * others work, but read the terrain at random and can be much slower.
+     * @param engine the engine to use.
+     */
+    public void setEngine(ViewshedEngine engine)
+    {
+	this.engine = engine;
+    } /* setEngine() */
+
+    /**
+     * calculate the radio horizon of a transmitter.
+     * @param x the column of the transmitter.
+     * @param y the row of the transmitter.
+     * @param amsl the height of the antenna above sea level.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @exception IOException if the tile files cannot be read or written.
+     */
+    public void calculate(int x, int y, short amsl, short receiverHeight) throws IOException
+    {
+	ViewshedSite site = new ViewshedSite(x,
+					     y,
+					     terrain.getSWLatitude() + y * terrain.getYResolution(),
+					     amsl,
+					     receiverHeight,
+					     1.0f,
+					     1);
+	site.setMask(mask);
+	/* the engine interfaces cannot throw IOException, so it is carried out unchecked */
+	ElevationSource source = new ElevationSource()
+	    {
+		public int getColumnCount()
+		{
+		    return terrain.getColumns();
+		} /* getColumnCount() */
+
+		public int getRowCount()
+		{
+		    return terrain.getRows();
+		} /* getRowCount() */
+
+		public short getElevation(int column, int row)
+		{
+		    try
+		    {
+			return terrain.getElevation(column, row);
+		    } /* try */
+		    catch (IOException e)
+		    {
+			throw new UncheckedIOException(e);
+		    }
+		} /* getElevation() */
+	    };
+	ViewshedSink sink = new ViewshedSink()
+	    {
+		public void setVisible(int column, int row)
+		{
+		    try
+		    {
+			/* shadowed wins, so a cell already shadowed stays so */
+			if (result.getByte(column, row) != SHADOWED)
+			    result.setByte(column, row, VISIBLE);
+		    } /* try */
+		    catch (IOException e)
+		    {
+			throw new UncheckedIOException(e);
+		    }
+		} /* setVisible() */
+
+		public void setShadowed(int column, int row)
+		{
+		    try
+		    {
+			result.setByte(column, row, SHADOWED);
+		    } /* try */
+		    catch (IOException e)
+		    {
+			throw new UncheckedIOException(e);
+		    }
+		} /* setShadowed() */
+
+		public void progress(int pctDone)
+		{
+		    if (statusBar != null)
+			statusBar.updateProgress(pctDone);
+		} /* progress() */
+	    };
+	try
+	{
+	    engine.calculate(source, site, sink);
+	} /* try */
+	catch (UncheckedIOException e)
+	{
+	    throw e.getCause();
+	}
+	result.flush();
+	if (statusBar != null)
+	{
+	    statusBar.updateProgress(0);
+	} /* if statusBar != null */
+    } /* calculate() */
+} /* class OutOfCoreViewshed */
@@ -0,0 +1,207 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * a class that writes an 8 bit indexed color PNG image a row at a time.
+ * each row is compressed as soon as it is written and the compressed data
+ * goes out in chunks of at most CHUNK_SIZE bytes, so the memory used does
+ * not depend on the size of the image.  it needs no display, and no AWT
+ * image at all.
+ */
+public class PNGWriter
+{
+    /**
+     * the most compressed data held before it is written out as a chunk.
+     */
+    public static final int CHUNK_SIZE = 1 << 16;
+    private static final byte SIGNATURE[] = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int FILTER_NONE = 0;
+
+    DataOutputStream out;
+    int width;
+    int height;
+    int rowsWritten = 0;
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    byte row[];
+    byte chunk[] = new byte[CHUNK_SIZE];
+    int chunkLength = 0;
+    CRC32 crc = new CRC32();
+
+    /**
+     * start a new image, writing the header and the palette.
+     * @param out the stream to write the image to.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param reds the red part of each palette entry.
+     * @param greens the green part of each palette entry.
+     * @param blues the blue part of each palette entry.
+     * @exception IOException if the image cannot be written.
+     */
+    public PNGWriter(OutputStream out,
+		     int width,
+		     int height,
+		     byte reds[],
+		     byte greens[],
+		     byte blues[]) throws IOException
+    {
+	this(out, width, height, reds, greens, blues, null);
+    } /* PNGWriter constructor */
+
+    /**
+     * start a new image with see-through colors, writing the header and
+     * the palette.
+     * @param out the stream to write the image to.
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param reds the red part of each palette entry.
+     * @param greens the green part of each palette entry.
+     * @param blues the blue part of each palette entry.
+     * @param alphas the opacity of each palette entry, from 0 for clear to
+     * 255 for solid, or null if every color is solid.
+     * @exception IOException if the image cannot be written.
+     */
+    public PNGWriter(OutputStream out,
+		     int width,
+		     int height,
+		     byte reds[],
+		     byte greens[],
+		     byte blues[],
+		     byte alphas[]) throws IOException
+    {
+	this.out = new DataOutputStream(out);
+	this.width = width;
+	this.height = height;
+	row = new byte[width + 1];
+	row[0] = (byte) FILTER_NONE;
+	this.out.write(SIGNATURE);
+
+	byte header[] = new byte[13];
+	putInt(header, 0, width);
+	putInt(header, 4, height);
+	header[8] = 8; /* bits per pixel */
+	header[9] = (byte) COLOR_TYPE_INDEXED;
+	/* compression, filter and interlace methods are all 0 */
+	writeChunk("IHDR", header, header.length);
+
+	byte palette[] = new byte[reds.length * 3];
+	int i;
+	for (i = 0; i < reds.length; i++)
+	{
+	    palette[3 * i] = reds[i];
+	    palette[3 * i + 1] = greens[i];
+	    palette[3 * i + 2] = blues[i];
+	} /* for i */
+	writeChunk("PLTE", palette, palette.length);
+	if (alphas != null)
+	    writeChunk("tRNS", alphas, alphas.length);
+    } /* PNGWriter constructor */
+
+    /**
+     * write the next row of the image, from the top.
+     * @param pixels the palette index of each pixel in the row.
+     * @exception IOException if the row cannot be written.
+     */
+    public void writeRow(byte pixels[]) throws IOException
+    {
+	if (rowsWritten == height)
+	    throw new IOException("PNGWriter: too many rows");
+	System.arraycopy(pixels, 0, row, 1, width);
+	deflater.setInput(row);
+	while (!deflater.needsInput())
+	{
+	    deflate();
+	} /* while !needsInput */
+	rowsWritten++;
+    } /* writeRow() */
+
+    /**
+     * finish the image and close the stream.
+     * @exception IOException if the image cannot be written, or not all the
+     * rows were.
+     */
+    public void close() throws IOException
+    {
+	if (rowsWritten != height)
+	    throw new IOException("PNGWriter: " + rowsWritten + " of " + height + " rows written");
+	deflater.finish();
+	while (!deflater.finished())
+	{
+	    deflate();
+	} /* while !finished */
+	deflater.end();
+	if (chunkLength > 0)
+	    writeChunk("IDAT", chunk, chunkLength);
+	writeChunk("IEND", chunk, 0);
+	out.close();
+    } /* close() */
+
+    /**
+     * compress into the chunk buffer, writing it out when it is full.
+     */
+    void deflate() throws IOException
+    {
+	chunkLength += deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+	if (chunkLength == chunk.length)
+	{
+	    writeChunk("IDAT", chunk, chunkLength);
+	    chunkLength = 0;
+	} /* if chunkLength == chunk.length */
+    } /* deflate() */
+
+    /**
+     * write a chunk: its length, type, data and CRC.
+     */
+    void writeChunk(String type, byte data[], int length) throws IOException
+    {
+	byte typeBytes[] = type.getBytes("US-ASCII");
+	out.writeInt(length);
+	out.write(typeBytes);
+	out.write(data, 0, length);
+	crc.reset();
+	crc.update(typeBytes);
+	crc.update(data, 0, length);
+	out.writeInt((int) crc.getValue());
+    } /* writeChunk() */
+
+    /**
+     * store an int in a byte array, most significant byte first.
+     */
+    static void putInt(byte buffer[], int offset, int value)
+    {
+	buffer[offset] = (byte) (value >> 24);
+	buffer[offset + 1] = (byte) (value >> 16);
+	buffer[offset + 2] = (byte) (value >> 8);
+	buffer[offset + 3] = (byte) value;
+    } /* putInt() */
+} /* class PNGWriter */
@@ -0,0 +1,284 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.util.Arrays;
+
+/**
+ * a class that represents an area of interest, such as a county or a
+ * service area, as a mask on the DEM grid.  the polygon is rasterized once
+ * into spans of cells for each row, so testing a cell is cheap, and the
+ * calculations can skip the cells and rays that never enter the area.  a
+ * cell is in the mask if its sample point is inside the polygon (even-odd
+ * rule).
+ */
+public class PolygonMask
+{
+    int columns;
+    int rows;
+    int spans[][]; /* first and last column of each span, per row, or null */
+    int minRow;
+    int maxRow;
+    int minColumn;
+    int maxColumn;
+    int cellCount;
+
+    /**
+     * rasterize a polygon onto a DEM grid.
+     * @param vertices the corners of the polygon, in order.
+     * @param swLatitude the latitude of the grid's SW corner in arc-seconds.
+     * @param swLongitude the longitude of the grid's SW corner in arc-seconds.
+     * @param xResolution the x-resolution of the grid in arc-seconds.
+     * @param yResolution the y-resolution of the grid in arc-seconds.
+     * @param columns the number of columns in the grid.
+     * @param rows the number of rows in the grid.
+     */
+    public PolygonMask(GeoCoordinate vertices[],
+		       int swLatitude,
+		       int swLongitude,
+		       int xResolution,
+		       int yResolution,
+		       int columns,
+		       int rows)
+    {
+	this.columns = columns;
+	this.rows = rows;
+	int n = vertices.length;
+	double xs[] = new double[n];
+	double ys[] = new double[n];
+	int i, j, row, count;
+	for (i = 0; i < n; i++)
+	{
+	    xs[i] = (vertices[i].getLongitude() - swLongitude) / (double) xResolution;
+	    ys[i] = (vertices[i].getLatitude() - swLatitude) / (double) yResolution;
+	} /* for i */
+	spans = new int[rows][];
+	double crossings[] = new double[n];
+	minRow = rows;
+	maxRow = -1;
+	minColumn = columns;
+	maxColumn = -1;
+	for (row = 0; row < rows; row++)
+	{
+	    count = 0;
+	    for (i = 0, j = n - 1; i < n; j = i++)
+	    {
+		if ((ys[i] <= row) != (ys[j] <= row))
+		{
+		    crossings[count++] = xs[j] + (row - ys[j]) * (xs[i] - xs[j]) / (ys[i] - ys[j]);
+		} /* if edge crosses this row */
+	    } /* for i */
+	    Arrays.sort(crossings, 0, count);
+	    int rowSpans[] = new int[count];
+	    int numSpans = 0;
+	    for (i = 0; i + 1 < count; i += 2)
+	    {
+		int first = Math.max(0, (int) Math.ceil(crossings[i]));
+		int last = Math.min(columns - 1, (int) Math.floor(crossings[i + 1]));
+		if (first <= last)
+		{
+		    rowSpans[numSpans++] = first;
+		    rowSpans[numSpans++] = last;
+		    cellCount += last - first + 1;
+		    minColumn = Math.min(minColumn, first);
+		    maxColumn = Math.max(maxColumn, last);
+		} /* if first <= last */
+	    } /* for i */
+	    if (numSpans != 0)
+	    {
+		spans[row] = Arrays.copyOf(rowSpans, numSpans);
+		minRow = Math.min(minRow, row);
+		maxRow = row;
+	    } /* if numSpans != 0 */
+	} /* for row */
+    } /* PolygonMask constructor */
+
+    /**
+     * rasterize a polygon onto the grid of a DEM.
+     * @param vertices the corners of the polygon, in order.
+     * @param dem the DEM whose grid to use.
+     */
+    public PolygonMask(GeoCoordinate vertices[], DEM dem)
+    {
+	this(vertices,
+	     dem.getCorner(DEM.SW_CORNER).getLatitude(),
+	     dem.getCorner(DEM.SW_CORNER).getLongitude(),
+	     dem.getXResolution(),
+	     dem.getYResolution(),
+	     dem.getColumns(),
+	     dem.getRows());
+    } /* PolygonMask constructor */
+
+    /**
+     * test if a cell is inside the mask.
+     * @param column the column of the cell.
+     * @param row the row of the cell.
+     * @return true if the cell is inside the mask.
+     */
+    public boolean contains(int column, int row)
+    {
+	if ((row < minRow) || (row > maxRow))
+	    return false;
+	int rowSpans[] = spans[row];
+	if (rowSpans == null)
+	    return false;
+	int i;
+	for (i = 0; i < rowSpans.length; i += 2)
+	{
+	    if (column < rowSpans[i])
+		return false;
+	    if (column <= rowSpans[i + 1])
+		return true;
+	} /* for i */
+	return false;
+    } /* contains() */
+
+    /**
+     * get the number of cells inside the mask.
+     * @return the number of cells.
+     */
+    public int getCellCount()
+    {
+	return cellCount;
+    } /* getCellCount() */
+
+    /**
+     * test if the mask is empty.
+     * @return true if no cells are inside the mask.
+     */
+    public boolean isEmpty()
+    {
+	return cellCount == 0;
+    } /* isEmpty() */
+
+    /**
+     * get the furthest distance, in cells, from a point to any cell inside
+     * the mask.  calculations from that point need go no further.
+     * @param x the column of the point.
+     * @param y the row of the point.
+     * @return the distance, rounded up.
+     */
+    public int getMaxDistance(int x, int y)
+    {
+	double max = 0;
+	int row, i;
+	for (row = minRow; row <= maxRow; row++)
+	{
+	    if (spans[row] != null)
+	    {
+		for (i = 0; i < spans[row].length; i++)
+		{
+		    max = Math.max(max, Math.hypot(spans[row][i] - x, row - y));
+		} /* for i */
+	    } /* if spans[row] != null */
+	} /* for row */
+	return (int) Math.ceil(max);
+    } /* getMaxDistance() */
+
+    /**
+     * get the furthest distance from a point to any cell inside the mask,
+     * measured in square rings (the larger of the x and y distances).
+     * @param x the column of the point.
+     * @param y the row of the point.
+     * @return the ring number.
+     */
+    public int getMaxRing(int x, int y)
+    {
+	return Math.max(Math.max(Math.abs(minColumn - x), Math.abs(maxColumn - x)),
+			Math.max(Math.abs(minRow - y), Math.abs(maxRow - y)));
+    } /* getMaxRing() */
+
+    /**
+     * find which rays from a point can enter the mask.  rays are numbered
+     * from 0 (north) clockwise in steps of the angle increment, as in
+     * RadialCoverage.  each span is widened by a cell on every side to allow
+     * for rays sampling at truncated coordinates.
+     * @param x the column of the point.
+     * @param y the row of the point.
+     * @param degreeIncrement the angle between rays.
+     * @param rayCount the number of rays.
+     * @return a flag for each ray, true if it can enter the mask.
+     */
+    public boolean[] getRays(int x, int y, float degreeIncrement, int rayCount)
+    {
+	boolean rays[] = new boolean[rayCount];
+	int row, i, ray, first, last;
+	double x0, x1, y0, y1, center, min, max, delta;
+	for (row = minRow; row <= maxRow; row++)
+	{
+	    if (spans[row] == null)
+		continue;
+	    for (i = 0; i < spans[row].length; i += 2)
+	    {
+		x0 = spans[row][i] - x - 1.0;
+		x1 = spans[row][i + 1] - x + 1.0;
+		y0 = row - y - 1.0;
+		y1 = row - y + 1.0;
+		if ((x0 <= 0) && (x1 >= 0) && (y0 <= 0) && (y1 >= 0))
+		{ /* the point is in (or next to) the mask, every ray enters */
+		    Arrays.fill(rays, true);
+		    return rays;
+		} /* if x0 <= 0... */
+		center = Math.toDegrees(Math.atan2((x0 + x1) / 2, (y0 + y1) / 2));
+		min = 0;
+		max = 0;
+		delta = angleFrom(center, x0, y0);
+		min = Math.min(min, delta);
+		max = Math.max(max, delta);
+		delta = angleFrom(center, x1, y0);
+		min = Math.min(min, delta);
+		max = Math.max(max, delta);
+		delta = angleFrom(center, x0, y1);
+		min = Math.min(min, delta);
+		max = Math.max(max, delta);
+		delta = angleFrom(center, x1, y1);
+		min = Math.min(min, delta);
+		max = Math.max(max, delta);
+		first = (int) Math.floor((center + min) / degreeIncrement);
+		last = (int) Math.ceil((center + max) / degreeIncrement);
+		for (ray = first; ray <= last; ray++)
+		{
+		    rays[((ray % rayCount) + rayCount) % rayCount] = true;
+		} /* for ray */
+	    } /* for i */
+	} /* for row */
+	return rays;
+    } /* getRays() */
+
+    /**
+     * get the angle of a point, relative to a reference azimuth, in the
+     * range -180 to 180 degrees.
+     */
+    private static double angleFrom(double reference, double dx, double dy)
+    {
+	double delta = Math.toDegrees(Math.atan2(dx, dy)) - reference;
+	while (delta > 180.0)
+	    delta -= 360.0;
+	while (delta < -180.0)
+	    delta += 360.0;
+	return delta;
+    } /* angleFrom() */
+} /* class PolygonMask */
@@ -0,0 +1,51 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.IOException;
+
+/**
+ * an interface for anything that receives polygons one at a time, such as
+ * a file being written as they are found.
+ */
+public interface PolygonSink
+{
+    /**
+     * take a polygon.
+     * @param rings the boundary of the polygon, then any holes in it.  each
+     * ring is longitude, latitude pairs in degrees, with the last point the
+     * same as the first; the boundary runs counterclockwise and the holes
+     * clockwise.
+     * @exception IOException if the polygon cannot be written.
+     */
+    public void writePolygon(double rings[][]) throws IOException;
+
+    /**
+     * finish; no more polygons will be written.
+     * @exception IOException if the end cannot be written.
+     */
+    public void close() throws IOException;
+} /* interface PolygonSink */
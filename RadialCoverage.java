@@ -0,0 +1,232 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.util.BitSet;
+
+/**
+ * a class that calculates the radio horizon by casting rays out from the
+ * transmitter, the same way as Map.plotCoverage, but against any
+ * ElevationSource and with no display.  rays are numbered from 0 (north)
+ * clockwise in steps of the angle increment, so that a range of rays (an
+ * azimuth sector) can be calculated on its own and the results combined.
+ */
+public class RadialCoverage
+{
+    ElevationSource terrain;
+    int x;
+    int y;
+    short amsl;
+    short receiverHeight;
+    float degreeIncrement;
+    int distanceIncrement;
+    int columns;
+    int rows;
+    int maxDistance;
+    short earthCurveDeltaZ[];
+    PolygonMask mask;
+    boolean maskRays[];
+    int maskDistance;
+
+    /**
+     * create a new RadialCoverage for a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param latitude the latitude of the transmitter, for the earth radius.
+     * @param x the column of the transmitter.
+     * @param y the row of the transmitter.
+     * @param amsl the height of the antenna above sea level.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around the transmitter.
+     * @param distanceIncrement the distance increment to vector around the transmitter.
+     * @exception IllegalArgumentException if the terrain has too many cells
+     * for the bit sets; check fits() first.
+     */
+    public RadialCoverage(ElevationSource terrain,
+			  int latitude,
+			  int x,
+			  int y,
+			  short amsl,
+			  short receiverHeight,
+			  float degreeIncrement,
+			  int distanceIncrement)
+    {
+	if (!fits(terrain))
+	{
+	    throw new IllegalArgumentException(terrain.getColumnCount() + " x " + terrain.getRowCount()
+					       + " is too big for a radial coverage");
+	} /* if !fits(terrain) */
+	this.terrain = terrain;
+	this.x = x;
+	this.y = y;
+	this.amsl = amsl;
+	this.receiverHeight = receiverHeight;
+	this.degreeIncrement = degreeIncrement;
+	this.distanceIncrement = distanceIncrement;
+	columns = terrain.getColumnCount();
+	rows = terrain.getRowCount();
+	maxDistance = (int) Math.sqrt((double) columns * columns + (double) rows * rows);
+	int r = GISCalculations.getEarthRadius(latitude) * 4 / 3;
+	earthCurveDeltaZ = new short[maxDistance / distanceIncrement + 1];
+	int distance;
+	int numElevations = 0;
+	for (distance = distanceIncrement; distance < maxDistance; distance += distanceIncrement)
+	{
+	    earthCurveDeltaZ[numElevations++] = GISCalculations.getEarthCurveDrop(distance, r);
+	} /* for distance */
+    } /* RadialCoverage constructor */
+
+    /**
+     * create a new RadialCoverage for a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @exception IllegalArgumentException if the terrain has too many cells
+     * for the bit sets; check fits() first.
+     */
+    public RadialCoverage(ElevationSource terrain, ViewshedSite site)
+    {
+	this(terrain,
+	     site.latitude,
+	     site.x,
+	     site.y,
+	     site.amsl,
+	     site.receiverHeight,
+	     site.degreeIncrement,
+	     site.distanceIncrement);
+	setMask(site.mask);
+    } /* RadialCoverage constructor */
+
+    /**
+     * determine if every cell of some terrain has an index in a BitSet, as
+     * the bit sets filled by calculate() need.
+     * @param terrain the elevations.
+     * @return true if the cells can all be indexed.
+     */
+    public static boolean fits(ElevationSource terrain)
+    {
+	return (long) terrain.getColumnCount() * terrain.getRowCount() <= Integer.MAX_VALUE;
+    } /* fits() */
+
+    /**
+     * restrict the calculation to an area.  rays that never enter the area
+     * are not cast, rays stop at the far edge of the area, and only cells
+     * inside the area are marked.
+     * @param mask the area, or null for the whole DEM.
+     */
+    public void setMask(PolygonMask mask)
+    {
+	this.mask = mask;
+	if (mask != null)
+	{
+	    maskRays = mask.getRays(x, y, degreeIncrement, getRayCount());
+	    maskDistance = Math.min(maxDistance, mask.getMaxDistance(x, y) + distanceIncrement);
+	} /* if mask != null */
+    } /* setMask() */
+
+    /**
+     * get the number of rays needed to go all the way around.
+     * @return the number of rays.
+     */
+    public int getRayCount()
+    {
+	return (int) Math.ceil(360.0 / degreeIncrement);
+    } /* getRayCount() */
+
+    /**
+     * get the index of a cell in the bit sets filled by calculate().
+     * @param column the column of the cell.
+     * @param row the row of the cell.
+     * @return the bit index for the cell.
+     */
+    public int getIndex(int column, int row)
+    {
+	return row * columns + column;
+    } /* getIndex() */
+
+    /**
+     * calculate a range of rays.  the horizon along each ray is tracked as
+     * it goes, rather than re-testing every earlier sample for each new one.
+     * @param firstRay the number of the first ray to calculate.
+     * @param lastRay the number of the ray after the last one to calculate.
+     * @param reached bits are set for every cell a ray visits.
+     * @param shadowed bits are set for every cell found to be occluded.
+     */
+    public void calculate(int firstRay, int lastRay, BitSet reached, BitSet shadowed)
+    {
+	int ray, distance, numElevations, lx, ly;
+	float horizon, pending, slope;
+	short elevation;
+	double angleRadians, sin, cos;
+	int rayDistance = (mask == null) ? maxDistance : maskDistance;
+	boolean inMask = true;
+	for (ray = firstRay; ray < lastRay; ray++)
+	{
+	    if ((mask != null) && !maskRays[ray])
+		continue;
+	    angleRadians = GISCalculations.degreesToRadians(ray * degreeIncrement);
+	    sin = Math.sin(angleRadians);
+	    cos = Math.cos(angleRadians);
+	    numElevations = 1;
+	    horizon = Float.NEGATIVE_INFINITY;
+	    pending = Float.NEGATIVE_INFINITY;
+	    for (distance = distanceIncrement; distance < rayDistance; distance += distanceIncrement)
+	    {
+		lx = x + (int) (sin * distance);
+		ly = y + (int) (cos * distance);
+		if ((lx < 0) || (lx >= columns) || (ly < 0) || (ly >= rows))
+		    break;
+		elevation = (short) (terrain.getElevation(lx, ly) - earthCurveDeltaZ[numElevations]);
+		slope = (float) ((elevation + receiverHeight) - amsl) / (float) numElevations;
+		if (mask != null)
+		    inMask = mask.contains(lx, ly);
+		if (inMask)
+		{
+		    reached.set(getIndex(lx, ly));
+		    if (slope < horizon)
+		    {
+			shadowed.set(getIndex(lx, ly));
+		    } /* if slope < horizon */
+		} /* if inMask */
+		/* like plotCoverage, the sample just before this one does not occlude */
+		horizon = Math.max(horizon, pending);
+		pending = (float) (elevation - amsl) / (float) numElevations;
+		numElevations++;
+	    } /* for distance */
+	} /* for ray */
+    } /* calculate() */
+
+    /**
+     * count the cells that can see the transmitter.
+     * @param reached the cells visited.
+     * @param shadowed the cells found to be occluded.
+     * @return the number of cells visited and not occluded.
+     */
+    public static int countVisible(BitSet reached, BitSet shadowed)
+    {
+	BitSet visible = (BitSet) reached.clone();
+	visible.andNot(shadowed);
+	return visible.cardinality();
+    } /* countVisible() */
+} /* class RadialCoverage */
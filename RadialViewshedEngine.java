@@ -0,0 +1,138 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * the original coverage algorithm.  rays are cast out from the transmitter
+ * every degreeIncrement degrees, sampling the terrain every
+ * distanceIncrement points; each sample is shadowed if the line from the
+ * antenna to the receiver there passes below any earlier sample on the ray.
+ */
+public class RadialViewshedEngine implements ViewshedEngine
+{
+    /**
+     * the name of this engine.
+     */
+    public static final String NAME = "radial";
+
+    /**
+     * get the name this engine is selected by.
+     * @return the engine's name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * calculate the coverage of a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @param sink the receiver of the results.
+     */
+    public void calculate(ElevationSource terrain, ViewshedSite site, ViewshedSink sink)
+    {
+	int width = terrain.getColumnCount();
+	int height = terrain.getRowCount();
+	int x = site.x;
+	int y = site.y;
+	short amsl = site.amsl;
+	short receiverHeight = site.receiverHeight;
+	float degreeIncrement = site.degreeIncrement;
+	int distanceIncrement = site.distanceIncrement;
+	PolygonMask mask = site.mask;
+        float degrees;
+        int distance;
+        int maxDistance = (int) Math.sqrt((double) width * width + (double) height * height);
+        short elevation;
+	int i, j, lx, ly;
+	double angleRadians;
+	short elevations[];
+	short earthCurveDeltaZ[];
+	int maxElevations = maxDistance / distanceIncrement;
+	elevations = new short[maxElevations];
+	earthCurveDeltaZ = new short[maxElevations];
+	int numElevations;
+	float slope;
+	boolean occluded;
+	short lineElev;
+	int r = site.getEffectiveEarthRadius();
+	int rayCount = site.getRayCount();
+	boolean maskRays[] = null;
+	if (mask != null)
+	{ /* only cast rays that enter the area, and only as far as it goes */
+	    maskRays = mask.getRays(x, y, degreeIncrement, rayCount);
+	    maxDistance = Math.min(maxDistance, mask.getMaxDistance(x, y) + distanceIncrement);
+	} /* if mask != null */
+
+	numElevations = 0;
+	for (distance = distanceIncrement; distance < maxDistance; distance += distanceIncrement)
+	{
+	    earthCurveDeltaZ[numElevations++] = GISCalculations.getEarthCurveDrop(distance, r);
+	} /* for distance */
+
+	for (degrees = (float) 0.0; degrees < 360.0; degrees += degreeIncrement)
+        {
+	    if ((maskRays != null) &&
+		!maskRays[Math.round(degrees / degreeIncrement) % rayCount])
+		continue;
+	    sink.progress((int) (degrees / 360.0 * 100));
+	    angleRadians = GISCalculations.degreesToRadians(degrees);
+	    numElevations = 0;
+	    elevations[numElevations++] = amsl;
+	    for (distance = distanceIncrement; distance < maxDistance; distance += distanceIncrement)
+	    {
+		lx = x + (int) (Math.sin(angleRadians) * distance);
+		ly = y + (int) (Math.cos(angleRadians) * distance);
+		if ((lx < 0) || (lx >= width) || (ly < 0) || (ly >= height))
+		    break;
+		/* check for visibility here */
+		elevation = (short) (terrain.getElevation(lx,ly) - earthCurveDeltaZ[numElevations]);
+		elevations[numElevations] = elevation;
+		slope = (float) ((elevation + receiverHeight) - amsl) / (float) numElevations;
+		occluded = false;
+		j = numElevations - 1;
+		for (i = 1; (i < j) && (!occluded); i++)
+		{
+		    lineElev = (short) ((i * slope) + amsl);
+		    if (lineElev < elevations[i])
+		    {
+			occluded = true;
+		    } /* if lineElev < elevations[i] */
+		} /* for i */
+
+		if ((mask == null) || mask.contains(lx, ly))
+		{
+		    if (occluded)
+			sink.setShadowed(lx, ly);
+		    else
+			sink.setVisible(lx, ly);
+		} /* if mask == null... */
+		numElevations++;
+	    } /* for distance */
+        } /* for degrees */
+    } /* calculate() */
+} /* class RadialViewshedEngine */
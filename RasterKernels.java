@@ -0,0 +1,143 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that holds the loops run over whole rows of a raster, so they can
+ * be replaced by faster ones where the machine has them.  these are plain
+ * loops; getKernels() returns a VectorRasterKernels, which uses the JDK's
+ * incubating Vector API, if it was compiled and the jdk.incubator.vector
+ * module was added when java was started, unless the dem.kernels property
+ * is "scalar".  DEMbatch kernels times the two against each other.
+ */
+public class RasterKernels
+{
+    /**
+     * the name of the kernels that use plain loops.
+     */
+    public static final String NAME = "scalar";
+    private static RasterKernels kernels;
+
+    /**
+     * get the fastest kernels this java has.
+     * @return the kernels.
+     */
+    public static synchronized RasterKernels getKernels()
+    {
+	if (kernels == null)
+	{
+	    if (!NAME.equals(System.getProperty("dem.kernels")))
+	    {
+		try
+		{
+		    kernels = (RasterKernels) Class.forName("VectorRasterKernels").getDeclaredConstructor().newInstance();
+		} /* try */
+		catch (Exception e)
+		{ /* not compiled */
+		}
+		catch (LinkageError e)
+		{ /* the module was not added */
+		}
+	    } /* if !NAME.equals... */
+	    if (kernels == null)
+		kernels = new RasterKernels();
+	} /* if kernels == null */
+	return kernels;
+    } /* getKernels() */
+
+    /**
+     * get the name of the kernels.
+     * @return the name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * widen a range of elevations to take in some more.
+     * @param values the elevations.
+     * @param offset the index of the first.
+     * @param count the number of elevations.
+     * @param range the lowest and highest elevation so far, which are
+     * changed to take in these.
+     */
+    public void range(short values[], int offset, int count, short range[])
+    {
+	short low = range[0];
+	short high = range[1];
+	short value;
+	int end = offset + count;
+	int i;
+	for (i = offset; i < end; i++)
+	{
+	    value = values[i];
+	    if (value < low)
+		low = value;
+	    if (value > high)
+		high = value;
+	} /* for i */
+	range[0] = low;
+	range[1] = high;
+    } /* range() */
+
+    /**
+     * look up the colors of a run of elevations.
+     * @param values the elevations.
+     * @param offset the index of the first.
+     * @param count the number of elevations.
+     * @param minimum the elevation of the first entry of the palette.
+     * @param palette the color of each elevation from minimum up.
+     * @param outside the color of elevations not in the palette.
+     * @param pixels where to put the colors.
+     * @param pixelOffset the index of the first color.
+     * @return the number of elevations not in the palette.
+     */
+    public int mapPalette(short values[],
+			  int offset,
+			  int count,
+			  short minimum,
+			  byte palette[],
+			  byte outside,
+			  byte pixels[],
+			  int pixelOffset)
+    {
+	int outsideCount = 0;
+	int i, index;
+	for (i = 0; i < count; i++)
+	{
+	    index = values[offset + i] - minimum;
+	    if ((index >= 0) && (index < palette.length))
+		pixels[pixelOffset + i] = palette[index];
+	    else
+	    {
+		pixels[pixelOffset + i] = outside;
+		outsideCount++;
+	    } /* if index >= 0... */
+	} /* for i */
+	return outsideCount;
+    } /* mapPalette() */
+} /* class RasterKernels */
@@ -0,0 +1,136 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a StencilKernel that works out how rough the ground is around each point,
+ * as the difference between the highest and lowest elevations in the
+ * square around it, in meters up to 255.  the square can be any size;
+ * the highest and lowest of each of its columns are found once per row,
+ * so a point costs one pass along the row of them, not the whole square.
+ */
+public class Roughness implements StencilKernel
+{
+    /**
+     * the name of the kernel.
+     */
+    public static final String NAME = "roughness";
+    /**
+     * the default radius, for a 5 x 5 square.
+     */
+    public static final int DEFAULT_RADIUS = 2;
+    /**
+     * the largest value; rougher ground is given this.
+     */
+    public static final int MAXIMUM = 255;
+
+    final int radius;
+
+    /**
+     * create a new Roughness kernel.
+     * @param radius how far the square reaches from the point.
+     */
+    public Roughness(int radius)
+    {
+	this.radius = radius;
+    } /* Roughness constructor */
+
+    /**
+     * get the name of the kernel.
+     * @return the name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * get how far the square reaches from its middle.
+     * @return the radius.
+     */
+    public int getRadius()
+    {
+	return radius;
+    } /* getRadius() */
+
+    /**
+     * get the number of different values the kernel gives.
+     * @return the number of values.
+     */
+    public int getValueCount()
+    {
+	return MAXIMUM + 1;
+    } /* getValueCount() */
+
+    /**
+     * work out the values of a row of points.
+     * @param window the rows of elevations around the row, south first.
+     * @param columns the number of points in the row.
+     * @param values the array to put the values in.
+     * @param offset where in values the row's first value goes.
+     */
+    public void apply(short window[][], int columns, byte values[], int offset)
+    {
+	int padded = columns + 2 * radius;
+	/* the lowest and highest of each column of the window */
+	short lows[] = new short[padded];
+	short highs[] = new short[padded];
+	int column, k, low, high;
+	for (column = 0; column < padded; column++)
+	{
+	    low = window[0][column];
+	    high = low;
+	    for (k = 1; k < window.length; k++)
+	    {
+		low = Math.min(low, window[k][column]);
+		high = Math.max(high, window[k][column]);
+	    } /* for k */
+	    lows[column] = (short) low;
+	    highs[column] = (short) high;
+	} /* for column */
+	for (column = 0; column < columns; column++)
+	{
+	    low = lows[column];
+	    high = highs[column];
+	    for (k = 1; k <= 2 * radius; k++)
+	    {
+		low = Math.min(low, lows[column + k]);
+		high = Math.max(high, highs[column + k]);
+	    } /* for k */
+	    values[offset + column] = (byte) Math.min(MAXIMUM, high - low);
+	} /* for column */
+    } /* apply() */
+
+    /**
+     * describe a value for the status bar.
+     * @param value the value.
+     * @return the description.
+     */
+    public String describe(int value)
+    {
+	return "roughness " + ((value == MAXIMUM) ? MAXIMUM + "+" : "" + value) + " m";
+    } /* describe() */
+} /* class Roughness */
@@ -0,0 +1,110 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a StencilKernel that works out the steepness of the ground at each point,
+ * in whole degrees from 0 (flat) to 90, from the 3 x 3 block of elevations
+ * around it (Horn's method).
+ */
+public class Slope implements StencilKernel
+{
+    /**
+     * the name of the kernel.
+     */
+    public static final String NAME = "slope";
+
+    final double xScale;
+    final double yScale;
+
+    /**
+     * create a new Slope kernel.
+     * @param xSpacing the distance between columns in meters.
+     * @param ySpacing the distance between rows in meters.
+     */
+    public Slope(double xSpacing, double ySpacing)
+    {
+	xScale = 1.0 / (8.0 * xSpacing);
+	yScale = 1.0 / (8.0 * ySpacing);
+    } /* Slope constructor */
+
+    /**
+     * get the name of the kernel.
+     * @return the name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * get how far the square reaches from its middle.
+     * @return the radius.
+     */
+    public int getRadius()
+    {
+	return 1;
+    } /* getRadius() */
+
+    /**
+     * get the number of different values the kernel gives.
+     * @return the number of values.
+     */
+    public int getValueCount()
+    {
+	return 91;
+    } /* getValueCount() */
+
+    /**
+     * work out the values of a row of points.
+     * @param window the rows of elevations around the row, south first.
+     * @param columns the number of points in the row.
+     * @param values the array to put the values in.
+     * @param offset where in values the row's first value goes.
+     */
+    public void apply(short window[][], int columns, byte values[], int offset)
+    {
+	int column;
+	double dzdx, dzdy;
+	for (column = 0; column < columns; column++)
+	{
+	    dzdx = Stencil.eastward(window, column) * xScale;
+	    dzdy = Stencil.northward(window, column) * yScale;
+	    values[offset + column] =
+		(byte) Math.round(Math.toDegrees(Math.atan(Math.sqrt(dzdx * dzdx + dzdy * dzdy))));
+	} /* for column */
+    } /* apply() */
+
+    /**
+     * describe a value for the status bar.
+     * @param value the value.
+     * @return the description.
+     */
+    public String describe(int value)
+    {
+	return "slope " + value + " deg";
+    } /* describe() */
+} /* class Slope */
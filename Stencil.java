@@ -0,0 +1,182 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that runs a StencilKernel over every point of a DEM.  the work is
+ * split into bands of rows done on all the processors; each band keeps a
+ * window of the rows its kernel needs, reading the halo rows past each end
+ * of the band itself, and slides it north a row at a time.  points off the
+ * edge of the DEM repeat the nearest edge point.
+ * All the methods are static; this class should never be instantiated.
+ */
+public class Stencil
+{
+    /**
+     * the names of the kernels getKernel() knows.
+     */
+    public static final String NAMES[] = {
+	Slope.NAME, Aspect.NAME, Roughness.NAME, Hillshade.NAME
+    };
+
+    /**
+     * make a kernel by name.
+     * @param name the name of the kernel.
+     * @param xSpacing the distance between columns in meters.
+     * @param ySpacing the distance between rows in meters.
+     * @return the kernel, or null if there is none by that name.
+     */
+    public static StencilKernel getKernel(String name, double xSpacing, double ySpacing)
+    {
+	if (name.equals(Slope.NAME))
+	    return new Slope(xSpacing, ySpacing);
+	if (name.equals(Aspect.NAME))
+	    return new Aspect(xSpacing, ySpacing);
+	if (name.equals(Roughness.NAME))
+	    return new Roughness(Roughness.DEFAULT_RADIUS);
+	if (name.equals(Hillshade.NAME))
+	    return new Hillshade(xSpacing, ySpacing);
+	return null;
+    } /* getKernel() */
+
+    /**
+     * determine if the values of a kernel run over some elevations fit in
+     * one array, as run() needs them to.
+     * @param terrain the elevations.
+     * @return true if they fit.
+     */
+    public static boolean fits(ElevationSource terrain)
+    {
+	return (long) terrain.getColumnCount() * terrain.getRowCount() <= ElevationGrid.MAXIMUM_ARRAY;
+    } /* fits() */
+
+    /**
+     * work out the kernel's value at every point.
+     * @param terrain the elevations.
+     * @param kernel the kernel.
+     * @param statusBar the StatusBar to show progress on, or null.
+     * @return the values, a row at a time from the south, so point column,
+     * row is at [row * columns + column].
+     * @exception IllegalArgumentException if the values do not fit in one
+     * array; check fits() first.
+     */
+    public static byte[] run(final ElevationSource terrain,
+			     final StencilKernel kernel,
+			     StatusBar statusBar)
+    {
+	final int columns = terrain.getColumnCount();
+	final int rows = terrain.getRowCount();
+	final int radius = kernel.getRadius();
+	if (!fits(terrain))
+	{
+	    throw new IllegalArgumentException(columns + " x " + rows + " is too big for a " + kernel.getName() + " product");
+	} /* if !fits(terrain) */
+	final byte values[] = new byte[columns * rows];
+	Bands.run(rows, new BandTask()
+	    {
+		public void run(int firstRow, int lastRow)
+		{
+		    short window[][] = new short[2 * radius + 1][columns + 2 * radius];
+		    short oldest[];
+		    int row, k;
+		    for (k = 0; k < 2 * radius; k++)
+		    {
+			readRow(terrain, firstRow - radius + k, radius, window[k + 1]);
+		    } /* for k */
+		    for (row = firstRow; row < lastRow; row++)
+		    { /* drop the southern row and read the next to the north */
+			oldest = window[0];
+			for (k = 0; k < 2 * radius; k++)
+			{
+			    window[k] = window[k + 1];
+			} /* for k */
+			window[2 * radius] = oldest;
+			readRow(terrain, row + radius, radius, oldest);
+			kernel.apply(window, columns, values, row * columns);
+		    } /* for row */
+		} /* run() */
+	    }, statusBar);
+	return values;
+    } /* run() */
+
+    /**
+     * copy a row of elevations, padded at each end.
+     * @param terrain the elevations.
+     * @param row the row to copy; rows off the DEM copy the nearest edge row.
+     * @param pad the number of copies of each end point.
+     * @param elevations the array to copy it into.
+     */
+    static void readRow(ElevationSource terrain, int row, int pad, short elevations[])
+    {
+	int columns = elevations.length - 2 * pad;
+	row = Math.max(0, Math.min(terrain.getRowCount() - 1, row));
+	int column;
+	if (terrain instanceof DEM)
+	    terrain = ((DEM) terrain).getGrid();
+	if (terrain instanceof ElevationGrid)
+	    ((ElevationGrid) terrain).readRow(row, 0, elevations, pad, columns);
+	else
+	{
+	    for (column = 0; column < columns; column++)
+	    {
+		elevations[pad + column] = terrain.getElevation(column, row);
+	    } /* for column */
+	} /* if !(terrain instanceof ElevationGrid) */
+	for (column = 0; column < pad; column++)
+	{
+	    elevations[column] = elevations[pad];
+	    elevations[pad + columns + column] = elevations[pad + columns - 1];
+	} /* for column */
+    } /* readRow() */
+
+    /**
+     * get the change in elevation from west to east across a point, from
+     * the 3 x 3 square around it, with the middle row counted twice
+     * (Horn's method).  divided by 8 times the column spacing, it is the
+     * slope to the east.
+     * @param window the rows around the point, padded by 1.
+     * @param column the column of the point.
+     * @return the weighted change.
+     */
+    static int eastward(short window[][], int column)
+    {
+	return (window[2][column + 2] + 2 * window[1][column + 2] + window[0][column + 2])
+	    - (window[2][column] + 2 * window[1][column] + window[0][column]);
+    } /* eastward() */
+
+    /**
+     * get the change in elevation from south to north across a point, as
+     * eastward() does from west to east.
+     * @param window the rows around the point, padded by 1.
+     * @param column the column of the point.
+     * @return the weighted change.
+     */
+    static int northward(short window[][], int column)
+    {
+	return (window[2][column] + 2 * window[2][column + 1] + window[2][column + 2])
+	    - (window[0][column] + 2 * window[0][column + 1] + window[0][column + 2]);
+    } /* northward() */
+} /* class Stencil */
@@ -0,0 +1,75 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an interface for a calculation on the square of elevations around each
+ * point of a DEM, run over the whole DEM by Stencil.run().  each point gets
+ * a value that fits in a byte, so the results are half the size of the
+ * DEM.  a kernel is used by several threads at once, so it must not
+ * change once it is made.
+ */
+public interface StencilKernel
+{
+    /**
+     * get the name of the kernel, which is also the name of its results.
+     * @return the name.
+     */
+    public String getName();
+
+    /**
+     * get how far the square reaches from its middle: 1 for 3 x 3, 2 for
+     * 5 x 5, and so on.
+     * @return the radius.
+     */
+    public int getRadius();
+
+    /**
+     * get the number of different values the kernel gives.
+     * @return the values run from 0 to this less one.
+     */
+    public int getValueCount();
+
+    /**
+     * work out the values of a row of points.  the window holds the rows
+     * from getRadius() south of the row to getRadius() north of it, south
+     * first.  each row is padded at both ends with getRadius() copies of
+     * its end point, so column c's elevation is at [getRadius() + c].
+     * rows past the edge of the DEM are copies of the edge row.
+     * @param window the rows of elevations around the row.
+     * @param columns the number of points in the row.
+     * @param values the array to put the values in.
+     * @param offset where in values the row's first value goes.
+     */
+    public void apply(short window[][], int columns, byte values[], int offset);
+
+    /**
+     * describe a value for the status bar.
+     * @param value the value.
+     * @return the description.
+     */
+    public String describe(int value);
+} /* interface StencilKernel */
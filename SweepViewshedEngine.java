@@ -0,0 +1,195 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an engine that visits the cells in square rings of increasing distance
+ * from the transmitter.  each cell's horizon (the steepest terrain slope
+ * seen so far along the line back to the transmitter) is interpolated from
+ * the two cells of the previous ring that the line passes between, so only
+ * two rings of horizons are kept, every cell is decided exactly once, and
+ * the terrain is read in an order that stays close to the last ring.  the
+ * angle and distance increments are not used.
+ */
+public class SweepViewshedEngine implements ViewshedEngine
+{
+    /**
+     * the name of this engine.
+     */
+    public static final String NAME = "sweep";
+
+    /**
+     * get the name this engine is selected by.
+     * @return the engine's name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * calculate the coverage of a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @param sink the receiver of the results.
+     */
+    public void calculate(ElevationSource terrain, ViewshedSite site, ViewshedSink sink)
+    {
+	int columns = terrain.getColumnCount();
+	int rows = terrain.getRowCount();
+	int x = site.x;
+	int y = site.y;
+	short amsl = site.amsl;
+	short receiverHeight = site.receiverHeight;
+	PolygonMask mask = site.mask;
+	int maxRing = Math.max(Math.max(x, columns - 1 - x), Math.max(y, rows - 1 - y));
+	if (mask != null)
+	{
+	    maxRing = Math.min(maxRing, mask.getMaxRing(x, y));
+	} /* if mask != null */
+	int maxDistance = (int) Math.ceil(Math.sqrt(2.0) * maxRing) + 1;
+	int r = site.getEffectiveEarthRadius();
+	short earthCurveDeltaZ[] = new short[maxDistance + 1];
+	int i;
+	for (i = 0; i <= maxDistance; i++)
+	{
+	    earthCurveDeltaZ[i] = GISCalculations.getEarthCurveDrop(i, r);
+	} /* for i */
+
+	float previous[] = new float[8 * maxRing + 8];
+	float current[] = new float[8 * maxRing + 8];
+	float swap[];
+	int k, p, perimeter, dx, dy, column, row;
+	float horizon, groundSlope, distance;
+	short elevation;
+
+	if ((x >= 0) && (x < columns) && (y >= 0) && (y < rows) &&
+	    ((mask == null) || mask.contains(x, y)))
+	{
+	    sink.setVisible(x, y);
+	} /* if x >= 0... */
+	for (k = 1; k <= maxRing; k++)
+	{
+	    sink.progress(k * 100 / maxRing);
+	    perimeter = 8 * k;
+	    for (p = 0; p < perimeter; p++)
+	    {
+		dx = ringX(k, p);
+		dy = ringY(k, p);
+		horizon = (k == 1) ? Float.NEGATIVE_INFINITY : interpolate(previous, k - 1, dx, dy, k);
+		column = x + dx;
+		row = y + dy;
+		if ((column < 0) || (column >= columns) || (row < 0) || (row >= rows))
+		{ /* off the DEM, carry the horizon through */
+		    current[p] = horizon;
+		    continue;
+		} /* if column < 0... */
+		distance = (float) Math.sqrt((double) dx * dx + (double) dy * dy);
+		elevation = (short) (terrain.getElevation(column, row) - earthCurveDeltaZ[(int) distance]);
+		groundSlope = (elevation - amsl) / distance;
+		if ((mask == null) || mask.contains(column, row))
+		{
+		    if ((elevation + receiverHeight - amsl) / distance >= horizon)
+			sink.setVisible(column, row);
+		    else
+			sink.setShadowed(column, row);
+		} /* if mask == null... */
+		current[p] = Math.max(horizon, groundSlope);
+	    } /* for p */
+	    swap = previous;
+	    previous = current;
+	    current = swap;
+	} /* for k */
+    } /* calculate() */
+
+    /**
+     * get the x offset of a position on a ring.  positions run counter
+     * clockwise from the SE corner: up the east side, west along the north
+     * side, down the west side and east along the south side.
+     * @param k the ring number.
+     * @param p the position on the ring, 0 to 8k-1.
+     * @return the x offset from the center of the ring.
+     */
+    static int ringX(int k, int p)
+    {
+	if (p < 2 * k)
+	    return k;
+	if (p < 4 * k)
+	    return 3 * k - p;
+	if (p < 6 * k)
+	    return -k;
+	return p - 7 * k;
+    } /* ringX() */
+
+    /**
+     * get the y offset of a position on a ring.
+     * @param k the ring number.
+     * @param p the position on the ring, 0 to 8k-1.
+     * @return the y offset from the center of the ring.
+     */
+    static int ringY(int k, int p)
+    {
+	if (p < 2 * k)
+	    return p - k;
+	if (p < 4 * k)
+	    return k;
+	if (p < 6 * k)
+	    return 5 * k - p;
+	return -k;
+    } /* ringY() */
+
+    /**
+     * interpolate the horizon where the line from the center to a cell on
+     * ring k crosses ring k-1.
+     * @param ring the horizons of ring k-1.
+     * @param km1 the ring number k-1.
+     * @param dx the x offset of the cell on ring k.
+     * @param dy the y offset of the cell on ring k.
+     * @param k the ring number of the cell.
+     * @return the interpolated horizon.
+     */
+    static float interpolate(float ring[], int km1, int dx, int dy, int k)
+    {
+	float scale = (float) km1 / (float) k;
+	float px = dx * scale;
+	float py = dy * scale;
+	float position;
+	if (Math.abs(dx) >= Math.abs(dy))
+	{ /* crosses the east or west side */
+	    position = (dx > 0) ? (py + km1) : (4 * km1 + (km1 - py));
+	} /* if |dx| >= |dy| */
+	else
+	{ /* crosses the north or south side */
+	    position = (dy > 0) ? (2 * km1 + (km1 - px)) : (6 * km1 + (px + km1));
+	} /* if |dx| >= |dy| */
+	int perimeter = 8 * km1;
+	int p0 = (int) Math.floor(position);
+	float fraction = position - p0;
+	p0 = ((p0 % perimeter) + perimeter) % perimeter;
+	int p1 = (p0 + 1) % perimeter;
+	return ring[p0] + (ring[p1] - ring[p0]) * fraction;
+    } /* interpolate() */
+} /* class SweepViewshedEngine */
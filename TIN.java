@@ -0,0 +1,787 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a triangulated irregular network approximating a grid of elevations.
+ * the TIN is built by greedy insertion: starting from two triangles that
+ * cover the grid, the grid point furthest (vertically) from the surface is
+ * added as a vertex and the triangulation is made Delaunay again by edge
+ * flips, until no grid point is further from the surface than the
+ * tolerance.  every grid point is checked against the triangle it falls in
+ * after every change, so the bound is exact, not estimated; the largest
+ * error actually left is available from getMaximumError().
+ * <p>
+ * vertices are at grid points, x is the column and y is the row.  triangle
+ * t is stored as three vertex numbers, counter clockwise, at 3t to 3t+2 of
+ * the vertex array, and the triangle across the edge opposite each vertex
+ * at the same place in the neighbor array, -1 at the edge of the grid.
+ */
+public class TIN
+{
+    /**
+     * the default vertical error tolerance in meters.
+     */
+    public static final int DEFAULT_TOLERANCE = 5;
+    /* bytes used per vertex and per triangle, for reporting memory use */
+    private static final int VERTEX_BYTES = 10;
+    private static final int TRIANGLE_BYTES = 24;
+    /* a small step along a line, in cells, used to step past vertices */
+    private static final double EPSILON = 1.0e-4;
+
+    ElevationSource terrain;
+    int tolerance;
+    int columns;
+    int rows;
+    int vertexCount = 0;
+    int vx[];
+    int vy[];
+    short vz[];
+    int triangleCount = 0;
+    int triangleVertices[];
+    int neighbors[];
+    float maximumError = 0.0f;
+    int lastTriangle = 0;
+
+    /* used only while building */
+    float errors[];
+    int candidateX[];
+    int candidateY[];
+    int heap[];
+    int heapPosition[];
+    int heapSize;
+    int dirty[];
+    int dirtyCount;
+
+    /**
+     * create a new TIN.  call build() to triangulate it.
+     * @param terrain the elevations to approximate, at least 2 x 2.
+     * @param tolerance the largest vertical error allowed, in meters.
+     */
+    public TIN(ElevationSource terrain, int tolerance)
+    {
+	this.terrain = terrain;
+	this.tolerance = tolerance;
+	columns = terrain.getColumnCount();
+	rows = terrain.getRowCount();
+    } /* TIN constructor */
+
+    /**
+     * get the terrain this TIN approximates.
+     * @return the terrain.
+     */
+    public ElevationSource getTerrain()
+    {
+	return terrain;
+    } /* getTerrain() */
+
+    /**
+     * get the error tolerance the TIN was built to.
+     * @return the tolerance in meters.
+     */
+    public int getTolerance()
+    {
+	return tolerance;
+    } /* getTolerance() */
+
+    /**
+     * get the largest vertical distance between any grid point and the
+     * surface.  this is never more than the tolerance.
+     * @return the maximum error in meters.
+     */
+    public float getMaximumError()
+    {
+	return maximumError;
+    } /* getMaximumError() */
+
+    /**
+     * get the number of vertices.
+     * @return the vertex count.
+     */
+    public int getVertexCount()
+    {
+	return vertexCount;
+    } /* getVertexCount() */
+
+    /**
+     * get the number of triangles.
+     * @return the triangle count.
+     */
+    public int getTriangleCount()
+    {
+	return triangleCount;
+    } /* getTriangleCount() */
+
+    /**
+     * get the memory used by the vertices and triangles.
+     * @return the size in bytes.
+     */
+    public long getMemorySize()
+    {
+	return (long) vertexCount * VERTEX_BYTES + (long) triangleCount * TRIANGLE_BYTES;
+    } /* getMemorySize() */
+
+    /**
+     * triangulate the terrain.
+     * @param statusBar the StatusBar to show progress on, or null.
+     */
+    public void build(StatusBar statusBar)
+    {
+	int capacity = 1024;
+	vx = new int[capacity];
+	vy = new int[capacity];
+	vz = new short[capacity];
+	triangleVertices = new int[3 * 2 * capacity];
+	neighbors = new int[3 * 2 * capacity];
+	errors = new float[2 * capacity];
+	candidateX = new int[2 * capacity];
+	candidateY = new int[2 * capacity];
+	heap = new int[2 * capacity];
+	heapPosition = new int[2 * capacity];
+	dirty = new int[64];
+	vertexCount = 0;
+	triangleCount = 0;
+	heapSize = 0;
+	dirtyCount = 0;
+
+	int x1 = columns - 1;
+	int y1 = rows - 1;
+	addVertex(0, 0);
+	addVertex(x1, 0);
+	addVertex(x1, y1);
+	addVertex(0, y1);
+	int t0 = addTriangle();
+	int t1 = addTriangle();
+	setTriangle(t0, 0, 1, 2, -1, t1, -1);
+	setTriangle(t1, 0, 2, 3, -1, -1, t0);
+	markDirty(t0);
+	markDirty(t1);
+	rescanDirty();
+
+	int t;
+	int pctDone = -1;
+	int newPctDone;
+	while (errors[heap[0]] > tolerance)
+	{
+	    t = heap[0];
+	    insert(candidateX[t], candidateY[t], t);
+	    if (statusBar != null)
+	    { /* the error falls towards the tolerance as the TIN is built */
+		newPctDone = (int) (100.0f * tolerance / errors[heap[0]]);
+		if (newPctDone != pctDone)
+		{
+		    pctDone = newPctDone;
+		    statusBar.updateProgress(pctDone);
+		} /* if newPctDone != pctDone */
+	    } /* if statusBar != null */
+	} /* while */
+	maximumError = errors[heap[0]];
+
+	/* let go of the build state and trim the arrays */
+	errors = null;
+	candidateX = null;
+	candidateY = null;
+	heap = null;
+	heapPosition = null;
+	dirty = null;
+	vx = trim(vx, vertexCount);
+	vy = trim(vy, vertexCount);
+	short z[] = new short[vertexCount];
+	System.arraycopy(vz, 0, z, 0, vertexCount);
+	vz = z;
+	triangleVertices = trim(triangleVertices, 3 * triangleCount);
+	neighbors = trim(neighbors, 3 * triangleCount);
+	if (statusBar != null)
+	{
+	    statusBar.updateProgress(0);
+	} /* if statusBar != null */
+    } /* build() */
+
+    /**
+     * get the elevation of the surface at a point.
+     * @param x the x coordinate, in columns.
+     * @param y the y coordinate, in rows.
+     * @return the elevation of the surface, from the nearest point on the
+     * grid if the point is off it.
+     */
+    public float getElevation(double x, double y)
+    {
+	x = Math.max(0.0, Math.min(columns - 1, x));
+	y = Math.max(0.0, Math.min(rows - 1, y));
+	lastTriangle = locate(x, y, lastTriangle);
+	return interpolate(lastTriangle, x, y);
+    } /* getElevation() */
+
+    /**
+     * get the profile of the surface along a line.  the surface is flat
+     * within each triangle, so the profile is straight between the points
+     * where the line crosses triangle edges, and those points are all that
+     * is returned.  the line is cut off at the edge of the grid.
+     * @param x0 the x coordinate of the start of the line.
+     * @param y0 the y coordinate of the start of the line.
+     * @param x1 the x coordinate of the end of the line.
+     * @param y1 the y coordinate of the end of the line.
+     * @return two arrays of the same length: the distances along the line
+     * in cells, from 0 to the length of the line, and the elevations there.
+     */
+    public float[][] getProfile(double x0, double y0, double x1, double y1)
+    {
+	x0 = Math.max(0.0, Math.min(columns - 1, x0));
+	y0 = Math.max(0.0, Math.min(rows - 1, y0));
+	x1 = Math.max(0.0, Math.min(columns - 1, x1));
+	y1 = Math.max(0.0, Math.min(rows - 1, y1));
+	double dx = x1 - x0;
+	double dy = y1 - y0;
+	double length = Math.sqrt(dx * dx + dy * dy);
+	float distances[] = new float[16];
+	float elevations[] = new float[16];
+	int count = 0;
+	int t = locate(x0, y0, lastTriangle);
+	distances[count] = 0.0f;
+	elevations[count++] = interpolate(t, x0, y0);
+
+	double step = (length > 0.0) ? EPSILON / length : 1.0;
+	double s = 0.0;
+	double exitS, crossing, o0, o1, px, py;
+	int i, a, b;
+	while (s < 1.0)
+	{
+	    /* find the triangle just past s, in case s is on an edge or vertex */
+	    t = locate(x0 + dx * Math.min(1.0, s + step), y0 + dy * Math.min(1.0, s + step), t);
+	    exitS = 1.0;
+	    for (i = 0; i < 3; i++)
+	    {
+		a = triangleVertices[3 * t + (i + 1) % 3];
+		b = triangleVertices[3 * t + (i + 2) % 3];
+		o1 = orientation(vx[a], vy[a], vx[b], vy[b], x1, y1);
+		if (o1 >= 0.0)
+		    continue; /* the end is on the inside of this edge */
+		o0 = orientation(vx[a], vy[a], vx[b], vy[b], x0, y0);
+		crossing = o0 / (o0 - o1);
+		if (crossing < exitS)
+		    exitS = crossing;
+	    } /* for i */
+	    s = Math.min(1.0, Math.max(exitS, s + step));
+	    px = x0 + dx * s;
+	    py = y0 + dy * s;
+	    if (count == distances.length)
+	    {
+		distances = grow(distances);
+		elevations = grow(elevations);
+	    } /* if count == distances.length */
+	    distances[count] = (float) (s * length);
+	    elevations[count++] = interpolate(t, px, py);
+	} /* while s < 1.0 */
+	lastTriangle = t;
+
+	float profile[][] = new float[2][count];
+	System.arraycopy(distances, 0, profile[0], 0, count);
+	System.arraycopy(elevations, 0, profile[1], 0, count);
+	return profile;
+    } /* getProfile() */
+
+    /**
+     * determine if there is a clear line of sight over the surface between
+     * two points.  the earth's curvature is allowed for at every point where
+     * the line crosses a triangle edge.
+     * @param x0 the column of the transmitter.
+     * @param y0 the row of the transmitter.
+     * @param amsl the height of the transmitter antenna above sea level.
+     * @param x1 the column of the receiver.
+     * @param y1 the row of the receiver.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param r the effective radius of the earth in meters.
+     * @return true if the receiver can see the transmitter.
+     */
+    public boolean isVisible(int x0, int y0, short amsl, int x1, int y1, short receiverHeight, int r)
+    {
+	float profile[][] = getProfile(x0, y0, x1, y1);
+	float distances[] = profile[0];
+	float elevations[] = profile[1];
+	int last = distances.length - 1;
+	if (distances[last] == 0.0f)
+	    return true;
+	float receiver = elevations[last] - GISCalculations.getEarthCurveDrop((int) distances[last], r)
+	    + receiverHeight;
+	float slope = (receiver - amsl) / distances[last];
+	int i;
+	for (i = 1; i < last; i++)
+	{
+	    if (elevations[i] - GISCalculations.getEarthCurveDrop((int) distances[i], r)
+		> amsl + slope * distances[i])
+		return false;
+	} /* for i */
+	return true;
+    } /* isVisible() */
+
+    /**
+     * find the triangle containing a point by walking across edges towards
+     * it.  on a Delaunay triangulation the walk always gets there.
+     * @param x the x coordinate of the point.
+     * @param y the y coordinate of the point.
+     * @param start the triangle to start from.
+     * @return the triangle containing the point.
+     */
+    int locate(double x, double y, int start)
+    {
+	int t = start;
+	int steps = 0;
+	int i, a, b, next;
+	while (steps++ <= triangleCount)
+	{
+	    next = -1;
+	    for (i = 0; (i < 3) && (next < 0); i++)
+	    {
+		a = triangleVertices[3 * t + (i + 1) % 3];
+		b = triangleVertices[3 * t + (i + 2) % 3];
+		if ((orientation(vx[a], vy[a], vx[b], vy[b], x, y) < 0.0) &&
+		    (neighbors[3 * t + i] >= 0))
+		    next = neighbors[3 * t + i];
+	    } /* for i */
+	    if (next < 0)
+		return t;
+	    t = next;
+	} /* while steps++ <= triangleCount */
+	return t;
+    } /* locate() */
+
+    /**
+     * interpolate the elevation of the plane of a triangle.
+     * @param t the triangle.
+     * @param x the x coordinate.
+     * @param y the y coordinate.
+     * @return the elevation of the plane at x, y.
+     */
+    float interpolate(int t, double x, double y)
+    {
+	int a = triangleVertices[3 * t];
+	int b = triangleVertices[3 * t + 1];
+	int c = triangleVertices[3 * t + 2];
+	double area = orientation(vx[a], vy[a], vx[b], vy[b], vx[c], vy[c]);
+	double wa = orientation(vx[b], vy[b], vx[c], vy[c], x, y) / area;
+	double wb = orientation(vx[c], vy[c], vx[a], vy[a], x, y) / area;
+	return (float) (vz[c] + wa * (vz[a] - vz[c]) + wb * (vz[b] - vz[c]));
+    } /* interpolate() */
+
+    /**
+     * twice the signed area of a triangle; positive if it is counter clockwise.
+     */
+    static double orientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+	return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    } /* orientation() */
+
+    /**
+     * twice the signed area of a triangle of grid points, exactly.
+     */
+    static long orientation(int ax, int ay, int bx, int by, int cx, int cy)
+    {
+	return (long) (bx - ax) * (cy - ay) - (long) (by - ay) * (cx - ax);
+    } /* orientation() */
+
+    /**
+     * add a grid point to the triangulation.
+     * @param x the column of the point.
+     * @param y the row of the point.
+     * @param t the triangle the point is in.
+     */
+    void insert(int x, int y, int t)
+    {
+	int p = addVertex(x, y);
+	int edge = -1;
+	int i, a, b;
+	for (i = 0; i < 3; i++)
+	{
+	    a = triangleVertices[3 * t + (i + 1) % 3];
+	    b = triangleVertices[3 * t + (i + 2) % 3];
+	    if (orientation(vx[a], vy[a], vx[b], vy[b], x, y) == 0)
+		edge = i;
+	} /* for i */
+	if (edge < 0)
+	    splitTriangle(t, p);
+	else
+	    splitEdge(t, edge, p);
+	rescanDirty();
+    } /* insert() */
+
+    /**
+     * split a triangle into three at a point inside it.
+     * @param t the triangle.
+     * @param p the new vertex.
+     */
+    void splitTriangle(int t, int p)
+    {
+	int a = triangleVertices[3 * t];
+	int b = triangleVertices[3 * t + 1];
+	int c = triangleVertices[3 * t + 2];
+	int na = neighbors[3 * t];
+	int nb = neighbors[3 * t + 1];
+	int nc = neighbors[3 * t + 2];
+	int t1 = addTriangle();
+	int t2 = addTriangle();
+	setTriangle(t, a, b, p, t1, t2, nc);
+	setTriangle(t1, b, c, p, t2, t, na);
+	setTriangle(t2, c, a, p, t, t1, nb);
+	replaceNeighbor(na, t, t1);
+	replaceNeighbor(nb, t, t2);
+	markDirty(t);
+	markDirty(t1);
+	markDirty(t2);
+	legalize(t, 2);
+	legalize(t1, 2);
+	legalize(t2, 2);
+    } /* splitTriangle() */
+
+    /**
+     * split an edge at a point on it, and the triangles on both sides.
+     * @param t the triangle.
+     * @param edge the edge, by the number of the vertex opposite it.
+     * @param p the new vertex.
+     */
+    void splitEdge(int t, int edge, int p)
+    {
+	int v0 = triangleVertices[3 * t + edge];
+	int v1 = triangleVertices[3 * t + (edge + 1) % 3];
+	int v2 = triangleVertices[3 * t + (edge + 2) % 3];
+	int n1 = neighbors[3 * t + (edge + 1) % 3];
+	int n2 = neighbors[3 * t + (edge + 2) % 3];
+	int u = neighbors[3 * t + edge];
+	int tb = addTriangle();
+	int ub = -1;
+	if (u >= 0)
+	{ /* split the triangle on the other side too */
+	    int f = neighborSlot(u, t);
+	    int w0 = triangleVertices[3 * u + f];
+	    int m1 = neighbors[3 * u + (f + 1) % 3];
+	    int m2 = neighbors[3 * u + (f + 2) % 3];
+	    ub = addTriangle();
+	    /* the other side runs v2 to v1 */
+	    setTriangle(u, w0, v2, p, tb, ub, m2);
+	    setTriangle(ub, w0, p, v1, t, m1, u);
+	    replaceNeighbor(m1, u, ub);
+	    markDirty(u);
+	    markDirty(ub);
+	} /* if u >= 0 */
+	setTriangle(t, v0, v1, p, ub, tb, n2);
+	setTriangle(tb, v0, p, v2, u, n1, t);
+	replaceNeighbor(n1, t, tb);
+	markDirty(t);
+	markDirty(tb);
+	legalize(t, 2);
+	legalize(tb, 1);
+	if (u >= 0)
+	{
+	    legalize(u, 2);
+	    legalize(ub, 1);
+	} /* if u >= 0 */
+    } /* splitEdge() */
+
+    /**
+     * flip the edge opposite a new vertex if the vertex across it is inside
+     * the triangle's circumcircle, and carry on with the edges that uncovers.
+     * @param t the triangle.
+     * @param slot the position of the new vertex in the triangle.
+     */
+    void legalize(int t, int slot)
+    {
+	int n = neighbors[3 * t + slot];
+	if (n < 0)
+	    return;
+	int p = triangleVertices[3 * t + slot];
+	int a = triangleVertices[3 * t + (slot + 1) % 3];
+	int b = triangleVertices[3 * t + (slot + 2) % 3];
+	int f = neighborSlot(n, t);
+	int q = triangleVertices[3 * n + f];
+	if (!inCircle(p, a, b, q))
+	    return;
+	/* only flip a convex quadrilateral, in case inCircle was rounded */
+	if ((orientation(vx[p], vy[p], vx[a], vy[a], vx[q], vy[q]) <= 0) ||
+	    (orientation(vx[p], vy[p], vx[q], vy[q], vx[b], vy[b]) <= 0))
+	    return;
+	int ta = neighbors[3 * t + (slot + 1) % 3];
+	int tb = neighbors[3 * t + (slot + 2) % 3];
+	int nqa = neighbors[3 * n + (f + 1) % 3];
+	int nqb = neighbors[3 * n + (f + 2) % 3];
+	setTriangle(t, p, a, q, nqa, n, tb);
+	setTriangle(n, p, q, b, nqb, ta, t);
+	replaceNeighbor(nqa, n, t);
+	replaceNeighbor(ta, t, n);
+	markDirty(t);
+	markDirty(n);
+	legalize(t, 0);
+	legalize(n, 0);
+    } /* legalize() */
+
+    /**
+     * determine if d is inside the circumcircle of the counter clockwise
+     * triangle a, b, c.
+     */
+    boolean inCircle(int a, int b, int c, int d)
+    {
+	double adx = vx[a] - vx[d];
+	double ady = vy[a] - vy[d];
+	double bdx = vx[b] - vx[d];
+	double bdy = vy[b] - vy[d];
+	double cdx = vx[c] - vx[d];
+	double cdy = vy[c] - vy[d];
+	double det = (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+	    - (bdx * bdx + bdy * bdy) * (adx * cdy - cdx * ady)
+	    + (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+	return det > 0.5;
+    } /* inCircle() */
+
+    /**
+     * find the largest error in each changed triangle and requeue it.
+     */
+    void rescanDirty()
+    {
+	int i;
+	for (i = 0; i < dirtyCount; i++)
+	{
+	    scan(dirty[i]);
+	    heapUpdate(dirty[i]);
+	} /* for i */
+	dirtyCount = 0;
+    } /* rescanDirty() */
+
+    /**
+     * find the grid point in a triangle furthest from its plane.
+     * @param t the triangle.
+     */
+    void scan(int t)
+    {
+	int a = triangleVertices[3 * t];
+	int b = triangleVertices[3 * t + 1];
+	int c = triangleVertices[3 * t + 2];
+	int ax = vx[a], ay = vy[a];
+	int bx = vx[b], by = vy[b];
+	int cx = vx[c], cy = vy[c];
+	int minX = Math.min(ax, Math.min(bx, cx));
+	int maxX = Math.max(ax, Math.max(bx, cx));
+	int minY = Math.min(ay, Math.min(by, cy));
+	int maxY = Math.max(ay, Math.max(by, cy));
+	double area = orientation(ax, ay, bx, by, cx, cy);
+	/* the plane is z = za + dzdx * (x - ax) + dzdy * (y - ay) */
+	double dzdx = ((vz[b] - vz[a]) * (double) (cy - ay) - (vz[c] - vz[a]) * (double) (by - ay)) / area;
+	double dzdy = ((vz[c] - vz[a]) * (double) (bx - ax) - (vz[b] - vz[a]) * (double) (cx - ax)) / area;
+	float worst = 0.0f;
+	int worstX = ax;
+	int worstY = ay;
+	int x, y;
+	long w0, w1, w2;
+	float error;
+	double z;
+	for (y = minY; y <= maxY; y++)
+	{
+	    w0 = orientation(bx, by, cx, cy, minX, y);
+	    w1 = orientation(cx, cy, ax, ay, minX, y);
+	    w2 = orientation(ax, ay, bx, by, minX, y);
+	    for (x = minX; x <= maxX; x++)
+	    {
+		if ((w0 >= 0) && (w1 >= 0) && (w2 >= 0))
+		{
+		    z = vz[a] + dzdx * (x - ax) + dzdy * (y - ay);
+		    error = (float) Math.abs(terrain.getElevation(x, y) - z);
+		    if (error > worst)
+		    {
+			worst = error;
+			worstX = x;
+			worstY = y;
+		    } /* if error > worst */
+		} /* if w0 >= 0... */
+		/* step the edge functions one column east */
+		w0 += by - cy;
+		w1 += cy - ay;
+		w2 += ay - by;
+	    } /* for x */
+	} /* for y */
+	errors[t] = worst;
+	candidateX[t] = worstX;
+	candidateY[t] = worstY;
+    } /* scan() */
+
+    /**
+     * add a vertex at a grid point.
+     * @param x the column of the vertex.
+     * @param y the row of the vertex.
+     * @return the vertex number.
+     */
+    int addVertex(int x, int y)
+    {
+	if (vertexCount == vx.length)
+	{
+	    vx = grow(vx);
+	    vy = grow(vy);
+	    short z[] = new short[vz.length * 2];
+	    System.arraycopy(vz, 0, z, 0, vz.length);
+	    vz = z;
+	} /* if vertexCount == vx.length */
+	vx[vertexCount] = x;
+	vy[vertexCount] = y;
+	vz[vertexCount] = terrain.getElevation(x, y);
+	return vertexCount++;
+    } /* addVertex() */
+
+    /**
+     * make room for another triangle.
+     * @return the triangle number.
+     */
+    int addTriangle()
+    {
+	if (triangleCount == errors.length)
+	{
+	    triangleVertices = grow(triangleVertices);
+	    neighbors = grow(neighbors);
+	    errors = grow(errors);
+	    candidateX = grow(candidateX);
+	    candidateY = grow(candidateY);
+	    heap = grow(heap);
+	    heapPosition = grow(heapPosition);
+	} /* if triangleCount == errors.length */
+	heapPosition[triangleCount] = -1;
+	return triangleCount++;
+    } /* addTriangle() */
+
+    /**
+     * set the vertices and neighbors of a triangle.
+     */
+    void setTriangle(int t, int a, int b, int c, int na, int nb, int nc)
+    {
+	triangleVertices[3 * t] = a;
+	triangleVertices[3 * t + 1] = b;
+	triangleVertices[3 * t + 2] = c;
+	neighbors[3 * t] = na;
+	neighbors[3 * t + 1] = nb;
+	neighbors[3 * t + 2] = nc;
+    } /* setTriangle() */
+
+    /**
+     * point a triangle's neighbor at a different triangle.
+     * @param t the triangle to change, or -1 to do nothing.
+     * @param from the old neighbor.
+     * @param to the new neighbor.
+     */
+    void replaceNeighbor(int t, int from, int to)
+    {
+	if (t >= 0)
+	    neighbors[3 * t + neighborSlot(t, from)] = to;
+    } /* replaceNeighbor() */
+
+    /**
+     * find which edge of a triangle is shared with a neighbor.
+     * @param t the triangle.
+     * @param neighbor the neighbor.
+     * @return the number of the vertex opposite the shared edge.
+     */
+    int neighborSlot(int t, int neighbor)
+    {
+	if (neighbors[3 * t] == neighbor)
+	    return 0;
+	if (neighbors[3 * t + 1] == neighbor)
+	    return 1;
+	return 2;
+    } /* neighborSlot() */
+
+    /**
+     * remember that a triangle has changed and must be rescanned.
+     */
+    void markDirty(int t)
+    {
+	int i;
+	for (i = 0; i < dirtyCount; i++)
+	{
+	    if (dirty[i] == t)
+		return;
+	} /* for i */
+	if (dirtyCount == dirty.length)
+	    dirty = grow(dirty);
+	dirty[dirtyCount++] = t;
+    } /* markDirty() */
+
+    /**
+     * put a triangle in the right place in the heap of worst errors,
+     * adding it if it is not there yet.
+     */
+    void heapUpdate(int t)
+    {
+	int i = heapPosition[t];
+	if (i < 0)
+	{
+	    i = heapSize++;
+	    heap[i] = t;
+	    heapPosition[t] = i;
+	} /* if i < 0 */
+	int parent, child;
+	while ((i > 0) && (errors[heap[parent = (i - 1) / 2]] < errors[t]))
+	{ /* move up */
+	    heap[i] = heap[parent];
+	    heapPosition[heap[i]] = i;
+	    i = parent;
+	} /* while */
+	while ((child = 2 * i + 1) < heapSize)
+	{ /* move down */
+	    if ((child + 1 < heapSize) && (errors[heap[child + 1]] > errors[heap[child]]))
+		child++;
+	    if (errors[heap[child]] <= errors[t])
+		break;
+	    heap[i] = heap[child];
+	    heapPosition[heap[i]] = i;
+	    i = child;
+	} /* while */
+	heap[i] = t;
+	heapPosition[t] = i;
+    } /* heapUpdate() */
+
+    /**
+     * double the size of an array.
+     */
+    static int[] grow(int array[])
+    {
+	int bigger[] = new int[array.length * 2];
+	System.arraycopy(array, 0, bigger, 0, array.length);
+	return bigger;
+    } /* grow() */
+
+    /**
+     * double the size of an array.
+     */
+    static float[] grow(float array[])
+    {
+	float bigger[] = new float[array.length * 2];
+	System.arraycopy(array, 0, bigger, 0, array.length);
+	return bigger;
+    } /* grow() */
+
+    /**
+     * cut an array down to the part in use.
+     */
+    static int[] trim(int array[], int length)
+    {
+	int trimmed[] = new int[length];
+	System.arraycopy(array, 0, trimmed, 0, length);
+	return trimmed;
+    } /* trim() */
+} /* class TIN */
@@ -0,0 +1,186 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an engine that casts rays like the radial engine, but over a TIN built
+ * from the terrain instead of the grid.  each ray is walked across the
+ * triangles once; the surface is straight between triangle edges, so the
+ * horizon only needs checking at the edge crossings and the samples, and a
+ * long ray over smooth terrain crosses far fewer edges than cells.  the
+ * TIN is kept for the next calculation on the same terrain.
+ */
+public class TINViewshedEngine implements ViewshedEngine
+{
+    /**
+     * the name of this engine.
+     */
+    public static final String NAME = "tin";
+    int tolerance;
+    TIN tin = null;
+
+    /**
+     * create a new TINViewshedEngine with the default tolerance.
+     */
+    public TINViewshedEngine()
+    {
+	this(TIN.DEFAULT_TOLERANCE);
+    } /* TINViewshedEngine constructor */
+
+    /**
+     * create a new TINViewshedEngine.
+     * @param tolerance the largest vertical error allowed in the TIN, in meters.
+     */
+    public TINViewshedEngine(int tolerance)
+    {
+	this.tolerance = tolerance;
+    } /* TINViewshedEngine constructor */
+
+    /**
+     * get the name this engine is selected by.
+     * @return the engine's name.
+     */
+    public String getName()
+    {
+	return NAME;
+    } /* getName() */
+
+    /**
+     * get the TIN used by the last calculation.
+     * @return the TIN, or null if nothing has been calculated yet.
+     */
+    public TIN getTIN()
+    {
+	return tin;
+    } /* getTIN() */
+
+    /**
+     * get the TIN for some terrain, building it if it is not the last one.
+     * @param terrain the terrain.
+     * @return the TIN.
+     */
+    public TIN getTIN(ElevationSource terrain)
+    {
+	if ((tin == null) || (tin.getTerrain() != terrain))
+	{
+	    tin = new TIN(terrain, tolerance);
+	    tin.build(null);
+	} /* if tin == null... */
+	return tin;
+    } /* getTIN() */
+
+    /**
+     * calculate the coverage of a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @param sink the receiver of the results.
+     */
+    public void calculate(ElevationSource terrain, ViewshedSite site, ViewshedSink sink)
+    {
+	int width = terrain.getColumnCount();
+	int height = terrain.getRowCount();
+	int x = site.x;
+	int y = site.y;
+	short amsl = site.amsl;
+	short receiverHeight = site.receiverHeight;
+	float degreeIncrement = site.degreeIncrement;
+	int distanceIncrement = site.distanceIncrement;
+	PolygonMask mask = site.mask;
+	sink.progress(0);
+	TIN surface = getTIN(terrain);
+	int maxDistance = (int) Math.sqrt((double) width * width + (double) height * height);
+	int r = site.getEffectiveEarthRadius();
+	int rayCount = site.getRayCount();
+	boolean maskRays[] = null;
+	if (mask != null)
+	{ /* only cast rays that enter the area, and only as far as it goes */
+	    maskRays = mask.getRays(x, y, degreeIncrement, rayCount);
+	    maxDistance = Math.min(maxDistance, mask.getMaxDistance(x, y) + distanceIncrement);
+	} /* if mask != null */
+	short earthCurveDeltaZ[] = new short[maxDistance + 1];
+	int i;
+	for (i = 0; i <= maxDistance; i++)
+	{
+	    earthCurveDeltaZ[i] = GISCalculations.getEarthCurveDrop(i, r);
+	} /* for i */
+
+	float degrees;
+	double angleRadians, sin, cos, end;
+	float profile[][];
+	float distances[];
+	float elevations[];
+	float horizon, elevation, fraction;
+	int distance, k, lx, ly;
+	for (degrees = (float) 0.0; degrees < 360.0; degrees += degreeIncrement)
+	{
+	    if ((maskRays != null) &&
+		!maskRays[Math.round(degrees / degreeIncrement) % rayCount])
+		continue;
+	    sink.progress((int) (degrees / 360.0 * 100));
+	    angleRadians = GISCalculations.degreesToRadians(degrees);
+	    sin = Math.sin(angleRadians);
+	    cos = Math.cos(angleRadians);
+	    end = maxDistance;
+	    if (sin > 0.0)
+		end = Math.min(end, (width - 1 - x) / sin);
+	    else if (sin < 0.0)
+		end = Math.min(end, -x / sin);
+	    if (cos > 0.0)
+		end = Math.min(end, (height - 1 - y) / cos);
+	    else if (cos < 0.0)
+		end = Math.min(end, -y / cos);
+	    profile = surface.getProfile(x, y, x + sin * end, y + cos * end);
+	    distances = profile[0];
+	    elevations = profile[1];
+	    horizon = Float.NEGATIVE_INFINITY;
+	    k = 1;
+	    for (distance = distanceIncrement; distance <= end; distance += distanceIncrement)
+	    {
+		/* take in the edge crossings before this sample */
+		while ((k < distances.length - 1) && (distances[k] < distance))
+		{
+		    horizon = Math.max(horizon,
+				       (elevations[k] - earthCurveDeltaZ[(int) distances[k]] - amsl) / distances[k]);
+		    k++;
+		} /* while */
+		fraction = (distances[k] > distances[k - 1])
+		    ? (distance - distances[k - 1]) / (distances[k] - distances[k - 1]) : 0.0f;
+		elevation = elevations[k - 1] + (elevations[k] - elevations[k - 1]) * fraction
+		    - earthCurveDeltaZ[distance];
+		lx = x + (int) (sin * distance);
+		ly = y + (int) (cos * distance);
+		if ((mask == null) || mask.contains(lx, ly))
+		{
+		    if ((elevation + receiverHeight - amsl) / distance >= horizon)
+			sink.setVisible(lx, ly);
+		    else
+			sink.setShadowed(lx, ly);
+		} /* if mask == null... */
+		horizon = Math.max(horizon, (elevation - amsl) / distance);
+	    } /* for distance */
+	} /* for degrees */
+    } /* calculate() */
+} /* class TINViewshedEngine */
@@ -0,0 +1,515 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * a class that represents a raster stored on disk as fixed-size square
+ * tiles, uncompressed, so that any tile can be read or written without
+ * touching the rest of the file.  only a bounded number of tiles are held
+ * in memory at once, in a least-recently-used cache; dirty tiles are
+ * written back when they are evicted.  cells are 1 byte (coverage results)
+ * or 2 bytes (elevations).  tiles are numbered row-major from the SW corner,
+ * and cells within a tile are stored row-major from the tile's SW corner.
+ */
+public class TileFile
+{
+    /**
+     * the default tile edge length, in cells.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /**
+     * cell size of a tile file of elevations.
+     */
+    public static final int ELEVATION_CELLS = 2;
+    /**
+     * cell size of a tile file of coverage results.
+     */
+    public static final int RESULT_CELLS = 1;
+    private static final int MAGIC = 0x44454d54; /* "DEMT" */
+    static final int HEADER_SIZE = 64;
+    RandomAccessFile file;
+    String fileName;
+    boolean writable;
+    int columns;
+    int rows;
+    int tileSize;
+    int cellSize;
+    int tilesAcross;
+    int tilesDown;
+    int swLatitude;
+    int swLongitude;
+    byte xResolution;
+    byte yResolution;
+    int cacheTiles;
+    LinkedHashMap<Integer, Tile> cache;
+
+    /**
+     * a tile resident in the cache.
+     */
+    static class Tile
+    {
+	int index;
+	byte data[];
+	boolean dirty;
+    } /* class Tile */
+
+    /**
+     * create a TileFile object.  use create() or open() to get one.
+     */
+    private TileFile(String fileName, boolean writable)
+    {
+	this.fileName = fileName;
+	this.writable = writable;
+	cache = new LinkedHashMap<Integer, Tile>(16, 0.75f, true);
+    } /* TileFile constructor */
+
+    /**
+     * create a new, empty tile file.  every cell is initially zero.
+     * @param fileName the name of the file to create.
+     * @param columns the number of columns in the raster.
+     * @param rows the number of rows in the raster.
+     * @param tileSize the tile edge length in cells.
+     * @param cellSize the number of bytes per cell, ELEVATION_CELLS or RESULT_CELLS.
+     * @param header a DEM supplying the SW corner and resolution, or null.
+     * @return the new TileFile, open for writing.
+     * @exception IOException if the file cannot be created.
+     */
+    public static TileFile create(String fileName,
+				  int columns,
+				  int rows,
+				  int tileSize,
+				  int cellSize,
+				  DEM header) throws IOException
+    {
+	TileFile tf = new TileFile(fileName, true);
+	tf.columns = columns;
+	tf.rows = rows;
+	tf.tileSize = tileSize;
+	tf.cellSize = cellSize;
+	if (header != null)
+	{
+	    GeoCoordinate swCorner = header.getCorner(DEM.SW_CORNER);
+	    tf.swLatitude = swCorner.getLatitude();
+	    tf.swLongitude = swCorner.getLongitude();
+	    tf.xResolution = header.getXResolution();
+	    tf.yResolution = header.getYResolution();
+	} /* if header != null */
+	tf.computeGeometry();
+	tf.file = new RandomAccessFile(fileName, "rw");
+	tf.file.setLength(0);
+	tf.writeHeader();
+	tf.file.setLength(tf.tileOffset(tf.tilesAcross * tf.tilesDown));
+	return tf;
+    } /* create() */
+
+    /**
+     * create a new, empty tile file with the same size, tiling and location
+     * as another.
+     * @param fileName the name of the file to create.
+     * @param model the tile file to copy the geometry of.
+     * @param cellSize the number of bytes per cell, ELEVATION_CELLS or RESULT_CELLS.
+     * @return the new TileFile, open for writing.
+     * @exception IOException if the file cannot be created.
+     */
+    public static TileFile create(String fileName,
+				  TileFile model,
+				  int cellSize) throws IOException
+    {
+	TileFile tf = create(fileName, model.columns, model.rows, model.tileSize, cellSize, null);
+	tf.swLatitude = model.swLatitude;
+	tf.swLongitude = model.swLongitude;
+	tf.xResolution = model.xResolution;
+	tf.yResolution = model.yResolution;
+	tf.writeHeader();
+	return tf;
+    } /* create() */
+
+    /**
+     * write the header at the start of the file.
+     */
+    private void writeHeader() throws IOException
+    {
+	file.seek(0);
+	file.writeInt(MAGIC);
+	file.writeInt(columns);
+	file.writeInt(rows);
+	file.writeInt(tileSize);
+	file.writeInt(cellSize);
+	file.writeInt(swLatitude);
+	file.writeInt(swLongitude);
+	file.writeByte(xResolution);
+	file.writeByte(yResolution);
+    } /* writeHeader() */
+
+    /**
+     * open an existing tile file.
+     * @param fileName the name of the file to open.
+     * @param writable true to allow cells to be changed.
+     * @return the TileFile.
+     * @exception IOException if the file cannot be opened or is not a tile file.
+     */
+    public static TileFile open(String fileName, boolean writable) throws IOException
+    {
+	TileFile tf = new TileFile(fileName, writable);
+	tf.file = new RandomAccessFile(fileName, writable ? "rw" : "r");
+	if (tf.file.readInt() != MAGIC)
+	{
+	    tf.file.close();
+	    throw new IOException(fileName + " is not a tile file");
+	} /* if readInt() != MAGIC */
+	tf.columns = tf.file.readInt();
+	tf.rows = tf.file.readInt();
+	tf.tileSize = tf.file.readInt();
+	tf.cellSize = tf.file.readInt();
+	tf.swLatitude = tf.file.readInt();
+	tf.swLongitude = tf.file.readInt();
+	tf.xResolution = tf.file.readByte();
+	tf.yResolution = tf.file.readByte();
+	tf.computeGeometry();
+	return tf;
+    } /* open() */
+
+    /**
+     * convert a binary DEM file into a tile file of elevations.  the DEM is
+     * streamed one strip of tileSize columns at a time, so only that strip is
+     * ever in memory, no matter how big the DEM is.  a mapped DEM file is
+     * read through its mapping instead.
+     * @param demFileName the binary DEM file to read.
+     * @param tileFileName the tile file to create.
+     * @param tileSize the tile edge length in cells.
+     * @param statusBar the StatusBar to show progress on, or null.
+     * @return the new TileFile, open for reading.
+     * @exception IOException if either file cannot be processed.
+     */
+    public static TileFile fromDEM(String demFileName,
+				   String tileFileName,
+				   int tileSize,
+				   StatusBar statusBar) throws IOException
+    {
+	DEM header = new DEM(demFileName, null);
+	DataInputStream in = null;
+	ElevationGrid mapped = null;
+	if (header.isMapped())
+	{
+	    if (!header.map())
+		throw new IOException("cannot map " + demFileName);
+	    mapped = header.getGrid();
+	} /* if isMapped() */
+	else
+	{
+	    in = new DataInputStream(new InflaterInputStream(new FileInputStream(demFileName)));
+	    header.readHeader(in);
+	} /* if isMapped() */
+	int columns = header.getColumns();
+	int rows = header.getRows();
+	TileFile tf = create(tileFileName, columns, rows, tileSize, ELEVATION_CELLS, header);
+	tf.cacheTiles = 1;
+	short strip[][] = new short[tileSize][rows];
+	int firstColumn, stripColumns, i, j, tx, ty;
+	for (firstColumn = 0; firstColumn < columns; firstColumn += tileSize)
+	{
+	    if (statusBar != null)
+	    {
+		statusBar.updateProgress(firstColumn * 100 / columns);
+	    } /* if statusBar != null */
+	    stripColumns = Math.min(tileSize, columns - firstColumn);
+	    for (i = 0; i < stripColumns; i++)
+	    {
+		for (j = 0; j < rows; j++)
+		{
+		    strip[i][j] = (mapped == null) ? in.readShort() : mapped.getElevation(firstColumn + i, j);
+		} /* for j */
+	    } /* for i */
+	    tx = firstColumn / tileSize;
+	    for (ty = 0; ty < tf.tilesDown; ty++)
+	    {
+		Tile tile = tf.getTile(tx, ty);
+		int r0 = ty * tileSize;
+		int rowsThisTile = Math.min(tileSize, rows - r0);
+		for (j = 0; j < rowsThisTile; j++)
+		{
+		    int offset = j * tileSize * ELEVATION_CELLS;
+		    for (i = 0; i < stripColumns; i++)
+		    {
+			short elevation = strip[i][r0 + j];
+			tile.data[offset++] = (byte) (elevation >> 8);
+			tile.data[offset++] = (byte) elevation;
+		    } /* for i */
+		} /* for j */
+		tile.dirty = true;
+	    } /* for ty */
+	} /* for firstColumn */
+	if (in != null)
+	    in.close();
+	tf.close();
+	if (statusBar != null)
+	{
+	    statusBar.updateProgress(0);
+	} /* if statusBar != null */
+	return open(tileFileName, false);
+    } /* fromDEM() */
+
+    /**
+     * work out the tile grid and a cache size that holds a ring of tiles
+     * around the whole raster, enough for a sweep outward from any point.
+     */
+    private void computeGeometry()
+    {
+	tilesAcross = (columns + tileSize - 1) / tileSize;
+	tilesDown = (rows + tileSize - 1) / tileSize;
+	cacheTiles = 2 * (tilesAcross + tilesDown) + 8;
+    } /* computeGeometry() */
+
+    /**
+     * get the file offset of a tile.
+     */
+    long tileOffset(int index)
+    {
+	return HEADER_SIZE + (long) index * tileSize * tileSize * cellSize;
+    } /* tileOffset() */
+
+    /**
+     * set the maximum number of tiles held in memory.
+     * @param cacheTiles the number of tiles to cache.
+     * @exception IOException if evicted tiles cannot be written back.
+     */
+    public void setCacheTiles(int cacheTiles) throws IOException
+    {
+	this.cacheTiles = Math.max(1, cacheTiles);
+	trimCache();
+    } /* setCacheTiles() */
+
+    /**
+     * get the maximum number of tiles held in memory.
+     * @return the number of tiles cached.
+     */
+    public int getCacheTiles()
+    {
+	return cacheTiles;
+    } /* getCacheTiles() */
+
+    /**
+     * get a tile, from the cache if possible, otherwise from the disk.
+     */
+    private Tile getTile(int tx, int ty) throws IOException
+    {
+	int index = ty * tilesAcross + tx;
+	Integer key = Integer.valueOf(index);
+	Tile tile = cache.get(key);
+	if (tile == null)
+	{
+	    tile = new Tile();
+	    tile.index = index;
+	    tile.data = new byte[tileSize * tileSize * cellSize];
+	    file.seek(tileOffset(index));
+	    file.readFully(tile.data);
+	    cache.put(key, tile);
+	    trimCache();
+	} /* if tile == null */
+	return tile;
+    } /* getTile() */
+
+    /**
+     * evict least recently used tiles until the cache is within its limit.
+     */
+    private void trimCache() throws IOException
+    {
+	Iterator<Tile> it = cache.values().iterator();
+	while ((cache.size() > cacheTiles) && it.hasNext())
+	{
+	    writeTile(it.next());
+	    it.remove();
+	} /* while */
+    } /* trimCache() */
+
+    /**
+     * write a tile back to the disk if it has been changed.
+     */
+    private void writeTile(Tile tile) throws IOException
+    {
+	if (tile.dirty)
+	{
+	    file.seek(tileOffset(tile.index));
+	    file.write(tile.data);
+	    tile.dirty = false;
+	} /* if tile.dirty */
+    } /* writeTile() */
+
+    /**
+     * get the offset of a cell within its tile's data.
+     */
+    private int cellOffset(int column, int row)
+    {
+	return ((row % tileSize) * tileSize + (column % tileSize)) * cellSize;
+    } /* cellOffset() */
+
+    /**
+     * get the elevation of a cell in a tile file of elevations.
+     * @param column the column number of the cell.
+     * @param row the row number of the cell.
+     * @return the elevation.
+     * @exception IOException if the tile cannot be read.
+     */
+    public short getElevation(int column, int row) throws IOException
+    {
+	Tile tile = getTile(column / tileSize, row / tileSize);
+	int offset = cellOffset(column, row);
+	return (short) ((tile.data[offset] << 8) | (tile.data[offset + 1] & 0xff));
+    } /* getElevation() */
+
+    /**
+     * get the value of a cell in a tile file of results.
+     * @param column the column number of the cell.
+     * @param row the row number of the cell.
+     * @return the value.
+     * @exception IOException if the tile cannot be read.
+     */
+    public byte getByte(int column, int row) throws IOException
+    {
+	Tile tile = getTile(column / tileSize, row / tileSize);
+	return tile.data[cellOffset(column, row)];
+    } /* getByte() */
+
+    /**
+     * set the value of a cell in a tile file of results.
+     * @param column the column number of the cell.
+     * @param row the row number of the cell.
+     * @param value the new value.
+     * @exception IOException if the tile cannot be read.
+     */
+    public void setByte(int column, int row, byte value) throws IOException
+    {
+	if (!writable)
+	    throw new IOException(fileName + " is read-only");
+	Tile tile = getTile(column / tileSize, row / tileSize);
+	tile.data[cellOffset(column, row)] = value;
+	tile.dirty = true;
+    } /* setByte() */
+
+    /**
+     * write all changed tiles back to the disk.
+     * @exception IOException if a tile cannot be written.
+     */
+    public void flush() throws IOException
+    {
+	Iterator<Tile> it = cache.values().iterator();
+	while (it.hasNext())
+	{
+	    writeTile(it.next());
+	} /* while */
+    } /* flush() */
+
+    /**
+     * write all changed tiles back and close the file.
+     * @exception IOException if a tile cannot be written.
+     */
+    public void close() throws IOException
+    {
+	flush();
+	cache.clear();
+	file.close();
+    } /* close() */
+
+    /**
+     * get the number of columns in the raster.
+     * @return the number of columns.
+     */
+    public int getColumns()
+    {
+	return columns;
+    } /* getColumns() */
+
+    /**
+     * get the number of rows in the raster.
+     * @return the number of rows.
+     */
+    public int getRows()
+    {
+	return rows;
+    } /* getRows() */
+
+    /**
+     * get the number of bytes in each cell.
+     * @return ELEVATION_CELLS or RESULT_CELLS.
+     */
+    public int getCellSize()
+    {
+	return cellSize;
+    } /* getCellSize() */
+
+    /**
+     * get the tile edge length.
+     * @return the tile edge length, in cells.
+     */
+    public int getTileSize()
+    {
+	return tileSize;
+    } /* getTileSize() */
+
+    /**
+     * get the latitude of the SW corner.
+     * @return the latitude of the SW corner in arc-seconds.
+     */
+    public int getSWLatitude()
+    {
+	return swLatitude;
+    } /* getSWLatitude() */
+
+    /**
+     * get the longitude of the SW corner.
+     * @return the longitude of the SW corner in arc-seconds.
+     */
+    public int getSWLongitude()
+    {
+	return swLongitude;
+    } /* getSWLongitude() */
+
+    /**
+     * return the X resolution of the raster in arc-seconds.
+     * @return the x-resolution of the raster in arc-seconds.
+     */
+    public byte getXResolution()
+    {
+	return xResolution;
+    } /* getXResolution() */
+
+    /**
+     * return the Y resolution of the raster in arc-seconds.
+     * @return the y-resolution of the raster in arc-seconds.
+     */
+    public byte getYResolution()
+    {
+	return yResolution;
+    } /* getYResolution() */
+} /* class TileFile */
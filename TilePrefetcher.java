@@ -0,0 +1,156 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import java.awt.image.BufferedImage;
+
+/**
+ * a class that renders map tiles before they are needed, on background
+ * threads running below normal priority so they give way to the tiles
+ * being painted.  each request replaces the one before, and cancel()
+ * throws away everything not yet done; a tile finished after its request
+ * went stale is not cached.
+ */
+public class TilePrefetcher implements Runnable
+{
+    Map map;
+    MapTileCache tiles;
+    int levels[] = new int[0];
+    int columns[] = new int[0];
+    int rows[] = new int[0];
+    int count = 0;
+    int next = 0;
+    int generation = 0;
+    Thread threads[] = null;
+
+    /**
+     * create a new TilePrefetcher.
+     * @param map the map to render tiles for.
+     * @param tiles the cache to put rendered tiles in.
+     */
+    public TilePrefetcher(Map map, MapTileCache tiles)
+    {
+	this.map = map;
+	this.tiles = tiles;
+    } /* TilePrefetcher constructor */
+
+    /**
+     * ask for tiles to be rendered, nearest first, in place of any tiles
+     * asked for before that have not been started.
+     * @param level the zoom level of the tiles.
+     * @param newColumns the columns of the tiles.
+     * @param newRows the rows of the tiles.
+     * @param newCount the number of tiles.
+     */
+    public synchronized void request(int level, int newColumns[], int newRows[], int newCount)
+    {
+	if (levels.length < newCount)
+	{
+	    levels = new int[newCount];
+	    columns = new int[newCount];
+	    rows = new int[newCount];
+	} /* if levels.length < newCount */
+	int i;
+	for (i = 0; i < newCount; i++)
+	{
+	    levels[i] = level;
+	    columns[i] = newColumns[i];
+	    rows[i] = newRows[i];
+	} /* for i */
+	count = newCount;
+	next = 0;
+	if (threads == null)
+	{
+	    threads = new Thread[Math.max(1, Bands.getThreadCount() / 2)];
+	    for (i = 0; i < threads.length; i++)
+	    {
+		threads[i] = new Thread(this, "prefetch-" + i);
+		threads[i].setDaemon(true);
+		threads[i].setPriority(Thread.MIN_PRIORITY);
+		threads[i].start();
+	    } /* for i */
+	} /* if threads == null */
+	notifyAll();
+    } /* request() */
+
+    /**
+     * drop the tiles asked for, and keep any being rendered now out of the
+     * cache.
+     */
+    public synchronized void cancel()
+    {
+	generation++;
+	count = 0;
+	next = 0;
+    } /* cancel() */
+
+    /**
+     * render requested tiles until the program ends.
+     */
+    public void run()
+    {
+	int level, column, row, myGeneration, tileGeneration;
+	BufferedImage tile;
+	while (true)
+	{
+	    synchronized (this)
+	    {
+		while (next >= count)
+		{
+		    try
+		    {
+			wait();
+		    } /* try */
+		    catch (InterruptedException e)
+		    {
+			return;
+		    }
+		} /* while */
+		level = levels[next];
+		column = columns[next];
+		row = rows[next];
+		next++;
+		myGeneration = generation;
+	    } /* synchronized */
+	    if (tiles.get(level, column, row) != null)
+		continue;
+	    tileGeneration = tiles.getGeneration();
+	    try
+	    {
+		tile = map.renderTile(level, column, row);
+	    } /* try */
+	    catch (RuntimeException e)
+	    { /* the DEM changed under the tile; it will have been cancelled */
+		continue;
+	    }
+	    synchronized (this)
+	    {
+		if (myGeneration == generation)
+		    tiles.put(level, column, row, tile, tileGeneration);
+	    } /* synchronized */
+	} /* while true */
+    } /* run() */
+} /* class TilePrefetcher */
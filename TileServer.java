@@ -0,0 +1,361 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * a class that serves a DEM as map tiles over HTTP, for viewing in a web
+ * browser map.  tiles are 256 pixels square PNGs at
+ * /terrain/z/x/y.png, drawn in the map's colors, and, if a coverage
+ * result file was given, see-through coverage tiles to lay over them at
+ * /coverage/z/x/y.png.  z 0 is the most zoomed out level of the DEM's
+ * pyramid, and x and y count tiles from the NW corner, as XYZ tile maps
+ * expect.  tiles on the east and south edges are padded with clear pixels
+ * past the edge of the DEM, as a tile map draws every tile at full size.
+ * tiles are drawn on a pool of threads as they are asked for and
+ * kept in a DiskTileCache; each has an ETag naming the data it was drawn
+ * from, so a browser that has it already is told it has not changed.
+ * the server only listens on the loopback address.
+ */
+public class TileServer implements HttpHandler
+{
+    /**
+     * the width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+    private static final String TERRAIN = "terrain";
+    private static final String COVERAGE = "coverage";
+    /* the palette entry for elevations outside the DEM's range */
+    private static final int BLACK = Map.NUM_COLORS;
+    /* the palette entry for pixels past the edge of the DEM */
+    private static final int CLEAR = Map.NUM_COLORS + 1;
+    /* changed whenever tiles are drawn differently, so cached ones are not used */
+    private static final String TILE_FORMAT = "2";
+
+    DEM dem;
+    ElevationPyramid pyramid;
+    TileFile coverage;
+    short paletteMinimum;
+    byte palette[];
+    byte reds[] = new byte[Map.NUM_COLORS + 2];
+    byte greens[] = new byte[Map.NUM_COLORS + 2];
+    byte blues[] = new byte[Map.NUM_COLORS + 2];
+    byte alphas[] = new byte[Map.NUM_COLORS + 2];
+    String version;
+    DiskTileCache cache;
+    HttpServer server;
+    ExecutorService pool;
+
+    /**
+     * create a new TileServer.
+     * @param dem the DEM to serve, loaded.
+     * @param coverage a tile file of coverage results the same size as the
+     * DEM, or null.
+     * @param cacheDirectory the directory to keep drawn tiles in.
+     * @param maximumBytes the most disk space the drawn tiles may use.
+     * @exception IOException if the coverage does not fit the DEM or the
+     * cache cannot be opened.
+     */
+    public TileServer(DEM dem, TileFile coverage, File cacheDirectory, long maximumBytes) throws IOException
+    {
+	this.dem = dem;
+	this.coverage = coverage;
+	if ((coverage != null)
+	    && ((coverage.getColumns() != dem.getColumns()) || (coverage.getRows() != dem.getRows())))
+	    throw new IOException("the coverage is not the same size as the DEM");
+	pyramid = dem.getPyramid();
+
+	paletteMinimum = dem.getMinimumElevation();
+	palette = new byte[dem.getMaximumElevation() - paletteMinimum + 1];
+	int interval = (dem.getMaximumElevation() - paletteMinimum) / Map.NUM_COLORS + 1;
+	int k, rgb;
+	for (k = 0; k < palette.length; k++)
+	{
+	    palette[k] = (byte) (k / interval);
+	} /* for k */
+	IndexColorModel colors = Map.makeColorModel();
+	for (k = 0; k < Map.NUM_COLORS; k++)
+	{
+	    rgb = colors.getRGB(k);
+	    reds[k] = (byte) (rgb >> 16);
+	    greens[k] = (byte) (rgb >> 8);
+	    blues[k] = (byte) rgb;
+	} /* for k */
+	Arrays.fill(alphas, (byte) 0xff);
+	alphas[CLEAR] = 0;
+
+	/* name the data, so tiles drawn from anything else are not used */
+	CRC32 crc = new CRC32();
+	File demFile = new File(dem.getFileName());
+	String data = TILE_FORMAT + " " + demFile.getAbsolutePath() + " " + demFile.length() + " " + demFile.lastModified();
+	if (coverage != null)
+	{
+	    File coverageFile = new File(coverage.fileName);
+	    data = data + " " + coverageFile.getAbsolutePath() + " " + coverageFile.length()
+		+ " " + coverageFile.lastModified();
+	} /* if coverage != null */
+	crc.update(data.getBytes("UTF-8"));
+	version = Long.toHexString(crc.getValue());
+	cache = new DiskTileCache(cacheDirectory, version, maximumBytes);
+    } /* TileServer constructor */
+
+    /**
+     * start serving on the loopback address.
+     * @param port the port to listen on.
+     * @exception IOException if the port cannot be listened on.
+     */
+    public void start(int port) throws IOException
+    {
+	server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+	server.createContext("/", this);
+	pool = Executors.newFixedThreadPool(Bands.getThreadCount());
+	server.setExecutor(pool);
+	server.start();
+    } /* start() */
+
+    /**
+     * stop serving, waiting at most a second for requests being answered.
+     */
+    public void stop()
+    {
+	server.stop(1);
+	pool.shutdown();
+    } /* stop() */
+
+    /**
+     * get the number of zoom levels served.
+     * @return the number of levels; z runs from 0 to this less one.
+     */
+    public int getZoomCount()
+    {
+	return pyramid.getLevelCount();
+    } /* getZoomCount() */
+
+    /**
+     * answer a request for a tile.
+     * @param exchange the request and its response.
+     * @exception IOException if the response cannot be sent.
+     */
+    public void handle(HttpExchange exchange) throws IOException
+    {
+	try
+	{
+	    String method = exchange.getRequestMethod();
+	    if (!method.equals("GET") && !method.equals("HEAD"))
+	    {
+		send(exchange, 405, "text/plain", "only GET is supported\n".getBytes("UTF-8"));
+		return;
+	    } /* if !GET... */
+	    String path = exchange.getRequestURI().getPath();
+	    if (path.equals("/"))
+	    {
+		send(exchange, 200, "text/plain", usage().getBytes("UTF-8"));
+		return;
+	    } /* if path.equals("/") */
+	    String parts[] = path.split("/");
+	    /* "", layer, z, x, "y.png" */
+	    if ((parts.length != 5)
+		|| !(parts[1].equals(TERRAIN) || (parts[1].equals(COVERAGE) && (coverage != null)))
+		|| !parts[4].endsWith(".png"))
+	    {
+		send(exchange, 404, "text/plain", usage().getBytes("UTF-8"));
+		return;
+	    } /* if parts.length != 5... */
+	    int z = Util.safeStringToInt(parts[2]);
+	    int x = Util.safeStringToInt(parts[3]);
+	    int y = Util.safeStringToInt(parts[4].substring(0, parts[4].length() - 4));
+	    int level = pyramid.getLevelCount() - 1 - z;
+	    if ((level < 0) || (level >= pyramid.getLevelCount())
+		|| (x < 0) || (x * TILE_SIZE >= pyramid.getColumnCount(level))
+		|| (y < 0) || (y * TILE_SIZE >= pyramid.getRowCount(level)))
+	    {
+		send(exchange, 404, "text/plain", "no such tile\n".getBytes("UTF-8"));
+		return;
+	    } /* if level < 0... */
+	    String name = parts[1] + "-" + z + "-" + x + "-" + y;
+	    String etag = "\"" + version + "-" + name + "\"";
+	    exchange.getResponseHeaders().set("ETag", etag);
+	    exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+	    String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+	    if ((match != null) && (match.equals(etag) || match.equals("*")))
+	    {
+		exchange.sendResponseHeaders(304, -1);
+		return;
+	    } /* if match... */
+	    byte tile[] = cache.get(name);
+	    if (tile == null)
+	    {
+		tile = parts[1].equals(TERRAIN) ? drawTerrain(level, x, y) : drawCoverage(level, x, y);
+		cache.put(name, tile);
+	    } /* if tile == null */
+	    send(exchange, 200, "image/png", tile);
+	} /* try */
+	finally
+	{
+	    exchange.close();
+	}
+    } /* handle() */
+
+    /**
+     * describe the tiles served.
+     * @return the description.
+     */
+    String usage()
+    {
+	return "tiles are at /" + TERRAIN + "/{z}/{x}/{y}.png"
+	    + ((coverage == null) ? "" : " and /" + COVERAGE + "/{z}/{x}/{y}.png")
+	    + ", z from 0 to " + (pyramid.getLevelCount() - 1) + "\n";
+    } /* usage() */
+
+    /**
+     * send a response.
+     * @param exchange the request and its response.
+     * @param status the HTTP status.
+     * @param type the content type.
+     * @param body the body.
+     * @exception IOException if the response cannot be sent.
+     */
+    void send(HttpExchange exchange, int status, String type, byte body[]) throws IOException
+    {
+	exchange.getResponseHeaders().set("Content-Type", type);
+	if (exchange.getRequestMethod().equals("HEAD"))
+	{
+	    exchange.sendResponseHeaders(status, -1);
+	    return;
+	} /* if HEAD */
+	exchange.sendResponseHeaders(status, body.length);
+	OutputStream out = exchange.getResponseBody();
+	out.write(body);
+	out.close();
+    } /* send() */
+
+    /**
+     * draw a terrain tile.
+     * @param level the pyramid level.
+     * @param tileColumn the column of the tile, from the west.
+     * @param tileRow the row of the tile, from the north.
+     * @return the tile as a PNG.
+     * @exception IOException if the PNG cannot be made.
+     */
+    byte[] drawTerrain(int level, int tileColumn, int tileRow) throws IOException
+    {
+	ElevationSource source = pyramid.getLevel(level);
+	int levelHeight = pyramid.getRowCount(level);
+	int x0 = tileColumn * TILE_SIZE;
+	int tileWidth = Math.min(TILE_SIZE, pyramid.getColumnCount(level) - x0);
+	int tileHeight = Math.min(TILE_SIZE, levelHeight - tileRow * TILE_SIZE);
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	PNGWriter png = new PNGWriter(out, TILE_SIZE, TILE_SIZE, reds, greens, blues, alphas);
+	byte pixels[] = new byte[TILE_SIZE];
+	int x, y, row, offset;
+	/* pixels past the east edge of the DEM are never drawn, so stay clear */
+	Arrays.fill(pixels, (byte) CLEAR);
+	for (y = 0; y < TILE_SIZE; y++)
+	{ /* tile rows run north to south, DEM rows south to north */
+	    if (y >= tileHeight)
+	    { /* past the south edge */
+		if (y == tileHeight)
+		    Arrays.fill(pixels, (byte) CLEAR);
+		png.writeRow(pixels);
+		continue;
+	    } /* if y >= tileHeight */
+	    row = levelHeight - 1 - (tileRow * TILE_SIZE + y);
+	    for (x = 0; x < tileWidth; x++)
+	    {
+		offset = source.getElevation(x0 + x, row) - paletteMinimum;
+		pixels[x] = ((offset >= 0) && (offset < palette.length)) ? palette[offset] : (byte) BLACK;
+	    } /* for x */
+	    png.writeRow(pixels);
+	} /* for y */
+	png.close();
+	return out.toByteArray();
+    } /* drawTerrain() */
+
+    /**
+     * draw a coverage tile: clear where there is coverage, tinted where
+     * the terrain blocks it.  zoomed out, each pixel shows the point at
+     * its SW corner.
+     * @param level the pyramid level.
+     * @param tileColumn the column of the tile, from the west.
+     * @param tileRow the row of the tile, from the north.
+     * @return the tile as a PNG.
+     * @exception IOException if the coverage cannot be read or the PNG made.
+     */
+    byte[] drawCoverage(int level, int tileColumn, int tileRow) throws IOException
+    {
+	int levelHeight = pyramid.getRowCount(level);
+	int x0 = tileColumn * TILE_SIZE;
+	int tileWidth = Math.min(TILE_SIZE, pyramid.getColumnCount(level) - x0);
+	int tileHeight = Math.min(TILE_SIZE, levelHeight - tileRow * TILE_SIZE);
+	java.awt.Color shadow = Map.LAYER_COLORS[0];
+	byte tileReds[] = { 0, (byte) shadow.getRed() };
+	byte tileGreens[] = { 0, (byte) shadow.getGreen() };
+	byte tileBlues[] = { 0, (byte) shadow.getBlue() };
+	byte tileAlphas[] = { 0, (byte) CoverageLayer.SHADOW_ALPHA };
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	PNGWriter png = new PNGWriter(out, TILE_SIZE, TILE_SIZE, tileReds, tileGreens, tileBlues, tileAlphas);
+	/* pixels past the edge of the DEM stay 0, which is clear */
+	byte pixels[] = new byte[TILE_SIZE];
+	int x, y, row, column;
+	for (y = 0; y < TILE_SIZE; y++)
+	{
+	    if (y >= tileHeight)
+	    { /* past the south edge */
+		if (y == tileHeight)
+		    Arrays.fill(pixels, (byte) 0);
+		png.writeRow(pixels);
+		continue;
+	    } /* if y >= tileHeight */
+	    row = Math.min(dem.getRows() - 1, (levelHeight - 1 - (tileRow * TILE_SIZE + y)) << level);
+	    /* a tile file is not safe to read from several threads at once */
+	    synchronized (coverage)
+	    {
+		for (x = 0; x < tileWidth; x++)
+		{
+		    column = Math.min(dem.getColumns() - 1, (x0 + x) << level);
+		    pixels[x] = (byte) ((coverage.getByte(column, row) == OutOfCoreViewshed.SHADOWED) ? 1 : 0);
+		} /* for x */
+	    } /* synchronized */
+	    png.writeRow(pixels);
+	} /* for y */
+	png.close();
+	return out.toByteArray();
+    } /* drawCoverage() */
+} /* class TileServer */
@@ -0,0 +1,130 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an ElevationGrid too big for one array.  the rows are kept in blocks, a
+ * power of two rows to a block, so a row is always in one piece and
+ * finding a point costs a shift and a mask more than in one array.
+ */
+public class TiledElevationGrid extends ElevationGrid
+{
+    /* row is in block row >> blockShift, at row & blockMask within it */
+    int blockShift;
+    int blockMask;
+    short blocks[][];
+
+    /**
+     * create a new TiledElevationGrid with every elevation zero.
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @param maximumBlock the most elevations to keep in one array.
+     */
+    public TiledElevationGrid(int columns, int rows, int maximumBlock)
+    {
+	super(columns, rows, null);
+	blockShift = 0;
+	while ((((long) columns << (blockShift + 1)) <= maximumBlock) && (blockShift < 30))
+	{
+	    blockShift++;
+	} /* while columns << blockShift + 1... */
+	int blockRows = 1 << blockShift;
+	blockMask = blockRows - 1;
+	blocks = new short[(int) (((long) rows + blockMask) >> blockShift)][];
+	int i;
+	for (i = 0; i < blocks.length; i++)
+	{
+	    blocks[i] = new short[Math.min(rows - (i << blockShift), blockRows) * columns];
+	} /* for i */
+    } /* TiledElevationGrid constructor */
+
+    /**
+     * get the arrays the elevations are kept in.  each holds
+     * getBlockRows() rows, but the last may hold fewer.
+     * @return the arrays of elevations.
+     */
+    public short[][] getBlocks()
+    {
+	return blocks;
+    } /* getBlocks() */
+
+    /**
+     * get the number of rows in each block but the last.
+     * @return the number of rows in a block.
+     */
+    public int getBlockRows()
+    {
+	return 1 << blockShift;
+    } /* getBlockRows() */
+
+    /**
+     * get the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @return the elevation at that point.
+     */
+    public short getElevation(int column, int row)
+    {
+	return blocks[row >> blockShift][(row & blockMask) * stride + column];
+    } /* getElevation() */
+
+    /**
+     * set the elevation of a particular point.  the location must be valid.
+     * @param column the column number of the elevation.
+     * @param row the row number of the elevation.
+     * @param elevation the elevation.
+     */
+    public void setElevation(int column, int row, short elevation)
+    {
+	blocks[row >> blockShift][(row & blockMask) * stride + column] = elevation;
+    } /* setElevation() */
+
+    /**
+     * copy part of a row.
+     * @param row the row.
+     * @param column the first column to copy.
+     * @param buffer where to copy the elevations to.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     */
+    public void readRow(int row, int column, short buffer[], int offset, int count)
+    {
+	System.arraycopy(blocks[row >> blockShift], (row & blockMask) * stride + column, buffer, offset, count);
+    } /* readRow() */
+
+    /**
+     * copy elevations into part of a row.
+     * @param row the row.
+     * @param column the first column to copy to.
+     * @param buffer where to copy the elevations from.
+     * @param offset the index in buffer of the first elevation.
+     * @param count the number of elevations.
+     */
+    public void writeRow(int row, int column, short buffer[], int offset, int count)
+    {
+	System.arraycopy(buffer, offset, blocks[row >> blockShift], (row & blockMask) * stride + column, count);
+    } /* writeRow() */
+} /* class TiledElevationGrid */
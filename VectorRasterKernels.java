@@ -0,0 +1,84 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * raster kernels that use the JDK's incubating Vector API, so a loop works
+ * on as many elevations at once as the processor's widest registers hold.
+ * this class is compiled and run apart from the rest, with
+ * --add-modules jdk.incubator.vector; RasterKernels.getKernels() falls
+ * back to the plain loops when it cannot be loaded.
+ * <p>
+ * only the kernels that measured faster are here.  palette lookup stays in
+ * plain loops, as a table lookup is a gather, and doing it by comparing
+ * each elevation against every color's lowest elevation was twice as slow.
+ */
+public class VectorRasterKernels extends RasterKernels
+{
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * get the name of the kernels.
+     * @return the name, with the width of the vectors.
+     */
+    public String getName()
+    {
+	return "vector (" + SPECIES.length() + " x short)";
+    } /* getName() */
+
+    /**
+     * widen a range of elevations to take in some more.
+     * @param values the elevations.
+     * @param offset the index of the first.
+     * @param count the number of elevations.
+     * @param range the lowest and highest elevation so far, which are
+     * changed to take in these.
+     */
+    public void range(short values[], int offset, int count, short range[])
+    {
+	int vectorCount = SPECIES.loopBound(count);
+	if (vectorCount > 0)
+	{
+	    ShortVector low = ShortVector.broadcast(SPECIES, range[0]);
+	    ShortVector high = ShortVector.broadcast(SPECIES, range[1]);
+	    ShortVector v;
+	    int i;
+	    for (i = 0; i < vectorCount; i += SPECIES.length())
+	    {
+		v = ShortVector.fromArray(SPECIES, values, offset + i);
+		low = low.min(v);
+		high = high.max(v);
+	    } /* for i */
+	    range[0] = low.reduceLanes(VectorOperators.MIN);
+	    range[1] = high.reduceLanes(VectorOperators.MAX);
+	} /* if vectorCount > 0 */
+	super.range(values, offset + vectorCount, count - vectorCount, range);
+    } /* range() */
+} /* class VectorRasterKernels */
@@ -0,0 +1,50 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an interface for the algorithms that calculate radio coverage.  an engine
+ * reads terrain from an ElevationSource and reports each cell it decides
+ * about to a ViewshedSink, so the same engine can paint a Map, fill a file
+ * or be timed against another.  engines are found by name with
+ * ViewshedEngines.get().
+ */
+public interface ViewshedEngine
+{
+    /**
+     * get the name this engine is selected by.
+     * @return the engine's name.
+     */
+    public String getName();
+
+    /**
+     * calculate the coverage of a transmitter.
+     * @param terrain the elevations to calculate against.
+     * @param site the transmitter and calculation parameters.
+     * @param sink the receiver of the results.
+     */
+    public void calculate(ElevationSource terrain, ViewshedSite site, ViewshedSink sink);
+} /* interface ViewshedEngine */
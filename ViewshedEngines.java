@@ -0,0 +1,74 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that finds ViewshedEngines by name, so the user interface, the
+ * command line and the benchmarks can all offer the same choice.  new
+ * engines are added to the list here.
+ * All the methods are static; this class should never be instantiated.
+ */
+public class ViewshedEngines
+{
+    /**
+     * the name of the engine used when none is chosen.
+     */
+    public static final String DEFAULT = RadialViewshedEngine.NAME;
+
+    private static final String names[] = {
+	RadialViewshedEngine.NAME,
+	HorizonViewshedEngine.NAME,
+	SweepViewshedEngine.NAME,
+	TINViewshedEngine.NAME
+    };
+
+    /**
+     * get the names of all the engines.
+     * @return the engine names, the default first.
+     */
+    public static String[] getNames()
+    {
+	return names.clone();
+    } /* getNames() */
+
+    /**
+     * get a new instance of an engine.
+     * @param name the name of the engine.
+     * @return the engine, or null if there is no engine by that name.
+     */
+    public static ViewshedEngine get(String name)
+    {
+	if (name.equals(RadialViewshedEngine.NAME))
+	    return new RadialViewshedEngine();
+	if (name.equals(HorizonViewshedEngine.NAME))
+	    return new HorizonViewshedEngine();
+	if (name.equals(SweepViewshedEngine.NAME))
+	    return new SweepViewshedEngine();
+	if (name.equals(TINViewshedEngine.NAME))
+	    return new TINViewshedEngine();
+	return null;
+    } /* get() */
+} /* class ViewshedEngines */
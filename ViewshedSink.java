@@ -0,0 +1,55 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * an interface for anything that receives the results of a ViewshedEngine:
+ * a map to paint, a file to write, a count to keep.  a cell may be reported
+ * more than once, and may be reported both visible and shadowed by
+ * different rays; shadowed wins.
+ */
+public interface ViewshedSink
+{
+    /**
+     * report a cell that can see the transmitter.
+     * @param column the column of the cell.
+     * @param row the row of the cell.
+     */
+    public void setVisible(int column, int row);
+
+    /**
+     * report a cell that is shadowed by terrain.
+     * @param column the column of the cell.
+     * @param row the row of the cell.
+     */
+    public void setShadowed(int column, int row);
+
+    /**
+     * report how far the calculation has got.
+     * @param pctDone the percentage done.
+     */
+    public void progress(int pctDone);
+} /* interface ViewshedSink */
@@ -0,0 +1,124 @@
+/*
+DEM -- A Geographic Information System for Line-Of-Sight Radio Communications.
+Copyright (C) 1998, 1999 Jeffrey B. Otterson
+
+This program is free software; you can redistribute it and/or
+modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation; either version 2
+of the License, or (at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+
+For more information, to submit bugs, software changes, etc., please contact
+
+  Jeff Otterson / N1KDO
+  3543 Tritt Springs Way
+  Marietta, GA 30062
+  otterson@mindspring.com
+
+*/
+
+/**
+ * a class that holds the transmitter location and the parameters of a
+ * coverage calculation, for handing to a ViewshedEngine.
+ */
+public class ViewshedSite
+{
+    int x;
+    int y;
+    int latitude;
+    short amsl;
+    short receiverHeight;
+    float degreeIncrement;
+    int distanceIncrement;
+    PolygonMask mask;
+
+    /**
+     * create a new ViewshedSite.
+     * @param x the column of the transmitter.
+     * @param y the row of the transmitter.
+     * @param latitude the latitude of the transmitter, for the earth radius.
+     * @param amsl the height of the antenna above sea level.
+     * @param receiverHeight the height of the receiver antenna above ground.
+     * @param degreeIncrement the angular increment to vector around the transmitter.
+     * @param distanceIncrement the distance increment to vector around the transmitter.
+     */
+    public ViewshedSite(int x,
+			int y,
+			int latitude,
+			short amsl,
+			short receiverHeight,
+			float degreeIncrement,
+			int distanceIncrement)
+    {
+	this.x = x;
+	this.y = y;
+	this.latitude = latitude;
+	this.amsl = amsl;
+	this.receiverHeight = receiverHeight;
+	this.degreeIncrement = degreeIncrement;
+	this.distanceIncrement = distanceIncrement;
+    } /* ViewshedSite constructor */
+
+    /**
+     * restrict the calculation to an area.
+     * @param mask the area, or null for the whole DEM.
+     */
+    public void setMask(PolygonMask mask)
+    {
+	this.mask = mask;
+    } /* setMask() */
+
+    /**
+     * get the area the calculation is restricted to.
+     * @return the area, or null for the whole DEM.
+     */
+    public PolygonMask getMask()
+    {
+	return mask;
+    } /* getMask() */
+
+    /**
+     * get the column of the transmitter.
+     * @return the column.
+     */
+    public int getX()
+    {
+	return x;
+    } /* getX() */
+
+    /**
+     * get the row of the transmitter.
+     * @return the row.
+     */
+    public int getY()
+    {
+	return y;
+    } /* getY() */
+
+    /**
+     * get the number of rays needed to go all the way around.
+     * @return the number of rays.
+     */
+    public int getRayCount()
+    {
+	return (int) Math.ceil(360.0 / degreeIncrement);
+    } /* getRayCount() */
+
+    /**
+     * get the earth's radius at the transmitter, scaled by 4/3 for radio
+     * refraction.
+     * @return the effective earth radius in meters.
+     */
+    public int getEffectiveEarthRadius()
+    {
+	return GISCalculations.getEarthRadius(latitude) * 4 / 3;
+    } /* getEffectiveEarthRadius() */
+} /* class ViewshedSite */
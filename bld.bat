@@ -1 +1,2 @@
-@javac -depend DEMmain.java
\ No newline at end of file
+@javac -depend DEMmain.java
+@javac -depend DEMbatch.java
\ No newline at end of file
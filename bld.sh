@@ -1,2 +1,4 @@
 #!/bin/bash
 javac DEMmain.java
+javac DEMbatch.java
+javac --add-modules jdk.incubator.vector VectorRasterKernels.java || echo "no Vector API: the raster kernels will use plain loops"